@@ -0,0 +1,649 @@
+package engine;
+
+import engine.bodies.Body;
+import engine.bodies.Rigidbody;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.RandomAccess;
+import java.util.function.Predicate;
+
+import static engine.Constants.SPEED_OF_LIGHT;
+
+// The bodies of a scene, with the dynamic state of its Rigidbodies in structure-of-arrays form.
+// Slot i holds the body at list index i. Mass, charge, position, velocity, momentum, the force
+// accumulators and the kick state live in contiguous primitive columns indexed by slot, and the
+// step phases (kick, drift, ...), force solvers and integrators read and write those columns
+// directly. A Rigidbody's vector fields are View objects over its slot, so code that goes through
+// the Vector API (UI, Debugger, scenes) keeps working.
+//
+// Every Rigidbody belongs to exactly one store: a body outside any scene has a one-slot store of
+// its own, and adding it to a scene moves its state over.
+public class BodyStore extends AbstractList<Body> implements RandomAccess {
+    private static final int INITIAL_CAPACITY = 16;
+
+    // What a slot holds. OTHER: a body that is not a Rigidbody (e.g. Photon); it keeps its own
+    // state and the columns of its slot stay at their defaults. RIGID: a Rigidbody the phases
+    // kick through Rigidbody.kick (massless, driven by a constant velocity, acceleration or force,
+    // or sleeping). PLAIN: a Rigidbody kicked on the columns alone.
+    public static final byte OTHER = 0;
+    public static final byte RIGID = 1;
+    public static final byte PLAIN = 2;
+
+    // Column pairs a View can stand for.
+    public static final int POSITION = 0;
+    public static final int VELOCITY = 1;
+    public static final int MOMENTUM = 2;
+    public static final int FORCE = 3;
+    public static final int ACCELERATION = 4;
+
+    // --- Columns, valid for slots [0, size) ---
+    public byte[] kind;
+    public double[] mass;
+    public double[] charge;
+    public double[] x, y;
+    public double[] vx, vy;
+    public double[] px, py;
+    // Force and acceleration accumulators.
+    public double[] fx, fy;
+    public double[] ax, ay;
+    // Lorentz factor and the Newtonian threshold (see Rigidbody.DEFAULT_NEWTONIAN_BETA).
+    public double[] gamma;
+    public double[] newtonianBeta;
+    // Net force and acceleration applied by the last kick, and whether it took the Newtonian path.
+    public double[] appliedFx, appliedFy;
+    public double[] appliedAx, appliedAy;
+    public boolean[] newtonian;
+    // Which of the Rigidbody's cached derived values are valid; kicks clear it.
+    public byte[] derived;
+
+    private Body[] bodies;
+    private int size = 0;
+    // Bumped by every add and remove.
+    private long version = 0;
+
+    public BodyStore() {
+        this(INITIAL_CAPACITY);
+    }
+
+    public BodyStore(int capacity) {
+        allocate(Math.max(1, capacity));
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public Body get(int index) {
+        if (index >= size) {
+            throw new IndexOutOfBoundsException("Index " + index + " out of bounds for length " + size);
+        }
+        return bodies[index];
+    }
+
+    // Changes whenever a body joins or leaves the store, so state kept per body index (e.g. the
+    // sorted endpoints of SweepAndPruneBroadphase) can tell that the indices refer to other bodies.
+    public long version() {
+        return version;
+    }
+
+    // A Rigidbody knows its own slot; other bodies are searched for.
+    @Override
+    public int indexOf(Object o) {
+        if (o instanceof Rigidbody) {
+            Rigidbody body = (Rigidbody) o;
+            return body.getStore() == this ? body.getSlot() : -1;
+        }
+        return super.indexOf(o);
+    }
+
+    @Override
+    public boolean contains(Object o) {
+        return indexOf(o) >= 0;
+    }
+
+    @Override
+    public boolean remove(Object o) {
+        int index = indexOf(o);
+        if (index < 0) {
+            return false;
+        }
+        remove(index);
+        return true;
+    }
+
+    // Inserts the body at index. A Rigidbody brings its state along from the store it was in.
+    @Override
+    public void add(int index, Body body) {
+        if (index < 0 || index > size) {
+            throw new IndexOutOfBoundsException("Index " + index + " out of bounds for length " + size);
+        }
+        if (body == null) {
+            throw new IllegalArgumentException("BodyStore does not hold null bodies.");
+        }
+        if (indexOf(body) >= 0) {
+            throw new IllegalArgumentException("Body " + body.getName() + " is already in this store.");
+        }
+        ensureCapacity(size + 1);
+        copy(this, index, this, index + 1, size - index);
+        System.arraycopy(bodies, index, bodies, index + 1, size - index);
+        size++;
+        bodies[index] = body;
+        renumber(index + 1, size);
+        if (body instanceof Rigidbody) {
+            Rigidbody rigidbody = (Rigidbody) body;
+            BodyStore from = rigidbody.getStore();
+            int fromSlot = rigidbody.getSlot();
+            copy(from, fromSlot, this, index, 1);
+            rigidbody.attach(this, index);
+            from.removeSlots(fromSlot, fromSlot + 1);
+        } else {
+            clearSlot(index);
+        }
+        modCount++;
+        version++;
+    }
+
+    // Removes the body at index; a Rigidbody takes its state along into a store of its own.
+    @Override
+    public Body remove(int index) {
+        Body body = get(index);
+        release(body);
+        removeSlots(index, index + 1);
+        return body;
+    }
+
+    @Override
+    public Body set(int index, Body body) {
+        Body previous = remove(index);
+        add(index, body);
+        return previous;
+    }
+
+    // One compacting pass, for removing many bodies at once (merges, absorbed photons).
+    @Override
+    public boolean removeIf(Predicate<? super Body> filter) {
+        int kept = 0;
+        for (int i = 0; i < size; i++) {
+            Body body = bodies[i];
+            if (filter.test(body)) {
+                release(body);
+                continue;
+            }
+            if (kept != i) {
+                copy(this, i, this, kept, 1);
+                bodies[kept] = body;
+                renumber(kept, kept + 1);
+            }
+            kept++;
+        }
+        if (kept == size) {
+            return false;
+        }
+        Arrays.fill(bodies, kept, size, null);
+        size = kept;
+        modCount++;
+        version++;
+        return true;
+    }
+
+    @Override
+    protected void removeRange(int from, int to) {
+        for (int i = from; i < to; i++) {
+            release(bodies[i]);
+        }
+        removeSlots(from, to);
+    }
+
+    // -----------------------------------------------------------------
+    // Step phases over the slots [from, to), see engine.integrators.StepPhases. PLAIN slots are
+    // stepped on the columns; the rest through their bodies, which do the same to their slots.
+    // -----------------------------------------------------------------
+    public void kick(int from, int to, double dt) {
+        for (int i = from; i < to; i++) {
+            if (kind[i] == PLAIN) {
+                kickSlot(i, fx[i], fy[i], ax[i], ay[i], dt);
+            } else {
+                bodies[i].kick(dt);
+            }
+        }
+    }
+
+    // Every Rigidbody drifts with its velocity, sleeping or not.
+    public void drift(int from, int to, double dt) {
+        for (int i = from; i < to; i++) {
+            if (kind[i] == OTHER) {
+                bodies[i].drift(dt);
+            } else {
+                x[i] += vx[i] * dt;
+                y[i] += vy[i] * dt;
+            }
+        }
+    }
+
+    public void clearForces(int from, int to) {
+        for (int i = from; i < to; i++) {
+            if (kind[i] == OTHER) {
+                bodies[i].clearForces();
+            } else {
+                fx[i] = 0;
+                fy[i] = 0;
+                ax[i] = 0;
+                ay[i] = 0;
+            }
+        }
+    }
+
+    // The explicit Euler step of Rigidbody.update: kick, clear the accumulators, drift.
+    public void update(int from, int to, double dt) {
+        for (int i = from; i < to; i++) {
+            if (kind[i] != PLAIN) {
+                bodies[i].update(dt);
+                continue;
+            }
+            kickSlot(i, fx[i], fy[i], ax[i], ay[i], dt);
+            fx[i] = 0;
+            fy[i] = 0;
+            ax[i] = 0;
+            ay[i] = 0;
+            x[i] += vx[i] * dt;
+            y[i] += vy[i] * dt;
+        }
+    }
+
+    // Rigidbodies have nothing to do at the end of a step.
+    public void endStep(int from, int to) {
+        for (int i = from; i < to; i++) {
+            if (kind[i] == OTHER) {
+                bodies[i].endStep();
+            }
+        }
+    }
+
+    // Kicks the momentum of a massive slot by (force + mass * acceleration) * dt and derives γ and
+    // the velocity from it; the Newtonian path takes γ and 1/γ from their series in
+    // q² = (p / (m c))² while q is below the slot's newtonianBeta. Rigidbody.kick does the same
+    // after adding its constant force and acceleration.
+    public void kickSlot(int i, double forceX, double forceY, double accelerationX, double accelerationY, double dt) {
+        double m = mass[i];
+        appliedAx[i] = accelerationX;
+        appliedAy[i] = accelerationY;
+        double netX = forceX + accelerationX * m;
+        double netY = forceY + accelerationY * m;
+        appliedFx[i] = netX;
+        appliedFy[i] = netY;
+        double momentumX = px[i] + netX * dt;
+        double momentumY = py[i] + netY * dt;
+        px[i] = momentumX;
+        py[i] = momentumY;
+        double mc = m * SPEED_OF_LIGHT;
+        double q2 = (momentumX * momentumX + momentumY * momentumY) / (mc * mc);
+        double beta = newtonianBeta[i];
+        double inverseGammaMass;
+        if (q2 < beta * beta) {
+            // γ = 1 + q²/2 - q⁴/8 + ..., 1/γ = 1 - q²/2 + 3q⁴/8 - ...
+            newtonian[i] = true;
+            gamma[i] = 1 + q2 * (0.5 - 0.125 * q2);
+            inverseGammaMass = (1 - q2 * (0.5 - 0.375 * q2)) / m;
+        } else {
+            newtonian[i] = false;
+            double g = Math.sqrt(1 + q2);
+            gamma[i] = g;
+            inverseGammaMass = 1 / (m * g);
+        }
+        vx[i] = momentumX * inverseGammaMass;
+        vy[i] = momentumY * inverseGammaMass;
+        derived[i] = 0;
+    }
+
+    // -----------------------------------------------------------------
+    // Slots
+    // -----------------------------------------------------------------
+    // Copies the columns of `length` slots from one store to another (or within one store; the
+    // ranges may overlap).
+    public static void copy(BodyStore from, int fromSlot, BodyStore to, int toSlot, int length) {
+        System.arraycopy(from.kind, fromSlot, to.kind, toSlot, length);
+        System.arraycopy(from.mass, fromSlot, to.mass, toSlot, length);
+        System.arraycopy(from.charge, fromSlot, to.charge, toSlot, length);
+        System.arraycopy(from.x, fromSlot, to.x, toSlot, length);
+        System.arraycopy(from.y, fromSlot, to.y, toSlot, length);
+        System.arraycopy(from.vx, fromSlot, to.vx, toSlot, length);
+        System.arraycopy(from.vy, fromSlot, to.vy, toSlot, length);
+        System.arraycopy(from.px, fromSlot, to.px, toSlot, length);
+        System.arraycopy(from.py, fromSlot, to.py, toSlot, length);
+        System.arraycopy(from.fx, fromSlot, to.fx, toSlot, length);
+        System.arraycopy(from.fy, fromSlot, to.fy, toSlot, length);
+        System.arraycopy(from.ax, fromSlot, to.ax, toSlot, length);
+        System.arraycopy(from.ay, fromSlot, to.ay, toSlot, length);
+        System.arraycopy(from.gamma, fromSlot, to.gamma, toSlot, length);
+        System.arraycopy(from.newtonianBeta, fromSlot, to.newtonianBeta, toSlot, length);
+        System.arraycopy(from.appliedFx, fromSlot, to.appliedFx, toSlot, length);
+        System.arraycopy(from.appliedFy, fromSlot, to.appliedFy, toSlot, length);
+        System.arraycopy(from.appliedAx, fromSlot, to.appliedAx, toSlot, length);
+        System.arraycopy(from.appliedAy, fromSlot, to.appliedAy, toSlot, length);
+        System.arraycopy(from.newtonian, fromSlot, to.newtonian, toSlot, length);
+        System.arraycopy(from.derived, fromSlot, to.derived, toSlot, length);
+    }
+
+    // Defaults of a body at rest that has not been kicked yet.
+    private void clearSlot(int i) {
+        kind[i] = OTHER;
+        mass[i] = 0;
+        charge[i] = 0;
+        x[i] = 0;
+        y[i] = 0;
+        vx[i] = 0;
+        vy[i] = 0;
+        px[i] = 0;
+        py[i] = 0;
+        fx[i] = 0;
+        fy[i] = 0;
+        ax[i] = 0;
+        ay[i] = 0;
+        gamma[i] = 1;
+        newtonianBeta[i] = Rigidbody.DEFAULT_NEWTONIAN_BETA;
+        appliedFx[i] = 0;
+        appliedFy[i] = 0;
+        appliedAx[i] = 0;
+        appliedAy[i] = 0;
+        newtonian[i] = true;
+        derived[i] = 0;
+    }
+
+    // Gives a new Rigidbody its own one-slot store.
+    public static void adopt(Rigidbody body) {
+        BodyStore store = new BodyStore(1);
+        store.size = 1;
+        store.bodies[0] = body;
+        store.clearSlot(0);
+        body.attach(store, 0);
+    }
+
+    // Moves a Rigidbody that is leaving this store into a store of its own, state included.
+    private void release(Body body) {
+        if (!(body instanceof Rigidbody)) {
+            return;
+        }
+        Rigidbody rigidbody = (Rigidbody) body;
+        BodyStore own = new BodyStore(1);
+        own.size = 1;
+        own.bodies[0] = body;
+        copy(this, rigidbody.getSlot(), own, 0, 1);
+        rigidbody.attach(own, 0);
+    }
+
+    // Closes the gap [from, to) without touching the bodies that were there.
+    private void removeSlots(int from, int to) {
+        int removed = to - from;
+        copy(this, to, this, from, size - to);
+        System.arraycopy(bodies, to, bodies, from, size - to);
+        size -= removed;
+        Arrays.fill(bodies, size, size + removed, null);
+        renumber(from, size);
+        modCount++;
+        version++;
+    }
+
+    private void renumber(int from, int to) {
+        for (int i = from; i < to; i++) {
+            if (bodies[i] instanceof Rigidbody) {
+                ((Rigidbody) bodies[i]).moveToSlot(i);
+            }
+        }
+    }
+
+    private void ensureCapacity(int capacity) {
+        if (capacity > bodies.length) {
+            allocate(Math.max(capacity, bodies.length * 2));
+        }
+    }
+
+    private void allocate(int capacity) {
+        if (bodies == null) {
+            bodies = new Body[0];
+            kind = new byte[0];
+            mass = charge = x = y = vx = vy = px = py = fx = fy = ax = ay = new double[0];
+            gamma = newtonianBeta = appliedFx = appliedFy = appliedAx = appliedAy = new double[0];
+            newtonian = new boolean[0];
+            derived = new byte[0];
+        }
+        bodies = Arrays.copyOf(bodies, capacity);
+        kind = Arrays.copyOf(kind, capacity);
+        mass = Arrays.copyOf(mass, capacity);
+        charge = Arrays.copyOf(charge, capacity);
+        x = Arrays.copyOf(x, capacity);
+        y = Arrays.copyOf(y, capacity);
+        vx = Arrays.copyOf(vx, capacity);
+        vy = Arrays.copyOf(vy, capacity);
+        px = Arrays.copyOf(px, capacity);
+        py = Arrays.copyOf(py, capacity);
+        fx = Arrays.copyOf(fx, capacity);
+        fy = Arrays.copyOf(fy, capacity);
+        ax = Arrays.copyOf(ax, capacity);
+        ay = Arrays.copyOf(ay, capacity);
+        gamma = Arrays.copyOf(gamma, capacity);
+        newtonianBeta = Arrays.copyOf(newtonianBeta, capacity);
+        appliedFx = Arrays.copyOf(appliedFx, capacity);
+        appliedFy = Arrays.copyOf(appliedFy, capacity);
+        appliedAx = Arrays.copyOf(appliedAx, capacity);
+        appliedAy = Arrays.copyOf(appliedAy, capacity);
+        newtonian = Arrays.copyOf(newtonian, capacity);
+        derived = Arrays.copyOf(derived, capacity);
+    }
+
+    // -----------------------------------------------------------------
+    // Views
+    // -----------------------------------------------------------------
+    // A view of one column pair of the body's slot, valid wherever the body moves.
+    public static View view(Rigidbody owner, int column) {
+        return new View(owner, column);
+    }
+
+    // A 2D vector backed by one column pair of the owner's current slot.
+    // Arithmetic returns plain Vector2 values, exactly like Vector2 itself.
+    public static final class View implements Vector {
+        private final Rigidbody owner;
+        private final int column;
+
+        private View(Rigidbody owner, int column) {
+            this.owner = owner;
+            this.column = column;
+        }
+
+        private double[] xs() {
+            BodyStore store = owner.getStore();
+            switch (column) {
+                case POSITION: return store.x;
+                case VELOCITY: return store.vx;
+                case MOMENTUM: return store.px;
+                case FORCE: return store.fx;
+                default: return store.ax;
+            }
+        }
+
+        private double[] ys() {
+            BodyStore store = owner.getStore();
+            switch (column) {
+                case POSITION: return store.y;
+                case VELOCITY: return store.vy;
+                case MOMENTUM: return store.py;
+                case FORCE: return store.fy;
+                default: return store.ay;
+            }
+        }
+
+        public double x() {
+            return xs()[owner.getSlot()];
+        }
+
+        public double y() {
+            return ys()[owner.getSlot()];
+        }
+
+        // Overwrites both components in the store.
+        public View set(double x, double y) {
+            int slot = owner.getSlot();
+            xs()[slot] = x;
+            ys()[slot] = y;
+            return this;
+        }
+
+        @Override
+        public int dimension() {
+            return 2;
+        }
+
+        @Override
+        public double get(int index) {
+            switch (index) {
+                case 0: return x();
+                case 1: return y();
+                default: throw new IndexOutOfBoundsException("Vector2 only has indices 0 and 1.");
+            }
+        }
+
+        @Override
+        public Vector add(Vector other) {
+            return toVector2().add(other);
+        }
+
+        @Override
+        public Vector add(double scalar) {
+            return toVector2().add(scalar);
+        }
+
+        @Override
+        public Vector sub(Vector other) {
+            return toVector2().sub(other);
+        }
+
+        @Override
+        public Vector sub(double scalar) {
+            return toVector2().sub(scalar);
+        }
+
+        @Override
+        public Vector mul(double scalar) {
+            return toVector2().mul(scalar);
+        }
+
+        @Override
+        public Vector mul(Vector other) {
+            return toVector2().mul(other);
+        }
+
+        @Override
+        public Vector div(double scalar) {
+            return toVector2().div(scalar);
+        }
+
+        @Override
+        public Vector div(Vector other) {
+            return toVector2().div(other);
+        }
+
+        @Override
+        public double dot(Vector other) {
+            if (other.dimension() != 2) {
+                throw new IllegalArgumentException("Dimension mismatch: expected 2, got " + other.dimension());
+            }
+            return x() * other.get(0) + y() * other.get(1);
+        }
+
+        @Override
+        public Vector cross(Vector other) {
+            throw new UnsupportedOperationException("Cross product is not defined for 2D vectors.");
+        }
+
+        @Override
+        public double magnitude() {
+            double x = x();
+            double y = y();
+            return Math.sqrt(x * x + y * y);
+        }
+
+        @Override
+        public Vector normalize() {
+            return toVector2().normalize();
+        }
+
+        // A detached copy; later steps do not change it.
+        @Override
+        public Vector copy() {
+            return toVector2();
+        }
+
+        @Override
+        public Vector setComponent(int index, double value) {
+            switch (index) {
+                case 0: xs()[owner.getSlot()] = value; break;
+                case 1: ys()[owner.getSlot()] = value; break;
+                default: throw new IndexOutOfBoundsException("Vector2 only has indices 0 and 1.");
+            }
+            return this;
+        }
+
+        @Override
+        public Vector set(Vector other) {
+            if (other.dimension() != 2) {
+                throw new IllegalArgumentException("Dimension mismatch: expected 2, got " + other.dimension());
+            }
+            return set(other.get(0), other.get(1));
+        }
+
+        @Override
+        public Vector zero() {
+            return set(0.0, 0.0);
+        }
+
+        @Override
+        public Vector addInPlace(Vector other) {
+            return addScaled(other, 1);
+        }
+
+        @Override
+        public Vector addScaled(Vector other, double scale) {
+            if (other.dimension() != 2) {
+                throw new IllegalArgumentException("Dimension mismatch: expected 2, got " + other.dimension());
+            }
+            int slot = owner.getSlot();
+            xs()[slot] += other.get(0) * scale;
+            ys()[slot] += other.get(1) * scale;
+            return this;
+        }
+
+        @Override
+        public Vector scale(double scalar) {
+            int slot = owner.getSlot();
+            xs()[slot] *= scalar;
+            ys()[slot] *= scalar;
+            return this;
+        }
+
+        private Vector2 toVector2() {
+            return new Vector2(x(), y());
+        }
+
+        @Override
+        public String toString() {
+            return "[" + x() + ", " + y() + "]";
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj) return true;
+            if (!(obj instanceof Vector)) return false;
+            Vector other = (Vector) obj;
+            return other.dimension() == 2 &&
+                   Double.compare(x(), other.get(0)) == 0 &&
+                   Double.compare(y(), other.get(1)) == 0;
+        }
+
+        @Override
+        public int hashCode() {
+            return toVector2().hashCode();
+        }
+    }
+}
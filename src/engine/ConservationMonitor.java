@@ -0,0 +1,189 @@
+package engine;
+
+import engine.bodies.Body;
+import engine.bodies.PhotonBeam;
+import engine.bodies.Rigidbody;
+import engine.forces.ForceSolver;
+import engine.integrators.StepPhases;
+
+import java.util.List;
+
+// Scene-wide conservation check: total energy, linear momentum and angular momentum about the
+// origin, and how far each has drifted since the first sample.
+// Simulation takes the first sample when the scene is loaded and then one every `interval`
+// steps, after the step is done.
+//
+// A sample is one reduction over the bodies on the simulation's threads (StepPhases.sum), along
+// the fixed tree when `deterministic` is passed, as Simulation does in deterministic mode. The
+// potential comes from every force solver's own approximation (ForceSolver.potentialEnergy(bodies,
+// i)): each solver is prepared for the current positions and walked once per body, about the cost
+// of one force evaluation rather than an O(N²) pass. Every Rigidbody's potentialEnergy is set to
+// its half of its pair energies along the way, so the body values add up to the total.
+//
+// The energy is kinetic plus potential plus internal plus radiation:
+// - internal: every body's internalEnergy, which holds the rest mass gained from heat (inelastic
+//   contacts, merges) and absorbed photons, so kinetic energy turned into mass is not lost. Rest
+//   energy the bodies started with is left out, as it would bury the drift.
+// - radiation: pc of every photon in Scene.beams; photons that are bodies count as kinetic
+//   energy (pc, see kineticEnergy). Beam photons add their momenta as well.
+public class ConservationMonitor {
+    // Steps between samples.
+    public int interval = 100;
+
+    // The sample every drift is measured against, and the most recent one.
+    public final Sample initial = new Sample();
+    public final Sample latest = new Sample();
+    // Samples since the monitor was created or reset.
+    public long samples = 0;
+
+    // Kinetic, potential, px, py, L, Σ|p|, Σ|r × p|, internal.
+    private static final int TERMS = 8;
+    private final double[] totals = new double[TERMS];
+
+    // Samples when the first sample is still missing or `step` is a multiple of the interval.
+    public void update(Scene scene, StepPhases phases, boolean deterministic, double time, long step) {
+        if (samples > 0 && (interval < 1 || step % interval != 0 || step == latest.step)) {
+            return;
+        }
+        sample(scene, phases, deterministic, time, step);
+    }
+
+    // Takes a sample now; the first one after a reset becomes the reference.
+    public void sample(Scene scene, StepPhases phases, boolean deterministic, double time, long step) {
+        BodyStore bodies = scene.bodies;
+        List<ForceSolver> solvers = scene.forceSolvers;
+        for (int s = 0; s < solvers.size(); s++) {
+            solvers.get(s).prepare(bodies);
+        }
+        phases.sum(scene, totals, (index, body, partial) -> {
+            double x = body.getPos().get(0);
+            double y = body.getPos().get(1);
+            Vector momentum = body.getMomentum();
+            double px = momentum.get(0);
+            double py = momentum.get(1);
+            double potential = 0;
+            for (int s = 0; s < solvers.size(); s++) {
+                potential += 0.5 * solvers.get(s).potentialEnergy(bodies, index);
+            }
+            if (body instanceof Rigidbody) {
+                ((Rigidbody) body).potentialEnergy = potential;
+            }
+            partial[0] += kineticEnergy(body);
+            partial[1] += potential;
+            partial[2] += px;
+            partial[3] += py;
+            partial[4] += x * py - y * px;
+            partial[5] += Math.sqrt(px * px + py * py);
+            partial[6] += Math.abs(x * py - y * px);
+            partial[7] += body.getInternalEnergy();
+        }, deterministic);
+        // The beams in order on this thread, so the result still does not depend on the threads.
+        double radiation = 0;
+        for (int b = 0; b < scene.beams.size(); b++) {
+            PhotonBeam beam = scene.beams.get(b);
+            for (int i = 0, n = beam.size(); i < n; i++) {
+                double p = beam.momentum(i);
+                double px = p * beam.dirX[i];
+                double py = p * beam.dirY[i];
+                double l = beam.x[i] * py - beam.y[i] * px;
+                radiation += beam.energy(i);
+                totals[2] += px;
+                totals[3] += py;
+                totals[4] += l;
+                totals[5] += p;
+                totals[6] += Math.abs(l);
+            }
+        }
+
+        Sample sample = latest;
+        sample.step = step;
+        sample.time = time;
+        sample.kineticEnergy = totals[0];
+        sample.potentialEnergy = totals[1];
+        sample.internalEnergy = totals[7];
+        sample.radiationEnergy = radiation;
+        sample.energy = totals[0] + totals[1] + totals[7] + radiation;
+        sample.momentumX = totals[2];
+        sample.momentumY = totals[3];
+        sample.angularMomentum = totals[4];
+        sample.momentumScale = totals[5];
+        sample.angularMomentumScale = totals[6];
+        if (samples == 0) {
+            initial.copyFrom(sample);
+        }
+        // Energy relative to |E0|; the momenta relative to Σ|p| and Σ|r × p| at the start, since
+        // their totals are often zero up to rounding.
+        sample.energyDrift = relative(sample.energy - initial.energy, Math.abs(initial.energy));
+        sample.momentumDrift = relative(Math.hypot(sample.momentumX - initial.momentumX, sample.momentumY - initial.momentumY),
+                initial.momentumScale);
+        sample.angularMomentumDrift = relative(sample.angularMomentum - initial.angularMomentum, initial.angularMomentumScale);
+        samples++;
+    }
+
+    // The next sample becomes the new reference.
+    public void reset() {
+        samples = 0;
+        initial.copyFrom(new Sample());
+        latest.copyFrom(new Sample());
+    }
+
+    // Relativistic kinetic energy (Body.kineticEnergy), pc for massless bodies.
+    public static double kineticEnergy(Body body) {
+        Vector momentum = body.getMomentum();
+        return Body.kineticEnergy(body.getMass(), momentum.get(0), momentum.get(1));
+    }
+
+    private static double relative(double difference, double scale) {
+        return difference == 0 ? 0 : difference / scale;
+    }
+
+    public ConservationMonitor copy() {
+        ConservationMonitor copy = new ConservationMonitor();
+        copy.interval = interval;
+        return copy;
+    }
+
+    // Totals of one sample, in SI units; the drifts are relative (see sample()).
+    public static final class Sample {
+        // Step and simulation time the sample was taken at, -1 before the first one.
+        public long step = -1;
+        public double time = 0d;
+        public double kineticEnergy = 0d;
+        public double potentialEnergy = 0d;
+        // Σ internalEnergy of the bodies and Σ pc of the beam photons.
+        public double internalEnergy = 0d;
+        public double radiationEnergy = 0d;
+        public double energy = 0d;
+        public double momentumX = 0d;
+        public double momentumY = 0d;
+        // z component of Σ r × p.
+        public double angularMomentum = 0d;
+        public double momentumScale = 0d;
+        public double angularMomentumScale = 0d;
+        public double energyDrift = 0d;
+        public double momentumDrift = 0d;
+        public double angularMomentumDrift = 0d;
+
+        public double momentumMagnitude() {
+            return Math.hypot(momentumX, momentumY);
+        }
+
+        public void copyFrom(Sample other) {
+            step = other.step;
+            time = other.time;
+            kineticEnergy = other.kineticEnergy;
+            potentialEnergy = other.potentialEnergy;
+            internalEnergy = other.internalEnergy;
+            radiationEnergy = other.radiationEnergy;
+            energy = other.energy;
+            momentumX = other.momentumX;
+            momentumY = other.momentumY;
+            angularMomentum = other.angularMomentum;
+            momentumScale = other.momentumScale;
+            angularMomentumScale = other.angularMomentumScale;
+            energyDrift = other.energyDrift;
+            momentumDrift = other.momentumDrift;
+            angularMomentumDrift = other.angularMomentumDrift;
+        }
+    }
+}
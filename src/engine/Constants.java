@@ -35,6 +35,8 @@ public class Constants {
     public static final double VACUUM_PERMITTIVITY = 8.8541878128e-12; // Farads per meter (F/m)
     // Vacuum permeability (μ₀) [used to be exact, now determined experimentally]
     public static final double VACUUM_PERMEABILITY = 1.25663706212e-6; // Henry per meter (H/m)
+    // Coulomb constant: k_e = 1 / (4π ε₀)
+    public static final double COULOMB_CONSTANT = 1.0 / (4 * PI * VACUUM_PERMITTIVITY); // in N·m²/C²
 
     // ============================================================
     // Fundamental Physical engine.Constants
@@ -32,4 +32,40 @@ public class Debugger {
         System.out.println("Lorentz Factor (gamma): " + body.getGamma());
         System.out.println("========================================");
     }
+
+    // -----------------------------------------------------------------
+    // Same report from a published Snapshot, so every value belongs to one step.
+    // -----------------------------------------------------------------
+    public static void debugBody(Snapshot frame, int i) {
+        Body body = frame.bodies[i];
+        System.out.println("Uptime: " + frame.uptime);
+        System.out.println("=====" +  body.getName()  + "=====");
+        System.out.println("Mass: " + frame.mass[i] + " (in appropriate units)");
+        System.out.println("Position: " + frame.position(i));
+        System.out.println("Velocity: " + frame.velocity(i));
+        System.out.println("Velocity Magnitude: " + frame.velocityMagnitude(i) + " m/s");
+        System.out.println("Speed as % of c: " + df.format(frame.speedPercentC(i)) + " %");
+        System.out.println("Momentum: " + frame.momentum(i));
+        System.out.println("Momentum Magnitude: " + frame.momentumMagnitude(i) + " kg·m/s");
+        System.out.println("Force Magnitude: " + frame.forceMagnitude(i) + " N");
+        System.out.println("Net Acceleration Magnitude: " + frame.netAccelerationMagnitude(i) + " m/s²");
+        System.out.println("Kinetic Energy: " + frame.kineticEnergy(i) + " J");
+        System.out.println("Potential Energy: " + frame.potentialEnergy[i] + " J");
+        System.out.println("Internal Energy: " + frame.internalEnergy[i] + " J");
+        System.out.println("Lorentz Factor (gamma): " + frame.gamma[i]);
+        System.out.println("========================================");
+    }
+
+    // -----------------------------------------------------------------
+    // Scene totals of the ConservationMonitor's latest sample in a Snapshot.
+    // -----------------------------------------------------------------
+    public static void debugConservation(Snapshot frame) {
+        ConservationMonitor.Sample sample = frame.conservation;
+        System.out.println("===== Conservation (step " + sample.step + ", t = " + sample.time + " s) =====");
+        System.out.println("Total Energy: " + sample.energy + " J (kinetic " + sample.kineticEnergy + " J, potential " + sample.potentialEnergy + " J, internal " + sample.internalEnergy + " J, beam photons " + sample.radiationEnergy + " J)");
+        System.out.println("Relative Energy Drift: " + sample.energyDrift);
+        System.out.println("Total Momentum: (" + sample.momentumX + ", " + sample.momentumY + ") kg·m/s, drift " + sample.momentumDrift);
+        System.out.println("Angular Momentum: " + sample.angularMomentum + " kg·m²/s, drift " + sample.angularMomentumDrift);
+        System.out.println("========================================");
+    }
 }
\ No newline at end of file
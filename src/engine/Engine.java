@@ -1,8 +1,11 @@
 package engine;
 
-import engine.bodies.Body;
 import scenes.ConstantAcceleratingBodyInSpace;
 
+// Static facade over one shared Simulation, for code written against the single-scene engine.
+// The public fields mirror that simulation: TIME_STEP and timeScale are read before every
+// update/step call, and the clocks are copied back after it. New code that runs several scenes
+// should create Simulation instances directly.
 public class Engine {
     // Accumulated time since the last fixed update (in seconds)
     public static double deltaTime = 0d;
@@ -15,15 +18,32 @@ public class Engine {
     // The scene containing all rigid bodies to update
     public static Scene scene = null;
 
-    // Used to compute deltaTime (in nanoseconds)
-    private static long lastUpdateTime;
+    // The simulation behind the static API. update() is wrapped so the static fields stay in sync
+    // while init() drives the real-time loop.
+    private static final Simulation simulation = new Simulation() {
+        @Override
+        public void update() {
+            pushConfig();
+            super.update();
+            pullState();
+        }
+    };
+
+    // Paces the loop in init(); replaced on every init after a shutdown.
+    public static StepScheduler scheduler = simulation.scheduler;
 
-    // Simulation state flag
-    private static boolean isRunning = true;
+    // State published at step boundaries for readers on other threads (UI, debug output).
+    public static final SnapshotBuffer snapshots = simulation.snapshots;
+    // Fixed steps taken since load().
+    public static long stepCount = 0;
+
+    static {
+        simulation.debugOutput = true;
+    }
 
     // Initialize the engine, scene, and timing variables.
     public static void init(Scene sceneToUse) {
-        scene = sceneToUse;
+        load(sceneToUse);
         if (scene == null) {
             System.err.println("No active scene");
             return;
@@ -33,66 +53,89 @@ public class Engine {
             terminate();
             return;
         }
-        deltaTime = 0d;
-        uptime = 0d;
-        lastUpdateTime = System.nanoTime();
-        while(true)
-        {
-            update();
+        if (simulation.scheduler.isShutdown()) {
+            simulation.scheduler = new StepScheduler();
         }
+        scheduler = simulation.scheduler;
+        simulation.run();
+        pullState();
+    }
+
+    // Makes the scene current and resets the clocks, without starting the real-time loop.
+    // Use this before step() / runUntil() for headless runs.
+    public static void load(Scene sceneToUse) {
+        pushConfig();
+        simulation.load(sceneToUse);
+        scene = sceneToUse;
+        pullState();
     }
 
-    // Call this method repeatedly (e.g., via a Swing Timer) to update the simulation.
-    // Declare an accumulator variable at the class level (or as a static variable)
-    private static double debugAccumulator = 0;
-    
     public static void update() {
-        if (!isRunning) {
-            lastUpdateTime = System.nanoTime();
-            return;
-        }
-        
-        long now = System.nanoTime();
-        double frameTime = (now - lastUpdateTime) / 1e9;
-        lastUpdateTime = now;
-        deltaTime += frameTime;
-        
-        if (deltaTime > 0.25) {
-            deltaTime = 0.25;
-        }
-        
-        // Add frame time to the debug accumulator
-        debugAccumulator += frameTime;
-        
-        // If one second has passed, output debug info for each body and reset accumulator.
-        if (debugAccumulator >= 1.0) {
-            for (Body body : scene.bodies) {
-                Debugger.debugBody(body);
-            }
-            debugAccumulator -= 1.0;  // Reset accumulator, or set to zero if no leftover time is needed.
-        }
-        
-        while (deltaTime >= TIME_STEP) {
-            double fixedDt = TIME_STEP;
-            double scaledDt = fixedDt * timeScale;
-            for (Body body : scene.bodies) {
-                body.update(scaledDt);
-            }
-            deltaTime -= TIME_STEP;
-            uptime += fixedDt * timeScale;
+        simulation.update();
+    }
+
+    // -----------------------------------------------------------------
+    // Headless batch stepping: no wall clock, no debug output, as fast as the CPU allows.
+    // -----------------------------------------------------------------
+    // Advances the scene by n fixed steps of TIME_STEP * timeScale.
+    public static void step(long n) {
+        pushConfig();
+        simulation.step(n);
+        pullState();
+    }
+
+    // Steps until uptime reaches simTime (simulated seconds). Returns the number of steps taken.
+    public static long runUntil(double simTime) {
+        pushConfig();
+        try {
+            return simulation.runUntil(simTime);
+        } finally {
+            pullState();
         }
     }
+
+    // Copies the current scene state into the snapshot buffer. update() does this after every
+    // batch of steps; headless callers can use it to hand a frame to a UI.
+    public static void publishSnapshot() {
+        simulation.publishSnapshot();
+    }
+
+    private static void pushConfig() {
+        simulation.timeStep = TIME_STEP;
+        simulation.timeScale = timeScale;
+    }
+
+    private static void pullState() {
+        deltaTime = simulation.deltaTime;
+        uptime = simulation.uptime;
+        stepCount = simulation.stepCount;
+    }
     
+    // Sets how many threads share each step. 1 (the default) falls back to the serial path.
+    public static void setThreadCount(int threads) {
+        simulation.setThreadCount(threads);
+    }
+
+    public static int getThreadCount() {
+        return simulation.getThreadCount();
+    }
+
+    // Bit-identical reductions for any thread count, see Simulation.setDeterministic.
+    public static void setDeterministic(boolean deterministic) {
+        simulation.setDeterministic(deterministic);
+    }
+
+    public static boolean isDeterministic() {
+        return simulation.isDeterministic();
+    }
     
     // Start the simulation.
     public static void togglePlay() {
-        isRunning = !isRunning;
-        lastUpdateTime = System.nanoTime();
+        simulation.togglePlay();
     }
 
-    // Clean up resources and optionally print a summary.
+    // Stops the loop in init(), which then returns after cleaning up. Safe to call from any thread.
     public static void terminate() {
-        System.out.println("Engine terminated. Total uptime: " + uptime + " seconds.");
-        System.exit(0);
+        simulation.terminate();
     }
 }
@@ -0,0 +1,361 @@
+package engine;
+
+import engine.bodies.Body;
+import engine.bodies.Photon;
+import engine.bodies.PhotonBeam;
+import engine.bodies.Rigidbody;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static engine.Constants.*;
+
+// Bends photon paths around massive Rigidbodies (gravitational lensing). Runs once after every
+// step (Simulation.stepOnce), after the photons have moved and before collisions and photon hits.
+//
+// Every photon moved in a straight line during the step, from position - c dt * direction to
+// position. For each lens (a Rigidbody of at least minLensMass) that straight segment is
+// replaced by a piece of the photon's Schwarzschild orbit, whose shape only depends on
+// β = b / r_s (b the impact parameter, r_s = 2GM/c²):
+// - weak field, β > weakImpactParameter: the first-order deflection, 2 r_s / b in total;
+// - β down to strongImpactParameter: the photon is moved along its orbit as precomputed in
+//   LensingTables, whose tables are cached with LRU eviction; this holds for any step length;
+// - strong field, below strongImpactParameter: the orbit is integrated over the step with RK4 on
+//   the Binet acceleration -(3/2) r_s h² r̂ / r⁴. A photon moving inward inside the photon sphere
+//   (1.5 r_s) is captured: the lens receives its momentum and energy (raising its rest mass) and
+//   the photon is removed.
+// With several lenses, the turns and end-point shifts of each add up. Segments that would turn
+// by less than minDeflection skip the lens, so photons far from every lens cost only a distance
+// check. Photons are deflected in the scene frame with the lens taken at rest at its
+// end-of-step position, and keep their wavelength (no gravitational redshift); each lens
+// receives the opposite of the momentum change it caused, through Rigidbody.applyImpulse once
+// per step.
+public class LensingStage {
+    // Lightest body that deflects photons.
+    public double minLensMass = 1e-3 * SUN_MASS;
+    // β (= b / r_s) below which the orbit is integrated directly; at least 3, since the tables
+    // only hold orbits that escape (β > 3√3/2).
+    public double strongImpactParameter = 10;
+    // β above which the first-order deflection is used instead of the tables.
+    public double weakImpactParameter = 1e5;
+    // Smallest turn per step and lens that is applied, in radians.
+    public double minDeflection = 1e-12;
+    // Bound on the RK4 steps of one strong-field integration.
+    public int maxSubsteps = 4096;
+    // Orbit tables kept in memory, about 10 kB each; 1024 cover every β up to 1e5.
+    public int tableCapacity = 1024;
+
+    // --- Statistics ---
+    public int lastPhotons = 0;
+    // Photon-lens pairs deflected in the last step, and of those, integrated directly.
+    public int lastDeflected = 0;
+    public int lastIntegrated = 0;
+    public int lastCaptured = 0;
+    public long captured = 0;
+
+    private final LensingTables tables = new LensingTables(1024);
+
+    private Rigidbody[] lenses = new Rigidbody[0];
+    private double[] lensX = new double[0];
+    private double[] lensY = new double[0];
+    private double[] schwarzschild = new double[0];
+    private double[] lensRadius = new double[0];
+    private double[] impulseX = new double[0];
+    private double[] impulseY = new double[0];
+    private int lensCount = 0;
+    private double strongBeta;
+
+    // Photon being deflected: position and unit direction, updated in place.
+    private final double[] photon = new double[4];
+    // Lens that captured the last photon deflect() returned false for.
+    private int capturer = -1;
+    // Position relative to the lens and direction at the end of the bent segment.
+    private final double[] bent = new double[4];
+    private final double[] acceleration = new double[2];
+
+    // dt: length of the step that just ended.
+    public void resolve(Scene scene, double dt) {
+        tables.capacity = Math.max(2, tableCapacity);
+        lastPhotons = 0;
+        lastDeflected = 0;
+        lastIntegrated = 0;
+        lastCaptured = 0;
+        gather(scene.bodies);
+        if (lensCount == 0) {
+            return;
+        }
+        double length = SPEED_OF_LIGHT * dt;
+        strongBeta = Math.max(3, strongImpactParameter);
+
+        List<Body> bodies = scene.bodies;
+        List<Body> removed = null;
+        for (int i = 0, n = bodies.size(); i < n; i++) {
+            if (!(bodies.get(i) instanceof Photon)) {
+                continue;
+            }
+            Photon body = (Photon) bodies.get(i);
+            lastPhotons++;
+            double speed = body.velocity.magnitude();
+            photon[0] = body.position.get(0);
+            photon[1] = body.position.get(1);
+            photon[2] = body.velocity.get(0) / speed;
+            photon[3] = body.velocity.get(1) / speed;
+            double p = body.momentum.magnitude();
+            if (!deflect(length, p)) {
+                absorb(p, body.energy);
+                if (removed == null) {
+                    removed = new ArrayList<>();
+                }
+                removed.add(body);
+                continue;
+            }
+            body.position.setComponent(0, photon[0]);
+            body.position.setComponent(1, photon[1]);
+            body.velocity.setComponent(0, photon[2] * speed);
+            body.velocity.setComponent(1, photon[3] * speed);
+            body.momentum.setComponent(0, photon[2] * p);
+            body.momentum.setComponent(1, photon[3] * p);
+        }
+        if (removed != null) {
+            scene.remove(removed);
+        }
+
+        for (int b = 0; b < scene.beams.size(); b++) {
+            PhotonBeam beam = scene.beams.get(b);
+            // Backwards, so a capture moves an already deflected photon into the freed index.
+            for (int i = beam.size() - 1; i >= 0; i--) {
+                lastPhotons++;
+                photon[0] = beam.x[i];
+                photon[1] = beam.y[i];
+                photon[2] = beam.dirX[i];
+                photon[3] = beam.dirY[i];
+                double p = beam.momentum(i);
+                if (!deflect(length, p)) {
+                    absorb(p, beam.energy(i));
+                    beam.remove(i);
+                    continue;
+                }
+                beam.x[i] = photon[0];
+                beam.y[i] = photon[1];
+                beam.dirX[i] = photon[2];
+                beam.dirY[i] = photon[3];
+            }
+        }
+
+        for (int j = 0; j < lensCount; j++) {
+            if (impulseX[j] != 0 || impulseY[j] != 0) {
+                lenses[j].applyImpulse(impulseX[j], impulseY[j]);
+            }
+            lenses[j] = null;
+        }
+        captured += lastCaptured;
+    }
+
+    private void gather(BodyStore bodies) {
+        lensCount = 0;
+        for (int i = 0, n = bodies.size(); i < n; i++) {
+            if (bodies.kind[i] == BodyStore.OTHER || bodies.mass[i] < minLensMass) {
+                continue;
+            }
+            Rigidbody body = (Rigidbody) bodies.get(i);
+            if (lensCount == lenses.length) {
+                grow(Math.max(4, 2 * lensCount));
+            }
+            lenses[lensCount] = body;
+            lensX[lensCount] = bodies.x[i];
+            lensY[lensCount] = bodies.y[i];
+            schwarzschild[lensCount] = 2 * GRAVITATIONAL_CONSTANT * bodies.mass[i] / (SPEED_OF_LIGHT * SPEED_OF_LIGHT);
+            lensRadius[lensCount] = body.radius;
+            impulseX[lensCount] = 0;
+            impulseY[lensCount] = 0;
+            lensCount++;
+        }
+    }
+    // Replaces the straight segment of the photon in `photon` by its bent path. Returns false if
+    // the photon was captured (by `capturer`).
+    private boolean deflect(double length, double p) {
+        double dx = photon[2], dy = photon[3];
+        double x0 = photon[0] - length * dx;
+        double y0 = photon[1] - length * dy;
+
+        // Sum over the lenses of the turn and of the shift of the end point. The turns are only
+        // needed as angles once a second lens bends the photon.
+        int bending = 0;
+        double turn = 0;
+        double shiftX = 0, shiftY = 0;
+        double firstX = 0, firstY = 0;
+        for (int j = 0; j < lensCount; j++) {
+            double fx = x0 - lensX[j];
+            double fy = y0 - lensY[j];
+            double rs = schwarzschild[j];
+            // Closest approach of the segment, for a bound on how much it can turn.
+            double along = Math.max(0, Math.min(length, -(fx * dx + fy * dy)));
+            double cx = fx + along * dx;
+            double cy = fy + along * dy;
+            double closest2 = cx * cx + cy * cy;
+            // min(1.5 rs length / closest², 2 rs / closest) < minDeflection, without the root.
+            if (1.5 * rs * length < minDeflection * closest2 || 4 * rs * rs < minDeflection * minDeflection * closest2) {
+                continue;
+            }
+            if (fx * fx + fy * fy < lensRadius[j] * lensRadius[j] && lensRadius[j] > 1.5 * rs) {
+                // Inside a body larger than its photon sphere: the exterior orbit does not apply.
+                continue;
+            }
+            double beta = LensingTables.impactParameter(fx / rs, fy / rs, dx, dy);
+            if (!(beta >= strongBeta)) {
+                if (!integrate(rs, fx, fy, dx, dy, length)) {
+                    capturer = j;
+                    return false;
+                }
+            } else if (beta > weakImpactParameter) {
+                firstOrder(beta, fx, fy, dx, dy, length);
+            } else {
+                double b = beta * rs;
+                double inverse = 1 / b;
+                tables.advance(beta, fx * inverse, fy * inverse, dx, dy, length * inverse, bent);
+                bent[0] *= b;
+                bent[1] *= b;
+            }
+            double ex = bent[2], ey = bent[3];
+            if (bending == 1) {
+                turn = Math.atan2(dx * firstY - dy * firstX, dx * firstX + dy * firstY);
+            }
+            if (bending >= 1) {
+                turn += Math.atan2(dx * ey - dy * ex, dx * ex + dy * ey);
+            }
+            firstX = ex;
+            firstY = ey;
+            bending++;
+            shiftX += bent[0] - (fx + length * dx);
+            shiftY += bent[1] - (fy + length * dy);
+            impulseX[j] -= p * (ex - dx);
+            impulseY[j] -= p * (ey - dy);
+            lastDeflected++;
+        }
+        if (bending == 0) {
+            return true;
+        }
+        photon[0] += shiftX;
+        photon[1] += shiftY;
+        if (bending == 1) {
+            photon[2] = firstX;
+            photon[3] = firstY;
+        } else {
+            double cos = Math.cos(turn), sin = Math.sin(turn);
+            photon[2] = cos * dx - sin * dy;
+            photon[3] = sin * dx + cos * dy;
+        }
+        return true;
+    }
+
+    // Weak field: the segment from f (relative to the lens) turns by the first-order deflection
+    // between its ends, and its end point by half of that. Result in `bent`.
+    private void firstOrder(double beta, double fx, double fy, double dx, double dy, double length) {
+        double sign = fx * dy - fy * dx >= 0 ? 1 : -1;
+        double r0 = Math.sqrt(fx * fx + fy * fy);
+        double gx = fx + length * dx;
+        double gy = fy + length * dy;
+        double angle = sign * (LensingTables.firstOrder(beta, (gx * dx + gy * dy) / Math.sqrt(gx * gx + gy * gy))
+                - LensingTables.firstOrder(beta, (fx * dx + fy * dy) / r0));
+        double cos = Math.cos(0.5 * angle), sin = Math.sin(0.5 * angle);
+        bent[0] = fx + length * (cos * dx - sin * dy);
+        bent[1] = fy + length * (sin * dx + cos * dy);
+        cos = Math.cos(angle);
+        sin = Math.sin(angle);
+        bent[2] = cos * dx - sin * dy;
+        bent[3] = sin * dx + cos * dy;
+    }
+
+    // Strong field: follows the orbit for `length` from f (relative to a lens with Schwarzschild
+    // radius rs), in units of rs. Result in `bent`; returns false if the photon was captured.
+    private boolean integrate(double rs, double fx, double fy, double dx, double dy, double length) {
+        double x = fx / rs;
+        double y = fy / rs;
+        double beta = LensingTables.impactParameter(x, y, dx, dy);
+        if (Double.isNaN(beta)) {
+            // Starts inside the horizon.
+            return false;
+        }
+        double h2 = beta * beta;
+        double speed = Math.sqrt(1 + h2 / Math.pow(x * x + y * y, 1.5));
+        double vx = dx * speed, vy = dy * speed;
+        double total = length / rs;
+        double remaining = total;
+        double[] a = acceleration;
+        lastIntegrated++;
+        while (remaining > 0) {
+            double r = Math.sqrt(x * x + y * y);
+            if (r <= 1 || (r <= 1.5 && x * vx + y * vy < 0)) {
+                return false;
+            }
+            double ds = Math.min(remaining, Math.max(LensingTables.STEP * r, total / maxSubsteps));
+            double h = ds / Math.sqrt(vx * vx + vy * vy);
+            LensingTables.binet(x, y, h2, a);
+            double k1x = vx, k1y = vy, l1x = a[0], l1y = a[1];
+            LensingTables.binet(x + 0.5 * h * k1x, y + 0.5 * h * k1y, h2, a);
+            double k2x = vx + 0.5 * h * l1x, k2y = vy + 0.5 * h * l1y, l2x = a[0], l2y = a[1];
+            LensingTables.binet(x + 0.5 * h * k2x, y + 0.5 * h * k2y, h2, a);
+            double k3x = vx + 0.5 * h * l2x, k3y = vy + 0.5 * h * l2y, l3x = a[0], l3y = a[1];
+            LensingTables.binet(x + h * k3x, y + h * k3y, h2, a);
+            double k4x = vx + h * l3x, k4y = vy + h * l3y, l4x = a[0], l4y = a[1];
+            x += h / 6 * (k1x + 2 * k2x + 2 * k3x + k4x);
+            y += h / 6 * (k1y + 2 * k2y + 2 * k3y + k4y);
+            vx += h / 6 * (l1x + 2 * l2x + 2 * l3x + l4x);
+            vy += h / 6 * (l1y + 2 * l2y + 2 * l3y + l4y);
+            remaining -= ds;
+        }
+        double v = Math.sqrt(vx * vx + vy * vy);
+        bent[0] = x * rs;
+        bent[1] = y * rs;
+        bent[2] = vx / v;
+        bent[3] = vy / v;
+        return true;
+    }
+
+    // The photon in `photon` falls into `capturer`, whose rest mass grows by the energy it takes in
+    // (Rigidbody.absorb).
+    private void absorb(double p, double energy) {
+        lenses[capturer].absorb(p * photon[2], p * photon[3], energy);
+        lastCaptured++;
+    }
+
+    private void grow(int capacity) {
+        lenses = Arrays.copyOf(lenses, capacity);
+        lensX = Arrays.copyOf(lensX, capacity);
+        lensY = Arrays.copyOf(lensY, capacity);
+        schwarzschild = Arrays.copyOf(schwarzschild, capacity);
+        lensRadius = Arrays.copyOf(lensRadius, capacity);
+        impulseX = Arrays.copyOf(impulseX, capacity);
+        impulseY = Arrays.copyOf(impulseY, capacity);
+    }
+
+    // --- Table cache statistics ---
+    public int cachedTables() {
+        return tables.size();
+    }
+
+    public long tableHits() {
+        return tables.hits;
+    }
+
+    public long tableBuilds() {
+        return tables.builds;
+    }
+
+    public long tableEvictions() {
+        return tables.evictions;
+    }
+
+    // Settings only; the copy starts with an empty table cache.
+    public LensingStage copy() {
+        LensingStage copy = new LensingStage();
+        copy.minLensMass = minLensMass;
+        copy.strongImpactParameter = strongImpactParameter;
+        copy.weakImpactParameter = weakImpactParameter;
+        copy.minDeflection = minDeflection;
+        copy.maxSubsteps = maxSubsteps;
+        copy.tableCapacity = tableCapacity;
+        return copy;
+    }
+}
@@ -0,0 +1,403 @@
+package engine;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+// Photon orbits around a point mass, tabulated for the LensingStage.
+//
+// The spatial orbit of a photon around a mass M with impact parameter b is the orbit of a
+// particle under the Binet acceleration -(3/2) r_s h² r̂ / r⁴ (h = |r × v|, r_s = 2GM/c²). In
+// units of b it depends on b and M only through β = b / r_s, so one table serves lenses of every
+// mass. A table holds one orbit, coming in along +x above the lens (at the origin) and turning
+// clockwise, as position and unit tangent at fixed arc lengths σ from closest approach (in units
+// of b), spaced evenly in asinh σ over |σ| <= SPAN: finely around closest approach, coarsely far
+// out, where the orbit is nearly straight. Beyond SPAN the orbit continues straight, turning by
+// the first-order deflection of the tails.
+//
+// A photon is located on its orbit by ζ = (position · direction) / b, the signed distance to
+// the closest approach of its tangent line, which grows monotonically along every orbit the
+// tables hold (β >= 3) and equals σ far from the lens. Moving it by a path length is then a
+// lookup at σ + length, rotated (and mirrored, for counterclockwise orbits) onto the photon.
+//
+// Tables are computed on demand for β on a grid with 1 % spacing, by RK4 from SPAN + 50 b before
+// closest approach to as far after it, and kept in an access-ordered map that evicts the least
+// recently used table beyond `capacity` (about 10 kB each). A photon follows the orbit
+// interpolated, node by node, between the tables of the two grid neighbours of its β.
+final class LensingTables {
+    static final int SAMPLES = 257;
+    // Ratio of neighbouring β on the table grid.
+    static final double SPACING = 0.01;
+    private static final double LOG_SPACING = Math.log1p(SPACING);
+    private static final double INVERSE_LOG_SPACING = 1 / LOG_SPACING;
+    // Tabulated arc lengths, in units of b, on either side of closest approach.
+    static final double SPAN = 150;
+    private static final double SPAN_ASINH = asinh(SPAN);
+    private static final double NODE_SPACING = 2 * SPAN_ASINH / (SAMPLES - 1);
+    // Arc length of every node, shared by all tables, and 1 / (SIGMA[i + 1] - SIGMA[i]).
+    private static final double[] SIGMA = new double[SAMPLES];
+    private static final double[] INVERSE_GAP = new double[SAMPLES - 1];
+    // RK4 step when building a table, as a fraction of the distance to the lens. Strong-field
+    // integration in the LensingStage uses STEP.
+    private static final double BUILD_STEP = 0.005;
+    static final double STEP = 0.02;
+
+    // firstOrder's u = σ / √(1 + σ²) at the first and the last node, where the tails start.
+    private static final double U_FIRST, U_LAST;
+
+    static {
+        for (int i = 0; i < SAMPLES; i++) {
+            SIGMA[i] = Math.sinh(-SPAN_ASINH + i * NODE_SPACING);
+        }
+        for (int i = 0; i < SAMPLES - 1; i++) {
+            INVERSE_GAP[i] = 1 / (SIGMA[i + 1] - SIGMA[i]);
+        }
+        U_FIRST = SIGMA[0] / Math.sqrt(1 + SIGMA[0] * SIGMA[0]);
+        U_LAST = SIGMA[SAMPLES - 1] / Math.sqrt(1 + SIGMA[SAMPLES - 1] * SIGMA[SAMPLES - 1]);
+    }
+
+    // One tabulated orbit, in units of b: ζ, x, y, tx, ty of node i at [FIELDS i, FIELDS i + 5),
+    // so the two nodes around a photon share a few cache lines.
+    private static final int FIELDS = 5;
+    private static final int ZETA = 0, X = 1, Y = 2, TX = 3, TY = 4;
+
+    private static final class Orbit {
+        final double[] node = new double[FIELDS * SAMPLES];
+    }
+
+    int capacity;
+
+    // --- Statistics ---
+    long hits = 0;
+    long builds = 0;
+    long evictions = 0;
+
+    private final LinkedHashMap<Integer, Orbit> tables;
+    // The orbits around the last β passed to advance(); neighbouring photons of a beam usually
+    // keep the same pair. Evicting them from the map is harmless, these references stay valid.
+    private int lowerKey = Integer.MIN_VALUE;
+    private Orbit lower, upper;
+    // β of the two grid points, for the weight of a β between them without a logarithm.
+    private double lowerBeta = Double.NaN, upperBeta = Double.NaN, inverseLowerBeta;
+
+    private final double[] start = new double[4];
+    private final double[] end = new double[4];
+    private final int[] node = new int[1];
+    // Nodes of the start and end of the last advance(); photons of a beam move in step, so they
+    // are where the next photon's nodes are searched from.
+    private int lastStart = 0;
+    private int lastEnd = 0;
+
+    LensingTables(int capacity) {
+        this.capacity = capacity;
+        this.tables = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Integer, Orbit> eldest) {
+                if (size() > LensingTables.this.capacity) {
+                    evictions++;
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    int size() {
+        return tables.size();
+    }
+
+    // Moves a photon at (x, y) with unit direction (dx, dy), relative to the lens and in units of
+    // b, by `length` (also in units of b) along its orbit with impact parameter beta (in units of
+    // r_s). Stores the new position and direction in out[0..3].
+    void advance(double beta, double x, double y, double dx, double dy, double length, double[] out) {
+        // The weight of the upper table, linear in log β. Within the pair it is log(1 + q) /
+        // log(1 + SPACING) for q = β / lowerBeta - 1 < 1 %, where five terms of the series for
+        // log(1 + q) are exact to 1e-12 without a call to Math.log per photon.
+        if (!(beta >= lowerBeta && beta < upperBeta)) {
+            int key = (int) Math.floor(Math.log(beta) / LOG_SPACING);
+            if (key != lowerKey) {
+                lower = table(key);
+                upper = table(key + 1);
+                lowerKey = key;
+            }
+            lowerBeta = Math.exp(key * LOG_SPACING);
+            upperBeta = Math.exp((key + 1) * LOG_SPACING);
+            inverseLowerBeta = 1 / lowerBeta;
+        }
+        double q = (beta - lowerBeta) * inverseLowerBeta;
+        double w = q * (1 - q * (1d / 2 - q * (1d / 3 - q * (1d / 4 - q * 0.2)))) * INVERSE_LOG_SPACING;
+
+        // The tables turn clockwise; mirror counterclockwise orbits.
+        boolean mirror = x * dy - y * dx > 0;
+        if (mirror) {
+            y = -y;
+            dy = -dy;
+        }
+        double zeta = x * dx + y * dy;
+        int[] node = this.node;
+        node[0] = lastStart;
+        double sigma = locate(lower, upper, w, zeta, node);
+        evaluate(lower, upper, w, beta, sigma, node[0], start);
+        double sigmaEnd = sigma + length;
+        int endNode = nodeNear(sigmaEnd, lastEnd);
+        evaluate(lower, upper, w, beta, sigmaEnd, endNode, end);
+        lastStart = node[0];
+        lastEnd = endNode;
+        // Rotation taking the orbit's tangent at the start onto the photon's direction.
+        double cos = start[2] * dx + start[3] * dy;
+        double sin = start[2] * dy - start[3] * dx;
+        double sx = end[0] - start[0], sy = end[1] - start[1];
+        double ty = sin * end[2] + cos * end[3];
+        out[0] = x + cos * sx - sin * sy;
+        double py = y + sin * sx + cos * sy;
+        out[1] = mirror ? -py : py;
+        out[2] = cos * end[2] - sin * end[3];
+        out[3] = mirror ? -ty : ty;
+    }
+
+    // Arc length at which ζ of the orbit between `lower` and `upper` (weight w) equals zeta;
+    // stores the node below it in node[0], which holds a guess on entry.
+    private static double locate(Orbit lower, Orbit upper, double w, double zeta, int[] node) {
+        double[] zl = lower.node, zu = upper.node;
+        double first = blend(zl, zu, w, 0, ZETA);
+        if (zeta <= first) {
+            node[0] = -1;
+            return SIGMA[0] + (zeta - first);
+        }
+        double last = blend(zl, zu, w, SAMPLES - 1, ZETA);
+        if (zeta >= last) {
+            node[0] = SAMPLES - 1;
+            return SIGMA[SAMPLES - 1] + (zeta - last);
+        }
+        // ζ is close to σ, so the node of σ = ζ is a good first guess.
+        int i = Math.max(0, Math.min(nodeNear(zeta, node[0]), SAMPLES - 2));
+        double below = blend(zl, zu, w, i, ZETA);
+        double above = blend(zl, zu, w, i + 1, ZETA);
+        while (i < SAMPLES - 2 && above < zeta) {
+            i++;
+            below = above;
+            above = blend(zl, zu, w, i + 1, ZETA);
+        }
+        while (i > 0 && below > zeta) {
+            i--;
+            above = below;
+            below = blend(zl, zu, w, i, ZETA);
+        }
+        node[0] = i;
+        return SIGMA[i] + (zeta - below) / (above - below) * (SIGMA[i + 1] - SIGMA[i]);
+    }
+
+    // Position and tangent at arc length sigma, whose node is i (-1 or SAMPLES - 1 outside the
+    // nodes), of the orbit between `lower` and `upper` into out[0..3].
+    private static void evaluate(Orbit lower, Orbit upper, double w, double beta, double sigma, int i, double[] out) {
+        double[] l = lower.node, u = upper.node;
+        if (i >= 0 && i < SAMPLES - 1) {
+            double v = (sigma - SIGMA[i]) * INVERSE_GAP[i];
+            double x0 = blend(l, u, w, i, X), x1 = blend(l, u, w, i + 1, X);
+            double y0 = blend(l, u, w, i, Y), y1 = blend(l, u, w, i + 1, Y);
+            double tx0 = blend(l, u, w, i, TX), tx1 = blend(l, u, w, i + 1, TX);
+            double ty0 = blend(l, u, w, i, TY), ty1 = blend(l, u, w, i + 1, TY);
+            out[0] = x0 + v * (x1 - x0);
+            out[1] = y0 + v * (y1 - y0);
+            double tx = tx0 + v * (tx1 - tx0);
+            double ty = ty0 + v * (ty1 - ty0);
+            double norm = 1 / Math.sqrt(tx * tx + ty * ty);
+            out[2] = tx * norm;
+            out[3] = ty * norm;
+            return;
+        }
+        // Straight on from the end node, turning by the first-order deflection of the tail.
+        int edge = i < 0 ? 0 : SAMPLES - 1;
+        double tx = blend(l, u, w, edge, TX);
+        double ty = blend(l, u, w, edge, TY);
+        double norm = 1 / Math.sqrt(tx * tx + ty * ty);
+        tx *= norm;
+        ty *= norm;
+        double along = sigma - SIGMA[edge];
+        out[0] = blend(l, u, w, edge, X) + along * tx;
+        out[1] = blend(l, u, w, edge, Y) + along * ty;
+        double turn = firstOrder(beta, sigma / Math.sqrt(1 + sigma * sigma))
+                - firstOrder(beta, i < 0 ? U_FIRST : U_LAST);
+        double cos = 1 - 0.5 * turn * turn;
+        out[2] = cos * tx + turn * ty;
+        out[3] = cos * ty - turn * tx;
+    }
+
+    // Field `field` of node i, between the two tables.
+    private static double blend(double[] lower, double[] upper, double w, int i, int field) {
+        int k = FIELDS * i + field;
+        return lower[k] + w * (upper[k] - lower[k]);
+    }
+
+    // Node at or below arc length sigma: -1 before the first node, SAMPLES - 1 from the last.
+    private static int nodeAt(double sigma) {
+        if (!(sigma > SIGMA[0])) {
+            return -1;
+        }
+        if (sigma >= SIGMA[SAMPLES - 1]) {
+            return SAMPLES - 1;
+        }
+        return Math.min(SAMPLES - 2, Math.max(0, (int) ((asinh(sigma) + SPAN_ASINH) / NODE_SPACING)));
+    }
+
+    // nodeAt(sigma), searched from `guess` for a few nodes before falling back to nodeAt.
+    private static int nodeNear(double sigma, int guess) {
+        if (!(sigma > SIGMA[0])) {
+            return -1;
+        }
+        if (sigma >= SIGMA[SAMPLES - 1]) {
+            return SAMPLES - 1;
+        }
+        int i = Math.max(0, Math.min(guess, SAMPLES - 2));
+        for (int walk = 0; walk < 4; walk++) {
+            if (SIGMA[i] > sigma) {
+                i--;
+            } else if (SIGMA[i + 1] <= sigma) {
+                i++;
+            } else {
+                return i;
+            }
+        }
+        return nodeAt(sigma);
+    }
+
+    private static double asinh(double x) {
+        return Math.copySign(Math.log(Math.abs(x) + Math.sqrt(x * x + 1)), x);
+    }
+
+    // Angle turned since coming in from infinity to first order in 1 / β, at u = cos(angle
+    // between the lens-to-photon vector and the direction): the straight-line integral of the
+    // Binet acceleration, 2 / β in total.
+    static double firstOrder(double beta, double u) {
+        return 1.5 / beta * (u - u * u * u / 3 + 2d / 3);
+    }
+
+    private Orbit table(int key) {
+        Orbit table = tables.get(key);
+        if (table == null) {
+            table = build(Math.exp(key * LOG_SPACING));
+            tables.put(key, table);
+            builds++;
+        } else {
+            hits++;
+        }
+        return table;
+    }
+
+    // Integrates the orbit with impact parameter beta in units of r_s, then resamples it onto
+    // the nodes in units of b.
+    private static Orbit build(double beta) {
+        double distance = (SPAN + 50) * beta;
+        double uStart = -distance / Math.sqrt(distance * distance + beta * beta);
+        double turnedStart = firstOrder(beta, uStart);
+
+        // Start on the incoming line, already turned by the tail, at the height that gives
+        // the orbit the conserved impact parameter beta.
+        double dx = Math.cos(turnedStart);
+        double dy = -Math.sin(turnedStart);
+        double x = -distance;
+        double y = beta;
+        for (int iteration = 0; iteration < 4; iteration++) {
+            y *= beta / impactParameter(x, y, dx, dy);
+        }
+        // Binet velocity, of unit speed far from the lens.
+        double speed = Math.sqrt(1 + beta * beta / Math.pow(x * x + y * y, 1.5));
+        double vx = dx * speed, vy = dy * speed;
+        double h2 = beta * beta;
+
+        // Arc length, position and velocity after every RK4 step.
+        int capacity = 4096;
+        double[] s = new double[capacity];
+        double[] xs = new double[capacity];
+        double[] ys = new double[capacity];
+        double[] vxs = new double[capacity];
+        double[] vys = new double[capacity];
+        int n = 0;
+        double arc = 0;
+        double periapsis = Double.NaN;
+        double[] a = new double[2];
+        while (true) {
+            if (n == capacity) {
+                capacity *= 2;
+                s = Arrays.copyOf(s, capacity);
+                xs = Arrays.copyOf(xs, capacity);
+                ys = Arrays.copyOf(ys, capacity);
+                vxs = Arrays.copyOf(vxs, capacity);
+                vys = Arrays.copyOf(vys, capacity);
+            }
+            s[n] = arc;
+            xs[n] = x;
+            ys[n] = y;
+            vxs[n] = vx;
+            vys[n] = vy;
+            n++;
+            if (!Double.isNaN(periapsis) && arc - periapsis > distance) {
+                break;
+            }
+
+            double r = Math.sqrt(x * x + y * y);
+            double v = Math.sqrt(vx * vx + vy * vy);
+            double h = BUILD_STEP * r / v;
+            double radial = x * vx + y * vy;
+            binet(x, y, h2, a);
+            double k1x = vx, k1y = vy, l1x = a[0], l1y = a[1];
+            binet(x + 0.5 * h * k1x, y + 0.5 * h * k1y, h2, a);
+            double k2x = vx + 0.5 * h * l1x, k2y = vy + 0.5 * h * l1y, l2x = a[0], l2y = a[1];
+            binet(x + 0.5 * h * k2x, y + 0.5 * h * k2y, h2, a);
+            double k3x = vx + 0.5 * h * l2x, k3y = vy + 0.5 * h * l2y, l3x = a[0], l3y = a[1];
+            binet(x + h * k3x, y + h * k3y, h2, a);
+            double k4x = vx + h * l3x, k4y = vy + h * l3y, l4x = a[0], l4y = a[1];
+            x += h / 6 * (k1x + 2 * k2x + 2 * k3x + k4x);
+            y += h / 6 * (k1y + 2 * k2y + 2 * k3y + k4y);
+            vx += h / 6 * (l1x + 2 * l2x + 2 * l3x + l4x);
+            vy += h / 6 * (l1y + 2 * l2y + 2 * l3y + l4y);
+            double step = 0.5 * (v + Math.sqrt(vx * vx + vy * vy)) * h;
+            double radialAfter = x * vx + y * vy;
+            if (radial < 0 && radialAfter >= 0) {
+                periapsis = arc + step * radial / (radial - radialAfter);
+            }
+            arc += step;
+        }
+
+        // Resample at the nodes, interpolating linearly in arc length between RK4 steps.
+        Orbit orbit = new Orbit();
+        int j = 0;
+        for (int i = 0; i < SAMPLES; i++) {
+            double target = periapsis + SIGMA[i] * beta;
+            while (s[j + 1] < target) {
+                j++;
+            }
+            double w = (target - s[j]) / (s[j + 1] - s[j]);
+            double px = (xs[j] + w * (xs[j + 1] - xs[j])) / beta;
+            double py = (ys[j] + w * (ys[j + 1] - ys[j])) / beta;
+            double tx = vxs[j] + w * (vxs[j + 1] - vxs[j]);
+            double ty = vys[j] + w * (vys[j + 1] - vys[j]);
+            double norm = 1 / Math.sqrt(tx * tx + ty * ty);
+            tx *= norm;
+            ty *= norm;
+            int k = FIELDS * i;
+            orbit.node[k + ZETA] = px * tx + py * ty;
+            orbit.node[k + X] = px;
+            orbit.node[k + Y] = py;
+            orbit.node[k + TX] = tx;
+            orbit.node[k + TY] = ty;
+        }
+        return orbit;
+    }
+
+    // Binet acceleration at (x, y) for h² = h2, in units of r_s, into out[0], out[1].
+    static void binet(double x, double y, double h2, double[] out) {
+        double r2 = x * x + y * y;
+        double factor = -1.5 * h2 / (r2 * r2 * Math.sqrt(r2));
+        out[0] = factor * x;
+        out[1] = factor * y;
+    }
+
+    // Conserved impact parameter, in units of r_s, of the orbit through (x, y) (relative to the
+    // lens, in units of r_s) with unit direction (dx, dy); NaN inside the horizon.
+    static double impactParameter(double x, double y, double dx, double dy) {
+        double r = Math.sqrt(x * x + y * y);
+        double sin = Math.abs(x * dy - y * dx) / r;
+        return r * sin / Math.sqrt(1 - sin * sin / r);
+    }
+}
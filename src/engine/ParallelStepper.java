@@ -0,0 +1,218 @@
+package engine;
+
+import engine.bodies.Body;
+import engine.forces.ForceSolver;
+import engine.integrators.PairwiseSum;
+import engine.integrators.SerialPhases;
+import engine.integrators.StepPhases;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+// Runs the step phases of a scene's integrator on a pool of worker threads.
+// Each phase is a barrier: force accumulation prepares every solver once and then accumulates
+// into chunks of bodies; kick, drift and the other body phases run over chunks of bodies.
+// Every chunk only writes to its own bodies, so no locking is needed inside a phase.
+//
+// Phases over fewer bodies than the thresholds below run on the calling thread instead, as
+// SerialPhases would: for a handful of bodies forking the pool costs far more than the phase.
+//
+// None of this depends on how the bodies are split: every body's force is summed by one thread
+// over the sources in a fixed order, and the body phases have no sums across bodies. Only the
+// reductions of sum() do, so that is where the deterministic mode applies.
+public class ParallelStepper implements StepPhases {
+    // Below this many bodies per chunk the task overhead outweighs the work.
+    private static final int MIN_CHUNK = 64;
+    // Force accumulation runs on the pool from this many target bodies on, every other phase
+    // (kick, drift, sums, ...) from this many bodies on; they do far less work per body.
+    public int minParallelTargets = 256;
+    public int minParallelBodies = 8192;
+    // Chunks per thread, so uneven chunks (e.g. deep tree walks) still balance out.
+    private static final int CHUNKS_PER_THREAD = 4;
+
+    public final int threads;
+    private final ForkJoinPool pool;
+    // When set, sum() without a fixedTree argument uses the fixed chunks and tree of PairwiseSum,
+    // which give the same bits as SerialPhases for any thread count. Otherwise the chunks follow
+    // the thread count and their partials are added left to right, so totals can differ in the
+    // last bits between pools.
+    public volatile boolean deterministic = false;
+    // Partials of sum(), one set per calling thread, since one stepper may serve several
+    // simulations (Simulation.setStepper).
+    private final ThreadLocal<double[][]> partials = ThreadLocal.withInitial(() -> new double[0][]);
+
+    public ParallelStepper(int threads) {
+        if (threads < 1) {
+            throw new IllegalArgumentException("Thread count must be at least 1, got " + threads);
+        }
+        this.threads = threads;
+        this.pool = new ForkJoinPool(threads);
+    }
+
+    // One step with the scene's integrator, every phase spread over the pool.
+    public void step(Scene scene, double dt) {
+        scene.integrator.step(scene, dt, this);
+    }
+
+    @Override
+    public void computeForces(Scene scene) {
+        BodyStore bodies = scene.bodies;
+        int n = bodies.size();
+        if (n < minParallelTargets) {
+            SerialPhases.INSTANCE.computeForces(scene);
+            return;
+        }
+        int chunk = chunkSize(n);
+        for (int s = 0; s < scene.forceSolvers.size(); s++) {
+            ForceSolver solver = scene.forceSolvers.get(s);
+            solver.prepare(bodies);
+            pool.invoke(new RangeAction(0, n, chunk, (from, to) -> solver.accumulate(bodies, from, to)));
+        }
+    }
+
+    @Override
+    public void computeForces(Scene scene, int[] targets, int count, boolean rebuild) {
+        if (count < minParallelTargets) {
+            SerialPhases.INSTANCE.computeForces(scene, targets, count, rebuild);
+            return;
+        }
+        BodyStore bodies = scene.bodies;
+        int chunk = chunkSize(count);
+        for (int s = 0; s < scene.forceSolvers.size(); s++) {
+            ForceSolver solver = scene.forceSolvers.get(s);
+            if (rebuild) {
+                solver.prepare(bodies);
+            } else {
+                solver.refresh(bodies);
+            }
+            pool.invoke(new RangeAction(0, count, chunk, (from, to) -> solver.accumulate(bodies, targets, from, to)));
+        }
+    }
+
+    @Override
+    public void kick(Scene scene, double dt) {
+        forEach(scene, (from, to) -> scene.bodies.kick(from, to, dt));
+    }
+
+    @Override
+    public void drift(Scene scene, double dt) {
+        forEach(scene, (from, to) -> scene.bodies.drift(from, to, dt));
+    }
+
+    @Override
+    public void clearForces(Scene scene) {
+        forEach(scene, (from, to) -> scene.bodies.clearForces(from, to));
+    }
+
+    @Override
+    public void update(Scene scene, double dt) {
+        forEach(scene, (from, to) -> scene.bodies.update(from, to, dt));
+    }
+
+    @Override
+    public void endStep(Scene scene) {
+        forEach(scene, (from, to) -> scene.bodies.endStep(from, to));
+    }
+
+    @Override
+    public void sum(Scene scene, double[] totals, BodySum terms) {
+        sum(scene, totals, terms, deterministic);
+    }
+
+    @Override
+    public void sum(Scene scene, double[] totals, BodySum terms, boolean fixedTree) {
+        List<Body> bodies = scene.bodies;
+        int n = bodies.size();
+        if (n < minParallelBodies) {
+            // SerialPhases adds along the fixed tree, which suits either mode.
+            SerialPhases.INSTANCE.sum(scene, totals, terms, true);
+            return;
+        }
+        if (fixedTree) {
+            int chunks = PairwiseSum.chunks(n);
+            double[][] buffers = PairwiseSum.ensure(partials.get(), chunks, totals.length);
+            partials.set(buffers);
+            pool.invoke(new RangeAction(0, chunks, 1, (from, to) -> {
+                for (int c = from; c < to; c++) {
+                    PairwiseSum.chunk(bodies, c, buffers[c], terms);
+                }
+            }));
+            PairwiseSum.combine(buffers, chunks, totals);
+            return;
+        }
+        int chunk = chunkSize(n);
+        int chunks = Math.max(1, (n + chunk - 1) / chunk);
+        double[][] buffers = PairwiseSum.ensure(partials.get(), chunks, totals.length);
+        partials.set(buffers);
+        pool.invoke(new RangeAction(0, chunks, 1, (from, to) -> {
+            for (int c = from; c < to; c++) {
+                double[] partial = buffers[c];
+                Arrays.fill(partial, 0);
+                for (int i = c * chunk, end = Math.min(n, i + chunk); i < end; i++) {
+                    terms.add(i, bodies.get(i), partial);
+                }
+            }
+        }));
+        Arrays.fill(totals, 0);
+        for (int c = 0; c < chunks; c++) {
+            for (int k = 0; k < totals.length; k++) {
+                totals[k] += buffers[c][k];
+            }
+        }
+    }
+
+    // invoke() returns only once every chunk is done, which is the barrier between phases.
+    // Small scenes run the whole range on the calling thread.
+    private void forEach(Scene scene, RangeTask task) {
+        int n = scene.bodies.size();
+        if (n < minParallelBodies) {
+            task.run(0, n);
+            return;
+        }
+        pool.invoke(new RangeAction(0, n, chunkSize(n), task));
+    }
+
+    public void shutdown() {
+        pool.shutdown();
+    }
+
+    private int chunkSize(int n) {
+        int chunks = threads * CHUNKS_PER_THREAD;
+        return Math.max(MIN_CHUNK, (n + chunks - 1) / chunks);
+    }
+
+    // Work on the index range [from, to).
+    interface RangeTask {
+        void run(int from, int to);
+    }
+
+    // Splits a range in halves until it fits in one chunk.
+    private static final class RangeAction extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final int from;
+        private final int to;
+        private final int chunk;
+        // Tasks only live for one invoke() and are never serialized.
+        private final transient RangeTask task;
+
+        RangeAction(int from, int to, int chunk, RangeTask task) {
+            this.from = from;
+            this.to = to;
+            this.chunk = chunk;
+            this.task = task;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= chunk) {
+                task.run(from, to);
+                return;
+            }
+            int mid = (from + to) >>> 1;
+            invokeAll(new RangeAction(from, mid, chunk, task), new RangeAction(mid, to, chunk, task));
+        }
+    }
+}
@@ -1,20 +1,100 @@
 package engine;
 
 import engine.bodies.Body;
+import engine.bodies.PhotonBeam;
+import engine.collision.CollisionStage;
+import engine.collision.RadiationStage;
+import engine.forces.ForceSolver;
+import engine.integrators.EulerIntegrator;
+import engine.integrators.Integrator;
 
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Set;
 
 public class Scene
 {
-    public List<Body> bodies = new ArrayList<>();
+    // The bodies, with the state of the Rigidbodies among them in contiguous columns.
+    public final BodyStore bodies = new BodyStore();
+    // Photons kept in bulk; they move in straight lines after every step.
+    public List<PhotonBeam> beams = new ArrayList<>();
     public double timeStep = 0d;
+    // Force stages (gravity, ...) evaluated every step before the bodies are integrated.
+    public List<ForceSolver> forceSolvers = new ArrayList<>();
+    // How the bodies are advanced each step. Euler keeps the original behaviour; the symplectic
+    // integrators allow much larger steps for the same long-term energy error.
+    public Integrator integrator = new EulerIntegrator();
+    // Contact handling after every step; null (the default) lets bodies pass through each other.
+    public CollisionStage collisions = null;
+    // Bends photon paths around massive bodies after every step; null keeps photons straight.
+    public LensingStage lensing = null;
+    // Photon absorption and reflection by bodies after every step; null lets photons pass through.
+    public RadiationStage radiation = null;
+    // Puts bodies at rest to sleep so the integrator skips them; null keeps every body awake.
+    public SleepStage sleep = null;
+    // Samples total energy and momenta every few steps; null skips the bookkeeping.
+    public ConservationMonitor conservation = null;
 
     public void add(Body bodyToAdd) {
         bodies.add(bodyToAdd);
     }
 
     public void add(List<Body> bodiesToAdd) {
-        bodies.addAll(bodiesToAdd);
+        for (Body body : bodiesToAdd) {
+            add(body);
+        }
+    }
+
+    public void remove(Body bodyToRemove) {
+        bodies.remove(bodyToRemove);
+    }
+
+    // Removes several bodies with one pass over the body list.
+    public void remove(List<Body> bodiesToRemove) {
+        Set<Body> removed = Collections.newSetFromMap(new IdentityHashMap<>());
+        removed.addAll(bodiesToRemove);
+        bodies.removeIf(removed::contains);
+    }
+
+    public void add(PhotonBeam beam) {
+        beams.add(beam);
+    }
+
+    // Photons in all beams.
+    public int beamPhotonCount() {
+        int total = 0;
+        for (int i = 0; i < beams.size(); i++) {
+            total += beams.get(i).size();
+        }
+        return total;
+    }
+
+    public void addForceSolver(ForceSolver solver) {
+        forceSolvers.add(solver);
+    }
+
+    // Deep copy for running the same setup again (ensembles, parameter sweeps): every body and
+    // solver is copied, so stepping the copy never touches this scene.
+    public Scene copy() {
+        Scene copy = new Scene();
+        copy.timeStep = timeStep;
+        copy.integrator = integrator.copy();
+        copy.collisions = collisions != null ? collisions.copy() : null;
+        copy.lensing = lensing != null ? lensing.copy() : null;
+        copy.radiation = radiation != null ? radiation.copy() : null;
+        copy.sleep = sleep != null ? sleep.copy() : null;
+        copy.conservation = conservation != null ? conservation.copy() : null;
+        for (int i = 0; i < bodies.size(); i++) {
+            copy.add(bodies.get(i).copy());
+        }
+        for (int i = 0; i < beams.size(); i++) {
+            copy.add(beams.get(i).copy());
+        }
+        for (int i = 0; i < forceSolvers.size(); i++) {
+            copy.addForceSolver(forceSolvers.get(i).copy());
+        }
+        return copy;
     }
 }
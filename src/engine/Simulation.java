@@ -0,0 +1,308 @@
+package engine;
+
+import engine.integrators.SerialPhases;
+import engine.integrators.StepPhases;
+
+// One independent simulation: a scene plus its own clock, step configuration, scheduler,
+// snapshots and worker threads. Any number of these can run in the same JVM, each stepped
+// by its own thread (start(), or a caller's executor calling runUntil()).
+//
+// A simulation is driven by one thread at a time. Only togglePlay(), terminate() and
+// snapshots.latest() are meant to be called from other threads.
+public class Simulation {
+    public double timeStep = 1 / 60d;
+    public double timeScale = 1d;
+    // Total simulation time
+    public double uptime = 0d;
+    // Fixed steps taken since load().
+    public long stepCount = 0;
+    // Accumulated real time since the last fixed update (in seconds), used by the real-time loop.
+    public double deltaTime = 0d;
+    // Print every body once per real-time second while running in real time.
+    public boolean debugOutput = false;
+
+    public Scene scene = null;
+
+    // State published at step boundaries for readers on other threads.
+    public final SnapshotBuffer snapshots = new SnapshotBuffer();
+    // Paces the real-time loop; replaced on every run() after a shutdown.
+    public StepScheduler scheduler = new StepScheduler();
+
+    private long lastUpdateTime;
+    private double debugAccumulator = 0;
+    private volatile boolean isRunning = true;
+    private volatile boolean loopActive = false;
+
+    private int threadCount = 1;
+    private ParallelStepper stepper = null;
+    // False when the stepper was handed in by the caller and is shared with other simulations.
+    private boolean ownsStepper = false;
+    private boolean deterministic = false;
+
+    public Simulation() {
+    }
+
+    public Simulation(Scene scene) {
+        load(scene);
+    }
+
+    // Makes the scene current and resets the clocks, without starting the real-time loop.
+    public final void load(Scene sceneToUse) {
+        scene = sceneToUse;
+        deltaTime = 0d;
+        uptime = 0d;
+        stepCount = 0;
+        debugAccumulator = 0;
+        lastUpdateTime = System.nanoTime();
+        if (scene != null) {
+            scene.integrator.reset();
+            if (scene.conservation != null) {
+                scene.conservation.reset();
+                scene.conservation.sample(scene, phases(), deterministic, uptime, stepCount);
+            }
+            publishSnapshot();
+        }
+    }
+
+    // -----------------------------------------------------------------
+    // Real-time loop
+    // -----------------------------------------------------------------
+    // Steps the scene in real time on the calling thread until terminate().
+    public void run() {
+        if (scene == null) {
+            throw new IllegalStateException("No scene loaded");
+        }
+        if (scheduler.isShutdown()) {
+            scheduler = new StepScheduler();
+        }
+        lastUpdateTime = System.nanoTime();
+        loopActive = true;
+        try {
+            while (!scheduler.isShutdown()) {
+                update();
+                if (!isRunning) {
+                    scheduler.awaitWhile(() -> !isRunning);
+                    lastUpdateTime = System.nanoTime();
+                    continue;
+                }
+                // The next step is due once the accumulator reaches timeStep again.
+                long untilNextStep = (long) ((timeStep - deltaTime) * 1e9);
+                scheduler.awaitDeadline(lastUpdateTime + untilNextStep);
+            }
+        } finally {
+            loopActive = false;
+            finish();
+        }
+    }
+
+    // Runs the real-time loop on a new thread and returns it.
+    public Thread start(String threadName) {
+        Thread thread = new Thread(this::run, threadName);
+        thread.start();
+        return thread;
+    }
+
+    // Takes as many fixed steps as the real time since the last call allows, then publishes a snapshot.
+    public void update() {
+        if (!isRunning) {
+            lastUpdateTime = System.nanoTime();
+            return;
+        }
+
+        long now = System.nanoTime();
+        double frameTime = (now - lastUpdateTime) / 1e9;
+        lastUpdateTime = now;
+        deltaTime += frameTime;
+
+        if (deltaTime > 0.25) {
+            deltaTime = 0.25;
+        }
+        debugAccumulator += frameTime;
+
+        boolean stepped = false;
+        while (deltaTime >= timeStep) {
+            stepOnce();
+            deltaTime -= timeStep;
+            stepped = true;
+        }
+        if (stepped) {
+            publishSnapshot();
+        }
+
+        if (debugOutput && debugAccumulator >= 1.0) {
+            Snapshot frame = snapshots.lastPublished();
+            for (int i = 0; i < frame.count; i++) {
+                Debugger.debugBody(frame, i);
+            }
+            if (frame.hasConservation) {
+                Debugger.debugConservation(frame);
+            }
+            debugAccumulator -= 1.0;
+        }
+    }
+
+    // -----------------------------------------------------------------
+    // Headless batch stepping
+    // -----------------------------------------------------------------
+    // Advances the scene by n fixed steps of timeStep * timeScale.
+    public void step(long n) {
+        for (long i = 0; i < n; i++) {
+            stepOnce();
+        }
+    }
+
+    // Steps until uptime reaches simTime (simulated seconds). Returns the number of steps taken.
+    // An adaptive integrator sets the length of each step, so these are not fixed steps then.
+    public long runUntil(double simTime) {
+        if (timeStep * timeScale <= 0) {
+            throw new IllegalStateException("runUntil needs a positive timeStep * timeScale");
+        }
+        long steps = 0;
+        while (uptime < simTime) {
+            if (scene.integrator.isAdaptive()) {
+                stepOnce(Math.min(scene.integrator.preferredStep(timeStep * timeScale), simTime - uptime));
+            } else {
+                stepOnce();
+            }
+            steps++;
+        }
+        return steps;
+    }
+
+    // One fixed step with the scene's integrator and the photon beams, then lensing, collisions,
+    // photon hits, sleeping, the clock and, every few steps, the conservation sample.
+    private void stepOnce() {
+        stepOnce(timeStep * timeScale);
+    }
+
+    private void stepOnce(double scaledDt) {
+        if (scene.collisions != null) {
+            scene.collisions.beginStep(scene);
+        }
+        if (scene.radiation != null) {
+            scene.radiation.beginStep(scene);
+        }
+        scene.integrator.step(scene, scaledDt, phases());
+        for (int i = 0; i < scene.beams.size(); i++) {
+            scene.beams.get(i).propagate(scaledDt);
+        }
+        if (scene.lensing != null) {
+            scene.lensing.resolve(scene, scaledDt);
+        }
+        if (scene.collisions != null) {
+            scene.collisions.resolve(scene, scaledDt);
+        }
+        if (scene.radiation != null) {
+            scene.radiation.resolve(scene, scaledDt);
+        }
+        if (scene.sleep != null) {
+            scene.sleep.update(scene);
+        }
+        uptime += scaledDt;
+        stepCount++;
+        if (scene.conservation != null) {
+            scene.conservation.update(scene, phases(), deterministic, uptime, stepCount);
+        }
+    }
+
+    // The pool's phases when stepping on several threads, the serial ones otherwise.
+    private StepPhases phases() {
+        return stepper != null ? stepper : SerialPhases.INSTANCE;
+    }
+
+    // Copies the current scene state into the snapshot buffer.
+    public final void publishSnapshot() {
+        snapshots.publish(scene.bodies, scene.beams, scene.conservation, uptime, stepCount);
+    }
+
+    // -----------------------------------------------------------------
+    // Threads
+    // -----------------------------------------------------------------
+    // Sets how many threads share each step, on a pool owned by this simulation.
+    // 1 (the default) falls back to the serial path.
+    public void setThreadCount(int threads) {
+        if (threads < 1) {
+            throw new IllegalArgumentException("Thread count must be at least 1, got " + threads);
+        }
+        releaseStepper();
+        threadCount = threads;
+        if (threads > 1) {
+            stepper = new ParallelStepper(threads);
+            stepper.deterministic = deterministic;
+            ownsStepper = true;
+        }
+    }
+
+    // Steps on a pool shared with other simulations, so many scenes split a fixed set of cores.
+    // The caller keeps ownership and shuts it down once every simulation using it is done.
+    public void setStepper(ParallelStepper shared) {
+        releaseStepper();
+        stepper = shared;
+        ownsStepper = false;
+        threadCount = shared != null ? shared.threads : 1;
+    }
+
+    public int getThreadCount() {
+        return threadCount;
+    }
+
+    // In deterministic mode the reductions of sum() and of the ConservationMonitor use a fixed
+    // partition and reduction tree, so a run gives the same bits with any thread count (forces
+    // and body phases always do). The setting is passed with every reduction, so it also holds on
+    // a stepper shared through setStepper; that stepper's own `deterministic` field is left alone.
+    public void setDeterministic(boolean deterministic) {
+        this.deterministic = deterministic;
+        if (stepper != null && ownsStepper) {
+            stepper.deterministic = deterministic;
+        }
+    }
+
+    public boolean isDeterministic() {
+        return deterministic;
+    }
+
+    // Sums terms over the scene's bodies into totals on this simulation's threads, e.g. for
+    // energy and momentum. Call it between steps, from the thread that steps the simulation.
+    // Follows this simulation's deterministic setting, also on a shared stepper.
+    public void sum(double[] totals, StepPhases.BodySum terms) {
+        phases().sum(scene, totals, terms, deterministic);
+    }
+
+    private void releaseStepper() {
+        if (stepper != null && ownsStepper) {
+            stepper.shutdown();
+        }
+        stepper = null;
+        ownsStepper = false;
+        threadCount = 1;
+    }
+
+    // -----------------------------------------------------------------
+    // Control
+    // -----------------------------------------------------------------
+    public void togglePlay() {
+        isRunning = !isRunning;
+        lastUpdateTime = System.nanoTime();
+        scheduler.wake();
+    }
+
+    public boolean isRunning() {
+        return isRunning;
+    }
+
+    // Stops the loop in run(), which then returns after cleaning up. Safe to call from any thread.
+    public void terminate() {
+        scheduler.shutdown();
+        if (!loopActive) {
+            finish();
+        }
+    }
+
+    // Releases the worker threads of this simulation.
+    private void finish() {
+        if (debugOutput) {
+            System.out.println("Engine terminated. Total uptime: " + uptime + " seconds.");
+        }
+        releaseStepper();
+    }
+}
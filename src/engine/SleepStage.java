@@ -0,0 +1,64 @@
+package engine;
+
+import engine.bodies.Body;
+import engine.bodies.Rigidbody;
+
+import java.util.List;
+
+// Puts massive Rigidbodies that have come to rest to sleep. Runs once after every step
+// (Simulation.stepOnce), after collisions and photon hits.
+//
+// A body whose speed stays below speedThreshold and whose net force stays below
+// accelerationThreshold * mass for stepsToSleep consecutive steps is marked sleeping. Sleeping
+// bodies stay in the scene, so they still act as force sources and keep their place in the
+// BodyStore and in snapshots, but their kicks are skipped: a kick only compares the accumulated
+// force with the threshold. A sleeping body keeps its residual momentum and drifts with it, so
+// positions stay consistent with the momenta and the totals stay conserved.
+// They wake up when that force is exceeded, when they take part in a collision or receive an
+// impulse (Rigidbody.applyImpulse), or when their state is set from outside.
+//
+// The force solvers still compute forces on sleeping bodies, since that is how they notice being
+// pulled again; the saving is the relativistic momentum, γ and velocity updates.
+public class SleepStage {
+    public double speedThreshold = 1e-3;
+    // In m/s², so that one setting fits bodies of any mass.
+    public double accelerationThreshold = 1e-6;
+    public int stepsToSleep = 60;
+
+    // --- Statistics ---
+    // Sleeping bodies after the last update().
+    public int lastSleeping = 0;
+    // Bodies that fell asleep in the last update(), and since the stage was created.
+    public int lastFellAsleep = 0;
+    public long fellAsleep = 0;
+
+    public void update(Scene scene) {
+        List<Body> bodies = scene.bodies;
+        int sleeping = 0;
+        int fell = 0;
+        for (int i = 0, n = bodies.size(); i < n; i++) {
+            if (!(bodies.get(i) instanceof Rigidbody)) {
+                continue;
+            }
+            Rigidbody body = (Rigidbody) bodies.get(i);
+            boolean wasSleeping = body.isSleeping();
+            if (body.settle(speedThreshold, accelerationThreshold * body.getMass(), stepsToSleep)) {
+                sleeping++;
+                if (!wasSleeping) {
+                    fell++;
+                }
+            }
+        }
+        lastSleeping = sleeping;
+        lastFellAsleep = fell;
+        fellAsleep += fell;
+    }
+
+    public SleepStage copy() {
+        SleepStage copy = new SleepStage();
+        copy.speedThreshold = speedThreshold;
+        copy.accelerationThreshold = accelerationThreshold;
+        copy.stepsToSleep = stepsToSleep;
+        return copy;
+    }
+}
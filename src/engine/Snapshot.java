@@ -0,0 +1,255 @@
+package engine;
+
+import engine.bodies.Body;
+import engine.bodies.Photon;
+import engine.bodies.PhotonBeam;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static engine.Constants.SPEED_OF_LIGHT;
+
+// Copy of the scene state taken at a step boundary, so readers on other threads see values
+// that all belong to the same step. Instances are recycled by SnapshotBuffer.
+//
+// Only raw state is captured, at the cost of a few loads per body; magnitudes and energies are
+// derived by the reader (see the methods at the end), and only for the bodies it shows.
+public class Snapshot {
+    public int count = 0;
+    public double uptime = 0d;
+    public long step = 0;
+
+    // Body identities, for names and rendering properties.
+    public Body[] bodies = new Body[0];
+    public double[] mass = new double[0];
+    public double[] x = new double[0];
+    public double[] y = new double[0];
+    public double[] vx = new double[0];
+    public double[] vy = new double[0];
+    public double[] px = new double[0];
+    public double[] py = new double[0];
+    public double[] gamma = new double[0];
+    // Net force and acceleration of the last kick.
+    public double[] forceX = new double[0];
+    public double[] forceY = new double[0];
+    public double[] accelerationX = new double[0];
+    public double[] accelerationY = new double[0];
+    public double[] potentialEnergy = new double[0];
+    public double[] internalEnergy = new double[0];
+    public boolean[] sleeping = new boolean[0];
+    // Bodies with sleeping[i] set.
+    public int sleepingCount = 0;
+
+    // --- Scene totals: the monitor's latest sample, which may be a few steps older ---
+    public boolean hasConservation = false;
+    public final ConservationMonitor.Sample conservation = new ConservationMonitor.Sample();
+
+    // --- Photon beams: positions only, for drawing ---
+    // Beam photons captured per snapshot at most. Larger beams are captured every photonStride-th
+    // photon, so a publish costs the same however many photons the scene holds.
+    public static final int MAX_PHOTONS = 200000;
+    // Captured photons of beams[b] are at [b == 0 ? 0 : beamEnd[b - 1], beamEnd[b]) in
+    // photonX/photonY; they are photons 0, photonStride, 2 photonStride, ... of the beam.
+    public int beamCount = 0;
+    public PhotonBeam[] beams = new PhotonBeam[0];
+    public int[] beamEnd = new int[0];
+    // Photons in all beams, captured or not.
+    public int photonCount = 0;
+    public int photonStride = 1;
+    public double[] photonX = new double[0];
+    public double[] photonY = new double[0];
+
+    // --- The beam photon asked for through SnapshotBuffer.inspect, read at the same step ---
+    // The view these values belong to; inspectedPresent is false when its index was past the end
+    // of its beam (photons were removed) or the beam was not in the scene.
+    public PhotonBeam.View inspected = null;
+    public boolean inspectedPresent = false;
+    public double inspectedX = 0d;
+    public double inspectedY = 0d;
+    public double inspectedDirX = 0d;
+    public double inspectedDirY = 0d;
+    public double inspectedWavelength = 0d;
+
+    // Reader-side cache for indexOf; the same body is usually looked up every frame.
+    private int lastIndex = 0;
+
+    void capture(List<Body> source, double uptime, long step) {
+        int n = source.size();
+        ensureCapacity(n);
+        int asleep = 0;
+        for (int i = 0; i < n; i++) {
+            Body body = source.get(i);
+            Vector pos = body.getPos();
+            Vector vel = body.getVel();
+            Vector mom = body.getMomentum();
+            bodies[i] = body;
+            mass[i] = body.getMass();
+            x[i] = pos.get(0);
+            y[i] = pos.get(1);
+            vx[i] = vel.get(0);
+            vy[i] = vel.get(1);
+            px[i] = mom.get(0);
+            py[i] = mom.get(1);
+            gamma[i] = body.getGamma();
+            forceX[i] = body.getAppliedForce(0);
+            forceY[i] = body.getAppliedForce(1);
+            accelerationX[i] = body.getAppliedAcceleration(0);
+            accelerationY[i] = body.getAppliedAcceleration(1);
+            potentialEnergy[i] = body.getPotentialEnergy();
+            internalEnergy[i] = body.getInternalEnergy();
+            sleeping[i] = body.isSleeping();
+            asleep += sleeping[i] ? 1 : 0;
+        }
+        // Drop references to bodies that are no longer in the scene.
+        Arrays.fill(bodies, n, Math.max(n, count), null);
+        this.count = n;
+        this.sleepingCount = asleep;
+        this.uptime = uptime;
+        this.step = step;
+    }
+
+    void captureConservation(ConservationMonitor monitor) {
+        hasConservation = monitor != null && monitor.samples > 0;
+        if (hasConservation) {
+            conservation.copyFrom(monitor.latest);
+        }
+    }
+
+    void captureBeams(List<PhotonBeam> source, PhotonBeam.View inspect) {
+        int beamsNow = source.size();
+        if (beams.length < beamsNow) {
+            beams = Arrays.copyOf(beams, beamsNow);
+            beamEnd = Arrays.copyOf(beamEnd, beamsNow);
+        }
+        int total = 0;
+        for (int b = 0; b < beamsNow; b++) {
+            total += source.get(b).size();
+        }
+        int stride = Math.max(1, (total + MAX_PHOTONS - 1) / MAX_PHOTONS);
+        // Each beam contributes ceil(size / stride) photons, at most one more than its share.
+        int captured = Math.min(total, total / stride + beamsNow);
+        if (photonX.length < captured) {
+            int capacity = Math.max(captured, Math.min(photonX.length * 2, MAX_PHOTONS + beamsNow));
+            photonX = new double[capacity];
+            photonY = new double[capacity];
+        }
+        int end = 0;
+        inspectedPresent = false;
+        for (int b = 0; b < beamsNow; b++) {
+            PhotonBeam beam = source.get(b);
+            int size = beam.size();
+            if (stride == 1) {
+                System.arraycopy(beam.x, 0, photonX, end, size);
+                System.arraycopy(beam.y, 0, photonY, end, size);
+                end += size;
+            } else {
+                for (int i = 0; i < size; i += stride, end++) {
+                    photonX[end] = beam.x[i];
+                    photonY[end] = beam.y[i];
+                }
+            }
+            beams[b] = beam;
+            beamEnd[b] = end;
+            if (inspect != null && inspect.beam == beam && inspect.index < size) {
+                int i = inspect.index;
+                inspectedPresent = true;
+                inspectedX = beam.x[i];
+                inspectedY = beam.y[i];
+                inspectedDirX = beam.dirX[i];
+                inspectedDirY = beam.dirY[i];
+                inspectedWavelength = beam.wavelength[i];
+            }
+        }
+        Arrays.fill(beams, beamsNow, Math.max(beamsNow, beamCount), null);
+        beamCount = beamsNow;
+        photonCount = total;
+        photonStride = stride;
+        inspected = inspect;
+    }
+
+    private void ensureCapacity(int n) {
+        if (bodies.length >= n) {
+            return;
+        }
+        int capacity = Math.max(n, bodies.length * 2);
+        bodies = Arrays.copyOf(bodies, capacity);
+        mass = Arrays.copyOf(mass, capacity);
+        x = Arrays.copyOf(x, capacity);
+        y = Arrays.copyOf(y, capacity);
+        vx = Arrays.copyOf(vx, capacity);
+        vy = Arrays.copyOf(vy, capacity);
+        px = Arrays.copyOf(px, capacity);
+        py = Arrays.copyOf(py, capacity);
+        gamma = Arrays.copyOf(gamma, capacity);
+        forceX = Arrays.copyOf(forceX, capacity);
+        forceY = Arrays.copyOf(forceY, capacity);
+        accelerationX = Arrays.copyOf(accelerationX, capacity);
+        accelerationY = Arrays.copyOf(accelerationY, capacity);
+        potentialEnergy = Arrays.copyOf(potentialEnergy, capacity);
+        internalEnergy = Arrays.copyOf(internalEnergy, capacity);
+        sleeping = Arrays.copyOf(sleeping, capacity);
+    }
+
+    // Index of the body in this snapshot, or -1 if it was not in the scene at that step.
+    public int indexOf(Body body) {
+        if (lastIndex < count && bodies[lastIndex] == body) {
+            return lastIndex;
+        }
+        for (int i = 0; i < count; i++) {
+            if (bodies[i] == body) {
+                lastIndex = i;
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    // --- Derived values ---
+    public double velocityMagnitude(int i) {
+        return Math.sqrt(vx[i] * vx[i] + vy[i] * vy[i]);
+    }
+
+    public double speedPercentC(int i) {
+        return (velocityMagnitude(i) / SPEED_OF_LIGHT) * 100;
+    }
+
+    public double momentumMagnitude(int i) {
+        return Math.sqrt(px[i] * px[i] + py[i] * py[i]);
+    }
+
+    public double forceMagnitude(int i) {
+        return Math.sqrt(forceX[i] * forceX[i] + forceY[i] * forceY[i]);
+    }
+
+    // As Rigidbody.getNetAccelerationMagnitude: |a| m.
+    public double netAccelerationMagnitude(int i) {
+        return Math.sqrt(accelerationX[i] * accelerationX[i] + accelerationY[i] * accelerationY[i]) * mass[i];
+    }
+
+    // As Rigidbody.getKineticEnergy (Body.kineticEnergy).
+    public double kineticEnergy(int i) {
+        return Body.kineticEnergy(mass[i], px[i], py[i]);
+    }
+
+    public Vector2 position(int i) {
+        return new Vector2(x[i], y[i]);
+    }
+
+    public Vector2 velocity(int i) {
+        return new Vector2(vx[i], vy[i]);
+    }
+
+    public Vector2 momentum(int i) {
+        return new Vector2(px[i], py[i]);
+    }
+
+    // p = h / λ of the inspected photon.
+    public double inspectedMomentum() {
+        return Photon.PLANCK_CONSTANT / inspectedWavelength;
+    }
+
+    // E = h c / λ of the inspected photon.
+    public double inspectedEnergy() {
+        return inspectedMomentum() * SPEED_OF_LIGHT;
+    }
+}
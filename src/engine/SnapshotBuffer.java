@@ -0,0 +1,68 @@
+package engine;
+
+import engine.bodies.Body;
+import engine.bodies.PhotonBeam;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Lock-free triple buffer handing Snapshots from the stepping thread to one reader thread (the EDT).
+//
+// The writer fills its back buffer and swaps it with the shared middle buffer in one atomic
+// step; the reader swaps its front buffer with the middle one only when something new has been
+// published. Neither side ever waits for the other, and each side only touches the buffer it
+// currently owns.
+public class SnapshotBuffer {
+    // Set in `middle` when the middle buffer holds a snapshot the reader has not taken yet.
+    private static final int FRESH = 4;
+    private static final int INDEX_MASK = 3;
+
+    private final Snapshot[] buffers = {new Snapshot(), new Snapshot(), new Snapshot()};
+    // Index of the middle buffer, plus the FRESH flag.
+    private final AtomicInteger middle = new AtomicInteger(1);
+    // Owned by the writer.
+    private int back = 0;
+    private Snapshot lastPublished = buffers[1];
+    // Owned by the reader.
+    private int front = 2;
+    // Set by the reader: a beam photon every publish copies in full into the snapshot (see
+    // Snapshot.inspected), since snapshots only hold the positions of a subset of beam photons.
+    private volatile PhotonBeam.View inspect = null;
+
+    // Writer side: copies the bodies' state and makes it visible to the reader.
+    public void publish(List<Body> bodies, double uptime, long step) {
+        publish(bodies, List.of(), uptime, step);
+    }
+
+    public void publish(List<Body> bodies, List<PhotonBeam> beams, double uptime, long step) {
+        publish(bodies, beams, null, uptime, step);
+    }
+
+    public void publish(List<Body> bodies, List<PhotonBeam> beams, ConservationMonitor conservation, double uptime, long step) {
+        Snapshot snapshot = buffers[back];
+        snapshot.capture(bodies, uptime, step);
+        snapshot.captureBeams(beams, inspect);
+        snapshot.captureConservation(conservation);
+        lastPublished = snapshot;
+        back = middle.getAndSet(back | FRESH) & INDEX_MASK;
+    }
+
+    // Writer side: the snapshot from the last publish. Only valid on the publishing thread,
+    // until its next publish.
+    public Snapshot lastPublished() {
+        return lastPublished;
+    }
+
+    // Reader side: asks the following snapshots to carry this beam photon's state; null for none.
+    public void inspect(PhotonBeam.View photon) {
+        inspect = photon;
+    }
+
+    // Reader side: the newest published snapshot. Returns the same instance until a newer one exists.
+    public Snapshot latest() {
+        if ((middle.get() & FRESH) != 0) {
+            front = middle.getAndSet(front) & INDEX_MASK;
+        }
+        return buffers[front];
+    }
+}
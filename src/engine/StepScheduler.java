@@ -0,0 +1,66 @@
+package engine;
+
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.BooleanSupplier;
+
+// Paces the engine thread between fixed steps instead of busy-spinning.
+// The thread parks until shortly before the next step is due and then spin-waits the last
+// `spinWindowNanos`, which keeps wake-up jitter low without holding a core the rest of the time.
+// While the simulation is paused it parks until woken.
+public class StepScheduler {
+    // Spin-wait this long before a deadline instead of parking; 0 parks all the way.
+    public long spinWindowNanos = 200_000L;
+
+    private volatile boolean shutdown = false;
+    private volatile Thread waiter = null;
+
+    // Blocks until System.nanoTime() reaches the deadline, or until shutdown.
+    public void awaitDeadline(long deadlineNanos) {
+        waiter = Thread.currentThread();
+        try {
+            while (!shutdown) {
+                long remaining = deadlineNanos - System.nanoTime();
+                if (remaining <= 0) {
+                    return;
+                }
+                if (remaining > spinWindowNanos) {
+                    LockSupport.parkNanos(this, remaining - spinWindowNanos);
+                } else {
+                    Thread.onSpinWait();
+                }
+            }
+        } finally {
+            waiter = null;
+        }
+    }
+
+    // Parks while the condition holds, e.g. while the simulation is paused. Call wake() when it changes.
+    public void awaitWhile(BooleanSupplier condition) {
+        waiter = Thread.currentThread();
+        try {
+            while (!shutdown && condition.getAsBoolean()) {
+                LockSupport.park(this);
+            }
+        } finally {
+            waiter = null;
+        }
+    }
+
+    // Wakes the waiting thread so it re-checks its deadline or condition.
+    public void wake() {
+        Thread thread = waiter;
+        if (thread != null) {
+            LockSupport.unpark(thread);
+        }
+    }
+
+    // Releases any waiter for good; the owning loop is expected to exit.
+    public void shutdown() {
+        shutdown = true;
+        wake();
+    }
+
+    public boolean isShutdown() {
+        return shutdown;
+    }
+}
@@ -41,4 +41,20 @@ public interface Vector {
     
     // Returns a copy of the vector.
     Vector copy();
+    
+    // --- In-place operations ---
+    // These modify this vector and return it, so hot loops can update state without allocating.
+    
+    // Sets the component at the specified index.
+    Vector setComponent(int index, double value);
+    // Copies the components of the other vector into this one.
+    Vector set(Vector other);
+    // Sets every component to zero.
+    Vector zero();
+    // Adds the components of the other vector into this one.
+    Vector addInPlace(Vector other);
+    // Adds the other vector multiplied by the scalar into this one (this += other * scale).
+    Vector addScaled(Vector other, double scale);
+    // Multiplies every component of this vector by the scalar.
+    Vector scale(double scalar);
 }
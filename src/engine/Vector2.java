@@ -115,6 +115,62 @@ public class Vector2 implements Vector {
         return new Vector2(x, y);
     }
     
+    @Override
+    public Vector setComponent(int index, double value) {
+        switch (index) {
+            case 0: x = value; break;
+            case 1: y = value; break;
+            default: throw new IndexOutOfBoundsException("Vector2 only has indices 0 and 1.");
+        }
+        return this;
+    }
+    
+    public Vector2 set(double x, double y) {
+        this.x = x;
+        this.y = y;
+        return this;
+    }
+    
+    @Override
+    public Vector set(Vector other) {
+        if (other.dimension() != 2) {
+            throw new IllegalArgumentException("Dimension mismatch: expected 2, got " + other.dimension());
+        }
+        return set(other.get(0), other.get(1));
+    }
+    
+    @Override
+    public Vector zero() {
+        return set(0.0, 0.0);
+    }
+    
+    @Override
+    public Vector addInPlace(Vector other) {
+        if (other.dimension() != 2) {
+            throw new IllegalArgumentException("Dimension mismatch: expected 2, got " + other.dimension());
+        }
+        x += other.get(0);
+        y += other.get(1);
+        return this;
+    }
+    
+    @Override
+    public Vector addScaled(Vector other, double scale) {
+        if (other.dimension() != 2) {
+            throw new IllegalArgumentException("Dimension mismatch: expected 2, got " + other.dimension());
+        }
+        x += other.get(0) * scale;
+        y += other.get(1) * scale;
+        return this;
+    }
+    
+    @Override
+    public Vector scale(double scalar) {
+        x *= scalar;
+        y *= scalar;
+        return this;
+    }
+    
     @Override
     public String toString() {
         return "[" + x + ", " + y + "]";
@@ -1,9 +1,9 @@
 package engine;
 
 public class Vector3 implements Vector {
-    public final double x;
-    public final double y;
-    public final double z;
+    public double x;
+    public double y;
+    public double z;
 
     public Vector3(double x, double y, double z) {
         this.x = x;
@@ -125,6 +125,67 @@ public class Vector3 implements Vector {
         return new Vector3(x, y, z);
     }
 
+    @Override
+    public Vector setComponent(int index, double value) {
+        switch (index) {
+            case 0: x = value; break;
+            case 1: y = value; break;
+            case 2: z = value; break;
+            default: throw new IndexOutOfBoundsException("Vector3 only has indices 0, 1, and 2.");
+        }
+        return this;
+    }
+
+    public Vector3 set(double x, double y, double z) {
+        this.x = x;
+        this.y = y;
+        this.z = z;
+        return this;
+    }
+
+    @Override
+    public Vector set(Vector other) {
+        if (other.dimension() != 3) {
+            throw new IllegalArgumentException("Dimension mismatch: expected 3, got " + other.dimension());
+        }
+        return set(other.get(0), other.get(1), other.get(2));
+    }
+
+    @Override
+    public Vector zero() {
+        return set(0.0, 0.0, 0.0);
+    }
+
+    @Override
+    public Vector addInPlace(Vector other) {
+        if (other.dimension() != 3) {
+            throw new IllegalArgumentException("Dimension mismatch: expected 3, got " + other.dimension());
+        }
+        x += other.get(0);
+        y += other.get(1);
+        z += other.get(2);
+        return this;
+    }
+
+    @Override
+    public Vector addScaled(Vector other, double scale) {
+        if (other.dimension() != 3) {
+            throw new IllegalArgumentException("Dimension mismatch: expected 3, got " + other.dimension());
+        }
+        x += other.get(0) * scale;
+        y += other.get(1) * scale;
+        z += other.get(2) * scale;
+        return this;
+    }
+
+    @Override
+    public Vector scale(double scalar) {
+        x *= scalar;
+        y *= scalar;
+        z *= scalar;
+        return this;
+    }
+
     @Override
     public String toString() {
         return "[" + x + ", " + y + ", " + z + "]";
@@ -28,6 +28,12 @@ public class Bodies {
             null, null, null
     );
 
+    static
+    {
+        electron.setCharge(-ELEMENTARY_CHARGE);
+        proton.setCharge(ELEMENTARY_CHARGE);
+    }
+
     public static Rigidbody moon = new Rigidbody(
             MOON_MASS,
             new Vector2(0, 1022), // Orbital velocity around Earth
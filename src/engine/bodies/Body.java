@@ -3,6 +3,8 @@ package engine.bodies;
 import engine.Vector;
 import java.awt.Color;
 
+import static engine.Constants.SPEED_OF_LIGHT;
+
 public abstract class Body {
     // New rendering properties
     public double radius = 5.0; // default radius (can be adjusted per body)
@@ -42,4 +44,58 @@ public abstract class Body {
     public abstract double getPotentialEnergy();
     public abstract double getInternalEnergy();
     public abstract double getGamma();
+
+    // Net force and acceleration the last kick applied, by component (0 = x, 1 = y); raw state for
+    // snapshots, which derive the magnitudes on the reader's side. Zero for bodies without forces.
+    public double getAppliedForce(int component) {
+        return 0;
+    }
+
+    public double getAppliedAcceleration(int component) {
+        return 0;
+    }
+
+    // Relativistic kinetic energy (γ - 1) m c² of a body with momentum (px, py), pc when massless.
+    // Written as p²c² / (E + m c²), which keeps its precision at low speeds. Every kinetic energy
+    // in the engine (bodies, snapshots, conservation samples) comes from here.
+    public static double kineticEnergy(double mass, double px, double py) {
+        double pc = Math.sqrt(px * px + py * py) * SPEED_OF_LIGHT;
+        if (mass == 0) {
+            return pc;
+        }
+        double restEnergy = mass * SPEED_OF_LIGHT * SPEED_OF_LIGHT;
+        return pc * pc / (Math.sqrt(pc * pc + restEnergy * restEnergy) + restEnergy);
+    }
+
+    // -------------------------------
+    // Integrator phases (see engine.integrators). update(dt) does all of them in one go with
+    // explicit Euler; split integrators call them separately.
+    // Changes the momentum from the accumulated forces over dt. Bodies without forces ignore it.
+    public void kick(double dt) {
+    }
+
+    // Moves the body with its current velocity over dt.
+    public void drift(double dt) {
+        update(dt);
+    }
+
+    // Empties the force accumulators once the forces have been used.
+    public void clearForces() {
+    }
+
+    // Refreshes derived values (energies) after the last phase of a step.
+    public void endStep() {
+    }
+
+    // Dormant bodies skip the integrator phases until something wakes them (see engine.SleepStage).
+    public boolean isSleeping() {
+        return false;
+    }
+
+    public void wake() {
+    }
+
+    // Independent copy of the body's state, used to clone scenes. Immutable or read-only data
+    // (colors, constant vectors) is shared rather than duplicated.
+    public abstract Body copy();
 }
@@ -29,7 +29,7 @@ public class Photon extends Body
      */
     public Photon(Vector position, Vector direction, double wavelength)
     {
-        this.position = position;
+        this.position = position.copy();
         this.velocity = direction.copy().normalize().mul(SPEED_OF_LIGHT);
         this.wavelength = wavelength;
         double momentumMagnitude = PLANCK_CONSTANT / wavelength;
@@ -45,8 +45,19 @@ public class Photon extends Body
     @Override
     public void update(double dt)
     {
-        Vector displacement = velocity.copy().mul(dt);
-        position = position.add(displacement);
+        position.addScaled(velocity, dt);
+    }
+    
+    @Override
+    public Photon copy()
+    {
+        Photon copy = new Photon(position, velocity, wavelength);
+        copy.name = name;
+        copy.radius = radius;
+        copy.color = color;
+        copy.momentum = momentum.copy();
+        copy.energy = energy;
+        return copy;
     }
     
     // -----------------------------------------------------------------
@@ -0,0 +1,263 @@
+package engine.bodies;
+
+import engine.Vector;
+import engine.Vector2;
+
+import java.awt.Color;
+import java.util.Arrays;
+
+import static engine.Constants.*;
+
+// Many photons in primitive arrays, for scenes with millions of them. A Photon is an object with
+// three vectors moved through a virtual call each; here the state of photon i is five doubles in
+// parallel arrays (position, unit direction, wavelength) and propagate() moves all of them in
+// one loop. Beams are held in Scene.beams, not in Scene.bodies, and moved by Simulation after
+// the integrator step, since photons feel no forces.
+//
+// photon(i) wraps a single photon as a Body for the Debugger and the stats panel. Photons are
+// removed by moving the last one into the freed index, so a view keeps pointing at the same
+// index, not at the same photon, once photons are removed.
+public class PhotonBeam
+{
+    public String name = "Unnamed Beam";
+    // Rendering properties shared by every photon of the beam.
+    public double radius = 1.0;
+    public Color color = Color.YELLOW;
+    
+    // --- Photon state, valid for indices [0, count) ---
+    public double[] x;
+    public double[] y;
+    // Unit propagation direction.
+    public double[] dirX;
+    public double[] dirY;
+    public double[] wavelength;
+    private int count = 0;
+    
+    public PhotonBeam()
+    {
+        this(1024);
+    }
+    
+    public PhotonBeam(int capacity)
+    {
+        capacity = Math.max(1, capacity);
+        x = new double[capacity];
+        y = new double[capacity];
+        dirX = new double[capacity];
+        dirY = new double[capacity];
+        wavelength = new double[capacity];
+    }
+    
+    public int size()
+    {
+        return count;
+    }
+    
+    // Adds a photon at (px, py) heading along (dx, dy), which is normalized. Returns its index.
+    public int add(double px, double py, double dx, double dy, double wavelength)
+    {
+        if(count == x.length)
+        {
+            grow(2 * count);
+        }
+        double length = Math.sqrt(dx * dx + dy * dy);
+        x[count] = px;
+        y[count] = py;
+        dirX[count] = dx / length;
+        dirY[count] = dy / length;
+        this.wavelength[count] = wavelength;
+        return count++;
+    }
+    
+    // Moves the last photon into index i.
+    public void remove(int i)
+    {
+        int last = --count;
+        x[i] = x[last];
+        y[i] = y[last];
+        dirX[i] = dirX[last];
+        dirY[i] = dirY[last];
+        wavelength[i] = wavelength[last];
+    }
+    
+    public void clear()
+    {
+        count = 0;
+    }
+    
+    // Straight-line motion of every photon over dt.
+    public void propagate(double dt)
+    {
+        double step = SPEED_OF_LIGHT * dt;
+        double[] x = this.x, y = this.y, dirX = this.dirX, dirY = this.dirY;
+        for(int i = 0, n = count; i < n; i++)
+        {
+            x[i] += dirX[i] * step;
+            y[i] += dirY[i] * step;
+        }
+    }
+    
+    // p = h / λ
+    public double momentum(int i)
+    {
+        return Photon.PLANCK_CONSTANT / wavelength[i];
+    }
+    
+    // E = h c / λ
+    public double energy(int i)
+    {
+        return Photon.PLANCK_CONSTANT * SPEED_OF_LIGHT / wavelength[i];
+    }
+    
+    // Body view of photon i, for inspection.
+    public Body photon(int i)
+    {
+        return new View(this, i);
+    }
+    
+    public PhotonBeam copy()
+    {
+        PhotonBeam copy = new PhotonBeam(count);
+        copy.name = name;
+        copy.radius = radius;
+        copy.color = color;
+        System.arraycopy(x, 0, copy.x, 0, count);
+        System.arraycopy(y, 0, copy.y, 0, count);
+        System.arraycopy(dirX, 0, copy.dirX, 0, count);
+        System.arraycopy(dirY, 0, copy.dirY, 0, count);
+        System.arraycopy(wavelength, 0, copy.wavelength, 0, count);
+        copy.count = count;
+        return copy;
+    }
+    
+    private void grow(int capacity)
+    {
+        capacity = Math.max(capacity, 1);
+        x = Arrays.copyOf(x, capacity);
+        y = Arrays.copyOf(y, capacity);
+        dirX = Arrays.copyOf(dirX, capacity);
+        dirY = Arrays.copyOf(dirY, capacity);
+        wavelength = Arrays.copyOf(wavelength, capacity);
+    }
+    
+    // -----------------------------------------------------------------
+    // One photon of a beam as a Body
+    // -----------------------------------------------------------------
+    // Reads the beam's arrays on every call; the vectors it returns are copies.
+    public static final class View extends Body
+    {
+        public final PhotonBeam beam;
+        public final int index;
+        
+        private View(PhotonBeam beam, int index)
+        {
+            this.beam = beam;
+            this.index = index;
+            this.radius = beam.radius;
+            this.color = beam.color;
+        }
+        
+        @Override
+        public String getName()
+        {
+            return beam.name + " #" + index;
+        }
+        
+        @Override
+        public void update(double dt)
+        {
+            beam.x[index] += beam.dirX[index] * SPEED_OF_LIGHT * dt;
+            beam.y[index] += beam.dirY[index] * SPEED_OF_LIGHT * dt;
+        }
+        
+        @Override
+        public double getMass()
+        {
+            return 0.0;
+        }
+        
+        @Override
+        public Vector getPos()
+        {
+            return new Vector2(beam.x[index], beam.y[index]);
+        }
+        
+        @Override
+        public Vector getVel()
+        {
+            return new Vector2(beam.dirX[index] * SPEED_OF_LIGHT, beam.dirY[index] * SPEED_OF_LIGHT);
+        }
+        
+        @Override
+        public double getVelocityMagnitude()
+        {
+            return SPEED_OF_LIGHT;
+        }
+        
+        @Override
+        public double getSpeedPercentC()
+        {
+            return 100;
+        }
+        
+        @Override
+        public Vector getMomentum()
+        {
+            double p = beam.momentum(index);
+            return new Vector2(beam.dirX[index] * p, beam.dirY[index] * p);
+        }
+        
+        @Override
+        public double getMomentumMagnitude()
+        {
+            return beam.momentum(index);
+        }
+        
+        @Override
+        public double getForceMagnitude()
+        {
+            return 0.0;
+        }
+        
+        @Override
+        public double getNetAccelerationMagnitude()
+        {
+            return 0.0;
+        }
+        
+        @Override
+        public double getKineticEnergy()
+        {
+            return beam.energy(index);
+        }
+        
+        @Override
+        public double getPotentialEnergy()
+        {
+            return 0.0;
+        }
+        
+        @Override
+        public double getInternalEnergy()
+        {
+            return 0.0;
+        }
+        
+        @Override
+        public double getGamma()
+        {
+            return Double.POSITIVE_INFINITY;
+        }
+        
+        // A standalone Photon with this photon's state.
+        @Override
+        public Photon copy()
+        {
+            Photon copy = new Photon(new Vector2(beam.x[index], beam.y[index]), new Vector2(beam.dirX[index], beam.dirY[index]), beam.wavelength[index]);
+            copy.name = getName();
+            copy.radius = radius;
+            copy.color = color;
+            return copy;
+        }
+    }
+}
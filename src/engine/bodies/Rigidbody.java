@@ -1,7 +1,7 @@
 package engine.bodies;
 
+import engine.BodyStore;
 import engine.Vector;
-import engine.Vector2;
 
 import java.math.BigDecimal;
 import java.math.MathContext;
@@ -14,54 +14,77 @@ public class Rigidbody extends Body
     public String name = "Unnamed Body";
     
     // --- Physical properties ---
-    public double mass;
-    public Vector velocity;
-    public Vector momentum;
-    public Vector position;
-    public Vector sumOfForces;
-    public Vector sumOfAccelerations;
+    // Mass, charge (in Coulombs, used by Coulomb force solvers), γ and the kick state live in the
+    // body's BodyStore slot; the vectors below are views of it.
+    public double reflectivity = 0; // Chance that a photon hitting the body is reflected rather than absorbed
+    public final Vector velocity;
+    public final Vector momentum;
+    public final Vector position;
+    public final Vector sumOfForces;
+    public final Vector sumOfAccelerations;
     
     // --- Energy values ---
-    public double kineticEnergy;
     public double potentialEnergy;
     public double internalEnergy;
     
-    // --- Additional computed fields ---
-    public double speedPercentC;
-    public double gamma;
-    public double velocityMagnitude;
-    public double momentumMagnitude;
-    public double forceMagnitude;
-    public double netAccelerationMagnitude;
+    // --- Derived values, computed by their getters on first use after a change ---
+    // Only the debugger and the stats panel read them, so the step itself never computes them.
+    // The bits of the values that are valid for the current state are kept in the store
+    // (BodyStore.derived), where kicks and the setters clear them.
+    private static final int VELOCITY_MAGNITUDE = 1;
+    private static final int MOMENTUM_MAGNITUDE = 2;
+    private static final int FORCE_MAGNITUDE = 4;
+    private static final int NET_ACCELERATION = 8;
+    private static final int KINETIC_ENERGY = 16;
+    private double velocityMagnitude;
+    private double momentumMagnitude;
+    private double forceMagnitude;
+    private double netAccelerationMagnitude;
+    private double kineticEnergy;
     
     // --- Constant values (applied each update if set) ---
-    public Vector constantVelocity;
-    public Vector constantAcceleration;
-    public Vector constantForce;
+    private Vector constantVelocity;
+    private Vector constantAcceleration;
+    private Vector constantForce;
+    
+    // --- Regime ---
+    // Bodies with q = |p| / (m c) below the body's Newtonian beta take the Newtonian path in
+    // kick(): γ and 1/γ from their series in q² instead of a square root and a division. q ≈ β at
+    // these speeds. The truncation error is below newtonianError(beta), under double rounding for
+    // the default. 0 sends the body through the exact relativistic path. Set per body
+    // (setNewtonianBeta), so scenes stepped side by side (e.g. the members of an Ensemble) do not
+    // share it.
+    public static final double DEFAULT_NEWTONIAN_BETA = 2e-3;
+    
+    // --- Sleep state (see engine.SleepStage) ---
+    // A sleeping body is not kicked until the net force exceeds wakeForce or something calls
+    // wake(); it keeps drifting with the velocity it fell asleep with.
+    private boolean sleeping = false;
+    private double wakeForce = 0;
+    private int quietSteps = 0;
+    
+    // --- Structure-of-arrays backing: the scene's BodyStore, or a one-slot store of its own ---
+    private BodyStore store;
+    private int slot;
     
     // -----------------------------------------------------------------
     // Constructors, setters, and utility methods (omitted for brevity)
     // -----------------------------------------------------------------
+    // At rest at the origin, with a store of its own.
+    private Rigidbody()
+    {
+        this.velocity = BodyStore.view(this, BodyStore.VELOCITY);
+        this.momentum = BodyStore.view(this, BodyStore.MOMENTUM);
+        this.position = BodyStore.view(this, BodyStore.POSITION);
+        this.sumOfForces = BodyStore.view(this, BodyStore.FORCE);
+        this.sumOfAccelerations = BodyStore.view(this, BodyStore.ACCELERATION);
+        BodyStore.adopt(this);
+    }
+    
     public Rigidbody(String massInput)
     {
-        this.mass = parseMass(massInput);
-        this.velocity = new Vector2(0, 0);
-        this.momentum = new Vector2(0, 0);
-        this.position = new Vector2(0, 0);
-        this.sumOfForces = new Vector2(0, 0);
-        this.sumOfAccelerations = new Vector2(0, 0);
-        this.kineticEnergy = 0;
-        this.potentialEnergy = 0;
-        this.internalEnergy = 0;
-        this.speedPercentC = 0;
-        this.gamma = 1;
-        this.velocityMagnitude = 0;
-        this.momentumMagnitude = 0;
-        this.forceMagnitude = 0;
-        this.netAccelerationMagnitude = 0;
-        this.constantVelocity = null;
-        this.constantAcceleration = null;
-        this.constantForce = null;
+        this();
+        setMass(parseMass(massInput));
     }
     
     private double parseMass(String massInput)
@@ -85,37 +108,61 @@ public class Rigidbody extends Body
     
     public void setMass(String massInput)
     {
-        this.mass = parseMass(massInput);
+        setMass(parseMass(massInput));
+    }
+    
+    public void setMass(double mass)
+    {
+        store.mass[slot] = mass;
+        store.derived[slot] = 0;
+        updateKind();
+    }
+    
+    public double getCharge()
+    {
+        return store.charge[slot];
+    }
+    
+    public void setCharge(double charge)
+    {
+        store.charge[slot] = charge;
     }
     
     public void setInitialVelocity(Vector velocity)
     {
-        this.velocity = velocity;
+        wake();
+        store.derived[slot] = 0;
+        this.velocity.set(velocity);
     }
     
     public void setInitialMomentum(Vector momentum)
     {
-        this.momentum = momentum;
+        wake();
+        store.derived[slot] = 0;
+        this.momentum.set(momentum);
     }
     
     public void setInitialPosition(Vector position)
     {
-        this.position = position;
+        wake();
+        this.position.set(position);
     }
     
     public void setInitialSumOfForces(Vector sumOfForces)
     {
-        this.sumOfForces = sumOfForces;
+        this.sumOfForces.set(sumOfForces);
     }
     
     public void setInitialSumOfAccelerations(Vector sumOfAccelerations)
     {
-        this.sumOfAccelerations = sumOfAccelerations;
+        this.sumOfAccelerations.set(sumOfAccelerations);
     }
     
+    // Holds until the next kick.
     public void setInitialKineticEnergy(double kineticEnergy)
     {
         this.kineticEnergy = kineticEnergy;
+        store.derived[slot] |= KINETIC_ENERGY;
     }
     
     public void setInitialPotentialEnergy(double potentialEnergy)
@@ -131,16 +178,34 @@ public class Rigidbody extends Body
     public void setConstantVelocity(Vector velocity)
     {
         this.constantVelocity = velocity;
+        wake();
     }
     
     public void setConstantAcceleration(Vector acceleration)
     {
         this.constantAcceleration = acceleration;
+        wake();
     }
     
     public void setConstantForce(Vector force)
     {
         this.constantForce = force;
+        wake();
+    }
+    
+    public Vector getConstantVelocity()
+    {
+        return constantVelocity;
+    }
+    
+    public Vector getConstantAcceleration()
+    {
+        return constantAcceleration;
+    }
+    
+    public Vector getConstantForce()
+    {
+        return constantForce;
     }
     
     // -----------------------------------------------------------------
@@ -148,74 +213,143 @@ public class Rigidbody extends Body
     // -----------------------------------------------------------------
     public void addForce(Vector force)
     {
-        sumOfForces = sumOfForces.add(force);
+        sumOfForces.addInPlace(force);
+    }
+    
+    // Component form of addForce, used by force solvers so they don't allocate a vector per body.
+    public void addForce(double fx, double fy)
+    {
+        store.fx[slot] += fx;
+        store.fy[slot] += fy;
     }
     
     public void addAcceleration(Vector acceleration)
     {
-        sumOfAccelerations = sumOfAccelerations.add(acceleration);
+        sumOfAccelerations.addInPlace(acceleration);
+    }
+    
+    // Changes the momentum by (jx, jy) at once and refreshes the velocity from it. Unlike addForce
+    // the full impulse is applied whatever the integrator does with the accumulated forces.
+    public void applyImpulse(double jx, double jy)
+    {
+        wake();
+        momentum.setComponent(0, momentum.get(0) + jx);
+        momentum.setComponent(1, momentum.get(1) + jy);
+        kick(0);
+    }
+    
+    // Takes in a packet of momentum (px, py) and energy `energy`, e.g. an absorbed photon. Both
+    // are conserved, so the rest mass grows to the invariant mass of body plus packet and the gain
+    // is added to internalEnergy, the same bookkeeping as the heat of CollisionStage. The growth
+    // M² - m² = 2 (E/c²) e + e² - (2 P·p + p²) / c² is written out so that a small packet is not
+    // lost to rounding against m².
+    public void absorb(double px, double py, double energy)
+    {
+        double c2 = SPEED_OF_LIGHT * SPEED_OF_LIGHT;
+        double mass = getMass();
+        if(mass > 0)
+        {
+            double bx = momentum.get(0);
+            double by = momentum.get(1);
+            double q2 = (bx * bx + by * by) / c2;
+            double total = mass + q2 / (Math.sqrt(mass * mass + q2) + mass);
+            double e = energy / c2;
+            double growth = 2 * total * e + e * e - (2 * (bx * px + by * py) + px * px + py * py) / c2;
+            if(growth > 0)
+            {
+                double gain = growth / (Math.sqrt(mass * mass + growth) + mass);
+                setMass(mass + gain);
+                internalEnergy += gain * c2;
+            }
+        }
+        applyImpulse(px, py);
     }
     
     // -----------------------------------------------------------------
     // Update Velocity and Momentum (Relativistic)
     // -----------------------------------------------------------------
+    // Explicit Euler velocity update: kicks with the accumulated forces, then clears them.
     public void updateVelocity(double dt)
     {
+        kick(dt);
+        clearForces();
+    }
+    
+    // Kicks the momentum by (accumulated forces + constant force + m * accelerations) * dt and
+    // derives the velocity from it (BodyStore.kickSlot). The accumulators are left as they are, so
+    // integrators can apply the same forces again (e.g. the two half kicks of a leapfrog step).
+    // A sleeping body only checks whether the accumulated forces are strong enough to wake it.
+    @Override
+    public void kick(double dt)
+    {
+        double mass = getMass();
+        store.derived[slot] = 0;
+        if(sleeping)
+        {
+            double ax = store.ax[slot];
+            double ay = store.ay[slot];
+            double fx = store.fx[slot] + ax * mass;
+            double fy = store.fy[slot] + ay * mass;
+            store.appliedAx[slot] = ax;
+            store.appliedAy[slot] = ay;
+            store.appliedFx[slot] = fx;
+            store.appliedFy[slot] = fy;
+            if(fx * fx + fy * fy <= wakeForce * wakeForce)
+            {
+                return;
+            }
+            wake();
+        }
         if(mass == 0)
         {
             if(constantVelocity != null)
             {
-                velocity = constantVelocity.copy();
+                velocity.set(constantVelocity);
             }
             else if(velocity.magnitude() > 0)
             {
-                velocity = velocity.copy().normalize().mul(SPEED_OF_LIGHT);
+                velocity.scale(SPEED_OF_LIGHT / velocity.magnitude());
             }
             else
             {
-                velocity = new Vector2(SPEED_OF_LIGHT, 0);
+                velocity.zero().setComponent(0, SPEED_OF_LIGHT);
             }
-            velocityMagnitude = velocity.magnitude();
-            speedPercentC = (velocityMagnitude / SPEED_OF_LIGHT) * 100;
-            sumOfForces = new Vector2(0, 0);
-            sumOfAccelerations = new Vector2(0, 0);
-            gamma = Double.POSITIVE_INFINITY;
+            store.gamma[slot] = Double.POSITIVE_INFINITY;
             return;
         }
         
+        double ax = store.ax[slot];
+        double ay = store.ay[slot];
+        double fx = store.fx[slot];
+        double fy = store.fy[slot];
         if(constantForce != null)
         {
-            sumOfForces = sumOfForces.add(constantForce);
+            fx += constantForce.get(0);
+            fy += constantForce.get(1);
         }
         if(constantAcceleration != null)
         {
-            sumOfAccelerations = sumOfAccelerations.add(constantAcceleration);
+            ax += constantAcceleration.get(0);
+            ay += constantAcceleration.get(1);
         }
-        
-        netAccelerationMagnitude = sumOfAccelerations.mul(mass).magnitude();
-        sumOfForces = sumOfForces.add(sumOfAccelerations.mul(mass));
-        sumOfAccelerations = new Vector2(0, 0);
-        Vector forceContribution = sumOfForces.copy().mul(dt);
-        momentum = momentum.add(forceContribution);
-        forceMagnitude = sumOfForces.magnitude();
-        double pMagnitude = momentum.magnitude();
-        momentumMagnitude = pMagnitude;
-        gamma = Math.sqrt(1 + Math.pow(pMagnitude / (mass * SPEED_OF_LIGHT), 2));
-        velocity = momentum.copy().div(mass * gamma);
-        velocityMagnitude = velocity.magnitude();
-        speedPercentC = (velocityMagnitude / SPEED_OF_LIGHT) * 100;
+        store.kickSlot(slot, fx, fy, ax, ay, dt);
         
         if(constantVelocity != null)
         {
-            velocity = constantVelocity.copy();
-            double vMag = velocity.magnitude();
-            gamma = (vMag == 0) ? 1.0 : 1.0 / Math.sqrt(1 - Math.pow(vMag / SPEED_OF_LIGHT, 2));
-            momentum = velocity.copy().mul(mass * gamma);
-            momentumMagnitude = momentum.magnitude();
-            velocityMagnitude = vMag;
-            speedPercentC = (vMag / SPEED_OF_LIGHT) * 100;
+            velocity.set(constantVelocity);
+            double vx = velocity.get(0);
+            double vy = velocity.get(1);
+            double gamma = 1.0 / Math.sqrt(1 - (vx * vx + vy * vy) / (SPEED_OF_LIGHT * SPEED_OF_LIGHT));
+            store.gamma[slot] = gamma;
+            momentum.set(velocity).scale(mass * gamma);
         }
-        sumOfForces = new Vector2(0, 0);
+    }
+    
+    // Empties the force and acceleration accumulators.
+    @Override
+    public void clearForces()
+    {
+        store.clearForces(slot, slot + 1);
     }
     
     // -----------------------------------------------------------------
@@ -223,27 +357,101 @@ public class Rigidbody extends Body
     // -----------------------------------------------------------------
     public void updatePosition(double dt)
     {
-        Vector displacement = velocity.copy().mul(dt);
-        position = position.add(displacement);
+        position.addScaled(velocity, dt);
+    }
+    
+    // Moves the body with its current velocity, sleeping or not.
+    @Override
+    public void drift(double dt)
+    {
+        position.addScaled(velocity, dt);
     }
     
     // -----------------------------------------------------------------
-    // Update Energy: Kinetic (Relativistic), Potential, and Internal energies.
+    // Update Energy
     // -----------------------------------------------------------------
+    // Drops the cached derived values. Code that writes `momentum` or `velocity` directly calls
+    // this, or kick(0) to also refresh the velocity and γ from the momentum.
     public void updateEnergy()
     {
-        double vMag = velocityMagnitude;
-        if(mass == 0)
+        store.derived[slot] = 0;
+    }
+    
+    // -----------------------------------------------------------------
+    // Sleeping
+    // -----------------------------------------------------------------
+    // Called once per step by SleepStage. Counts the consecutive steps with a speed of at most
+    // maxSpeed and a net force of at most maxForce, and puts the body to sleep once there have
+    // been `steps` of them. Bodies driven by a constant velocity, acceleration or force never
+    // sleep. Returns whether the body is sleeping.
+    public boolean settle(double maxSpeed, double maxForce, int steps)
+    {
+        if(sleeping)
         {
-            kineticEnergy = momentum.magnitude() * SPEED_OF_LIGHT;
+            return true;
         }
-        else
+        if(store.kind[slot] != BodyStore.PLAIN || getVelocityMagnitude() > maxSpeed || getForceMagnitude() > maxForce)
+        {
+            quietSteps = 0;
+            return false;
+        }
+        if(++quietSteps < steps)
         {
-            double gammaLocal = (vMag == 0) ? 1.0 : 1.0 / Math.sqrt(1 - Math.pow(vMag / SPEED_OF_LIGHT, 2));
-            kineticEnergy = (gammaLocal - 1) * mass * SPEED_OF_LIGHT * SPEED_OF_LIGHT;
+            return false;
         }
-        potentialEnergy = getPotentialEnergy();
-        internalEnergy = getInternalEnergy();
+        sleep(maxForce);
+        return true;
+    }
+    
+    // Skips the kicks of the body until the net force on it exceeds wakeForce or wake() is called.
+    // The residual momentum (below the sleep threshold) is kept and the body keeps drifting with
+    // it, so p = γ m dx/dt still holds and the totals stay conserved.
+    public void sleep(double wakeForce)
+    {
+        this.wakeForce = wakeForce;
+        sleeping = true;
+        updateKind();
+    }
+    
+    @Override
+    public void wake()
+    {
+        sleeping = false;
+        quietSteps = 0;
+        updateKind();
+    }
+    
+    @Override
+    public boolean isSleeping()
+    {
+        return sleeping;
+    }
+    
+    // -----------------------------------------------------------------
+    // Regime
+    // -----------------------------------------------------------------
+    // Whether the last kick took the Newtonian path.
+    public boolean isNewtonian()
+    {
+        return store.newtonian[slot];
+    }
+    
+    public double getNewtonianBeta()
+    {
+        return store.newtonianBeta[slot];
+    }
+    
+    public void setNewtonianBeta(double beta)
+    {
+        store.newtonianBeta[slot] = beta;
+    }
+    
+    // Bound on the relative error of γ and of the velocity on the Newtonian path at q = beta: the
+    // first omitted term of the 1/γ series, 5 q⁶ / 16 (the γ series omits q⁶ / 16).
+    public static double newtonianError(double beta)
+    {
+        double b2 = beta * beta;
+        return 5 * b2 * b2 * b2 / 16;
     }
     
     // -----------------------------------------------------------------
@@ -252,30 +460,92 @@ public class Rigidbody extends Body
     @Override
     public void update(double dt)
     {
-        if(mass == 0)
+        if(getMass() == 0)
         {
             if(constantVelocity != null)
             {
-                velocity = constantVelocity.copy().normalize().mul(SPEED_OF_LIGHT);
+                velocity.set(constantVelocity);
             }
-            else if(velocity.magnitude() > 0)
+            if(velocity.magnitude() > 0)
             {
-                velocity = velocity.copy().normalize().mul(SPEED_OF_LIGHT);
+                velocity.scale(SPEED_OF_LIGHT / velocity.magnitude());
             }
             else
             {
-                velocity = new Vector2(SPEED_OF_LIGHT, 0);
+                velocity.zero().setComponent(0, SPEED_OF_LIGHT);
             }
-            velocityMagnitude = velocity.magnitude();
-            speedPercentC = (velocityMagnitude / SPEED_OF_LIGHT) * 100;
-            momentum = velocity.copy();
+            momentum.set(velocity);
             updatePosition(dt);
-            kineticEnergy = momentum.magnitude() * SPEED_OF_LIGHT;
+            store.derived[slot] = 0;
             return;
         }
         updateVelocity(dt);
         updatePosition(dt);
-        updateEnergy();
+    }
+    
+    // -----------------------------------------------------------------
+    // Copy
+    // -----------------------------------------------------------------
+    // The copy has a store of its own; constant vectors are shared since they are only read.
+    // Only reads this body, cached values included, so one template can be copied from several
+    // threads at once (Ensemble).
+    @Override
+    public Rigidbody copy()
+    {
+        Rigidbody copy = new Rigidbody();
+        BodyStore.copy(store, slot, copy.store, copy.slot, 1);
+        copy.name = name;
+        copy.reflectivity = reflectivity;
+        copy.radius = radius;
+        copy.color = color;
+        copy.potentialEnergy = potentialEnergy;
+        copy.internalEnergy = internalEnergy;
+        copy.velocityMagnitude = velocityMagnitude;
+        copy.momentumMagnitude = momentumMagnitude;
+        copy.forceMagnitude = forceMagnitude;
+        copy.netAccelerationMagnitude = netAccelerationMagnitude;
+        copy.kineticEnergy = kineticEnergy;
+        copy.constantVelocity = constantVelocity;
+        copy.constantAcceleration = constantAcceleration;
+        copy.constantForce = constantForce;
+        copy.sleeping = sleeping;
+        copy.wakeForce = wakeForce;
+        copy.quietSteps = quietSteps;
+        return copy;
+    }
+    
+    // -----------------------------------------------------------------
+    // BodyStore attachment
+    // -----------------------------------------------------------------
+    // Called by BodyStore once the body's state is in `slot`.
+    public void attach(BodyStore store, int slot)
+    {
+        this.store = store;
+        this.slot = slot;
+        updateKind();
+    }
+    
+    // Called by BodyStore when it moves the body's slot.
+    public void moveToSlot(int slot)
+    {
+        this.slot = slot;
+    }
+    
+    public BodyStore getStore()
+    {
+        return store;
+    }
+    
+    public int getSlot()
+    {
+        return slot;
+    }
+    
+    // Massive bodies without constant vectors that are awake are kicked on the columns alone.
+    private void updateKind()
+    {
+        boolean plain = store.mass[slot] > 0 && constantVelocity == null && constantAcceleration == null && constantForce == null && !sleeping;
+        store.kind[slot] = plain ? BodyStore.PLAIN : BodyStore.RIGID;
     }
     
     // -----------------------------------------------------------------
@@ -290,7 +560,7 @@ public class Rigidbody extends Body
     @Override
     public double getMass()
     {
-        return mass;
+        return store.mass[slot];
     }
     
     @Override
@@ -308,13 +578,18 @@ public class Rigidbody extends Body
     @Override
     public double getVelocityMagnitude()
     {
+        if((store.derived[slot] & VELOCITY_MAGNITUDE) == 0)
+        {
+            velocityMagnitude = velocity.magnitude();
+            store.derived[slot] |= VELOCITY_MAGNITUDE;
+        }
         return velocityMagnitude;
     }
     
     @Override
     public double getSpeedPercentC()
     {
-        return speedPercentC;
+        return (getVelocityMagnitude() / SPEED_OF_LIGHT) * 100;
     }
     
     @Override
@@ -326,24 +601,50 @@ public class Rigidbody extends Body
     @Override
     public double getMomentumMagnitude()
     {
+        if((store.derived[slot] & MOMENTUM_MAGNITUDE) == 0)
+        {
+            momentumMagnitude = momentum.magnitude();
+            store.derived[slot] |= MOMENTUM_MAGNITUDE;
+        }
         return momentumMagnitude;
     }
     
+    // Net force of the last kick, including the constant force and m * accelerations.
     @Override
     public double getForceMagnitude()
     {
+        if((store.derived[slot] & FORCE_MAGNITUDE) == 0)
+        {
+            double fx = store.appliedFx[slot];
+            double fy = store.appliedFy[slot];
+            forceMagnitude = Math.sqrt(fx * fx + fy * fy);
+            store.derived[slot] |= FORCE_MAGNITUDE;
+        }
         return forceMagnitude;
     }
     
     @Override
     public double getNetAccelerationMagnitude()
     {
+        if((store.derived[slot] & NET_ACCELERATION) == 0)
+        {
+            double ax = store.appliedAx[slot];
+            double ay = store.appliedAy[slot];
+            netAccelerationMagnitude = Math.sqrt(ax * ax + ay * ay) * getMass();
+            store.derived[slot] |= NET_ACCELERATION;
+        }
         return netAccelerationMagnitude;
     }
     
+    // Relativistic kinetic energy (γ - 1) m c², see Body.kineticEnergy.
     @Override
     public double getKineticEnergy()
     {
+        if((store.derived[slot] & KINETIC_ENERGY) == 0)
+        {
+            kineticEnergy = kineticEnergy(getMass(), store.px[slot], store.py[slot]);
+            store.derived[slot] |= KINETIC_ENERGY;
+        }
         return kineticEnergy;
     }
     
@@ -362,32 +663,41 @@ public class Rigidbody extends Body
     @Override
     public double getGamma()
     {
-        return gamma;
+        return store.gamma[slot];
+    }
+    
+    @Override
+    public double getAppliedForce(int component)
+    {
+        return component == 0 ? store.appliedFx[slot] : store.appliedFy[slot];
+    }
+    
+    @Override
+    public double getAppliedAcceleration(int component)
+    {
+        return component == 0 ? store.appliedAx[slot] : store.appliedAy[slot];
     }
     
     public Rigidbody(double mass, Vector velocity, Vector momentum, Vector position, Vector sumOfForces, Vector sumOfAccelerations, double kineticEnergy, double potentialEnergy, double internalEnergy, Vector constantVelocity, Vector constantAcceleration, Vector constantForce)
     {
-        this.mass = mass;
-        this.velocity = velocity;
-        this.momentum = momentum;
-        this.position = position;
-        this.sumOfForces = sumOfForces;
-        this.sumOfAccelerations = sumOfAccelerations;
+        this();
+        // The state is copied into the store, so the caller's vectors stay untouched.
+        this.velocity.set(velocity);
+        this.momentum.set(momentum);
+        this.position.set(position);
+        this.sumOfForces.set(sumOfForces);
+        this.sumOfAccelerations.set(sumOfAccelerations);
         this.kineticEnergy = kineticEnergy;
         this.potentialEnergy = potentialEnergy;
         this.internalEnergy = internalEnergy;
         
-        // Initialize additional computed fields
-        this.velocityMagnitude = velocity.magnitude();
-        this.momentumMagnitude = momentum.magnitude();
-        this.forceMagnitude = sumOfForces.magnitude();
-        this.netAccelerationMagnitude = sumOfAccelerations.magnitude();
-        
-        this.speedPercentC = (this.velocityMagnitude / SPEED_OF_LIGHT) * 100;
-        this.gamma = (this.velocityMagnitude == 0) ? 1.0 : 1.0 / Math.sqrt(1 - Math.pow(this.velocityMagnitude / SPEED_OF_LIGHT, 2));
+        double speed = velocity.magnitude();
+        store.gamma[slot] = (speed == 0) ? 1.0 : 1.0 / Math.sqrt(1 - Math.pow(speed / SPEED_OF_LIGHT, 2));
         
         this.constantVelocity = constantVelocity;
         this.constantAcceleration = constantAcceleration;
         this.constantForce = constantForce;
+        setMass(mass);
+        store.derived[slot] = KINETIC_ENERGY;
     }
 }
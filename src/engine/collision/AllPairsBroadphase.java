@@ -0,0 +1,21 @@
+package engine.collision;
+
+// Tests every pair, O(N²). Reference for checking the other broadphases on small scenes.
+public class AllPairsBroadphase implements Broadphase {
+    @Override
+    public void findPairs(double[] x, double[] y, double[] radius, int n, PairList pairs) {
+        for (int i = 0; i < n; i++) {
+            for (int j = i + 1; j < n; j++) {
+                double reach = radius[i] + radius[j];
+                if (Math.abs(x[i] - x[j]) <= reach && Math.abs(y[i] - y[j]) <= reach) {
+                    pairs.add(i, j);
+                }
+            }
+        }
+    }
+
+    @Override
+    public AllPairsBroadphase copy() {
+        return new AllPairsBroadphase();
+    }
+}
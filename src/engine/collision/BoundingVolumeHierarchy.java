@@ -0,0 +1,305 @@
+package engine.collision;
+
+import java.util.Arrays;
+
+// Binary tree of axis-aligned boxes over a set of discs, for ray queries.
+//
+// build() splits the discs top-down at the median of the longer axis of their centers. As the
+// discs move, refit() only recomputes the boxes bottom-up, which keeps the tree valid but lets
+// its quality drift; once the summed box perimeters exceed `rebuildFactor` times their value
+// right after the last build, update() builds the tree again.
+//
+// Discs may move during the query interval: with sweeps, disc i goes in a straight line from
+// (x - sweepX, y - sweepY) at t = 0 to (x, y) at t = 1, its boxes cover both ends, and rays are
+// intersected with the moving disc.
+//
+// Nodes are stored in preorder, so every child has a larger index than its parent and a reverse
+// pass over the nodes refits children before parents.
+public class BoundingVolumeHierarchy {
+    private static final int LEAF_SIZE = 4;
+
+    // Rebuild when refitting has made the tree this much looser than a fresh build.
+    public double rebuildFactor = 2d;
+
+    // --- Statistics ---
+    public long builds = 0;
+    public long refits = 0;
+
+    // --- Nodes ---
+    private int nodeCount = 0;
+    private double[] minX = new double[0];
+    private double[] minY = new double[0];
+    private double[] maxX = new double[0];
+    private double[] maxY = new double[0];
+    // Internal nodes: index of the right child (the left one is node + 1). Leaves: -1.
+    private int[] right = new int[0];
+    // Leaves: range of `items`.
+    private int[] start = new int[0];
+    private int[] count = new int[0];
+
+    // Disc indices in leaf order.
+    private int[] items = new int[0];
+    private int size = -1;
+    private double builtCost = 0;
+    private int[] stack = new int[64];
+
+    // The discs the tree was last built or refitted with; the sweeps are null for resting discs.
+    private double[] x, y, radius, sweepX, sweepY;
+
+    // Builds the tree for a new set of discs, or refits it when only positions changed.
+    public void update(double[] x, double[] y, double[] radius, int n) {
+        update(x, y, radius, null, null, n);
+    }
+
+    public void update(double[] x, double[] y, double[] radius, double[] sweepX, double[] sweepY, int n) {
+        if (n != size) {
+            build(x, y, radius, sweepX, sweepY, n);
+            return;
+        }
+        refit(x, y, radius, sweepX, sweepY);
+        if (cost() > rebuildFactor * builtCost) {
+            build(x, y, radius, sweepX, sweepY, n);
+        }
+    }
+
+    public void build(double[] x, double[] y, double[] radius, int n) {
+        build(x, y, radius, null, null, n);
+    }
+
+    public void build(double[] x, double[] y, double[] radius, double[] sweepX, double[] sweepY, int n) {
+        setDiscs(x, y, radius, sweepX, sweepY);
+        size = n;
+        if (items.length < n) {
+            items = new int[n];
+        }
+        for (int i = 0; i < n; i++) {
+            items[i] = i;
+        }
+        // Median splits can leave leaves only half full; 2n nodes is always enough.
+        ensureNodes(Math.max(1, 2 * n));
+        nodeCount = 0;
+        if (n > 0) {
+            split(0, n);
+        }
+        builtCost = cost();
+        builds++;
+    }
+
+    public void refit(double[] x, double[] y, double[] radius, double[] sweepX, double[] sweepY) {
+        setDiscs(x, y, radius, sweepX, sweepY);
+        for (int node = nodeCount - 1; node >= 0; node--) {
+            if (right[node] < 0) {
+                fitLeaf(node);
+            } else {
+                int l = node + 1, r = right[node];
+                minX[node] = Math.min(minX[l], minX[r]);
+                minY[node] = Math.min(minY[l], minY[r]);
+                maxX[node] = Math.max(maxX[l], maxX[r]);
+                maxY[node] = Math.max(maxY[l], maxY[r]);
+            }
+        }
+        refits++;
+    }
+
+    private void setDiscs(double[] x, double[] y, double[] radius, double[] sweepX, double[] sweepY) {
+        this.x = x;
+        this.y = y;
+        this.radius = radius;
+        this.sweepX = sweepX;
+        this.sweepY = sweepY;
+    }
+
+    // Returns the node index of a subtree over items [from, to).
+    private int split(int from, int to) {
+        int node = nodeCount++;
+        if (to - from <= LEAF_SIZE) {
+            right[node] = -1;
+            start[node] = from;
+            count[node] = to - from;
+            fitLeaf(node);
+            return node;
+        }
+        double loX = Double.POSITIVE_INFINITY, hiX = Double.NEGATIVE_INFINITY;
+        double loY = Double.POSITIVE_INFINITY, hiY = Double.NEGATIVE_INFINITY;
+        for (int k = from; k < to; k++) {
+            int i = items[k];
+            loX = Math.min(loX, x[i]);
+            hiX = Math.max(hiX, x[i]);
+            loY = Math.min(loY, y[i]);
+            hiY = Math.max(hiY, y[i]);
+        }
+        int middle = (from + to) >>> 1;
+        select(from, to - 1, middle, hiX - loX >= hiY - loY ? x : y);
+        split(from, middle);
+        right[node] = split(middle, to);
+        int l = node + 1, r = right[node];
+        minX[node] = Math.min(minX[l], minX[r]);
+        minY[node] = Math.min(minY[l], minY[r]);
+        maxX[node] = Math.max(maxX[l], maxX[r]);
+        maxY[node] = Math.max(maxY[l], maxY[r]);
+        return node;
+    }
+
+    // Quickselect: puts the item with the k-th smallest key at k, smaller keys before it.
+    private void select(int lo, int hi, int k, double[] key) {
+        while (lo < hi) {
+            double pivot = key[items[(lo + hi) >>> 1]];
+            int i = lo, j = hi;
+            while (i <= j) {
+                while (key[items[i]] < pivot) {
+                    i++;
+                }
+                while (key[items[j]] > pivot) {
+                    j--;
+                }
+                if (i <= j) {
+                    int swap = items[i];
+                    items[i++] = items[j];
+                    items[j--] = swap;
+                }
+            }
+            if (k <= j) {
+                hi = j;
+            } else if (k >= i) {
+                lo = i;
+            } else {
+                return;
+            }
+        }
+    }
+
+    private void fitLeaf(int node) {
+        double loX = Double.POSITIVE_INFINITY, hiX = Double.NEGATIVE_INFINITY;
+        double loY = Double.POSITIVE_INFINITY, hiY = Double.NEGATIVE_INFINITY;
+        for (int k = start[node], end = k + count[node]; k < end; k++) {
+            int i = items[k];
+            loX = Math.min(loX, x[i] - radius[i]);
+            hiX = Math.max(hiX, x[i] + radius[i]);
+            loY = Math.min(loY, y[i] - radius[i]);
+            hiY = Math.max(hiY, y[i] + radius[i]);
+            if (sweepX != null) {
+                double startX = x[i] - sweepX[i];
+                double startY = y[i] - sweepY[i];
+                loX = Math.min(loX, startX - radius[i]);
+                hiX = Math.max(hiX, startX + radius[i]);
+                loY = Math.min(loY, startY - radius[i]);
+                hiY = Math.max(hiY, startY + radius[i]);
+            }
+        }
+        minX[node] = loX;
+        minY[node] = loY;
+        maxX[node] = hiX;
+        maxY[node] = hiY;
+    }
+
+    // Sum of the node perimeters, the 2D analogue of the surface area heuristic.
+    private double cost() {
+        double sum = 0;
+        for (int node = 0; node < nodeCount; node++) {
+            sum += (maxX[node] - minX[node]) + (maxY[node] - minY[node]);
+        }
+        return sum;
+    }
+
+    public int raycast(double ox, double oy, double dx, double dy, double[] hit) {
+        return raycast(ox, oy, dx, dy, 0, hit);
+    }
+
+    // Nearest disc entered by the segment (ox, oy) + t (dx, dy), t in [tMin, 1]. Discs that
+    // already contain the ray point at tMin are skipped, so a ray leaving a disc does not hit it
+    // again. Returns the disc index and stores t in hit[0], or returns -1.
+    public int raycast(double ox, double oy, double dx, double dy, double tMin, double[] hit) {
+        if (nodeCount == 0) {
+            return -1;
+        }
+        double inverseX = 1 / dx;
+        double inverseY = 1 / dy;
+        double best = 1;
+        int found = -1;
+        int top = 0;
+        stack[top++] = 0;
+        while (top > 0) {
+            int node = stack[--top];
+            if (!slab(node, ox, oy, inverseX, inverseY, tMin, best)) {
+                continue;
+            }
+            if (right[node] < 0) {
+                for (int k = start[node], end = k + count[node]; k < end; k++) {
+                    int i = items[k];
+                    double t = enter(i, ox, oy, dx, dy, tMin);
+                    if (t >= 0 && t <= best) {
+                        best = t;
+                        found = i;
+                    }
+                }
+                continue;
+            }
+            if (top + 2 > stack.length) {
+                stack = Arrays.copyOf(stack, stack.length * 2);
+            }
+            stack[top++] = right[node];
+            stack[top++] = node + 1;
+        }
+        if (found >= 0) {
+            hit[0] = best;
+        }
+        return found;
+    }
+
+    // Does the segment overlap the node's box for some t in [tMin, tMax]?
+    private boolean slab(int node, double ox, double oy, double inverseX, double inverseY, double tMin, double tMax) {
+        double t1 = (minX[node] - ox) * inverseX;
+        double t2 = (maxX[node] - ox) * inverseX;
+        double near = Math.min(t1, t2);
+        double far = Math.max(t1, t2);
+        t1 = (minY[node] - oy) * inverseY;
+        t2 = (maxY[node] - oy) * inverseY;
+        near = Math.max(near, Math.min(t1, t2));
+        far = Math.min(far, Math.max(t1, t2));
+        // Written with negations so that NaN (0 * infinity: axis-parallel ray starting on a box
+        // edge) keeps the node instead of dropping it.
+        return !(near > far) && !(far < tMin) && !(near > tMax);
+    }
+
+    // Parameter in [tMin, ...) where the segment enters disc i, or -1. Solved in the disc's frame,
+    // where the ray moves with (dx, dy) minus the disc's sweep.
+    private double enter(int i, double ox, double oy, double dx, double dy, double tMin) {
+        double wx = dx, wy = dy;
+        double fx = ox - x[i];
+        double fy = oy - y[i];
+        if (sweepX != null) {
+            wx -= sweepX[i];
+            wy -= sweepY[i];
+            fx += sweepX[i];
+            fy += sweepY[i];
+        }
+        fx += tMin * wx;
+        fy += tMin * wy;
+        double c = fx * fx + fy * fy - radius[i] * radius[i];
+        if (c <= 0) {
+            return -1;
+        }
+        double a = wx * wx + wy * wy;
+        double b = fx * wx + fy * wy;
+        double discriminant = b * b - a * c;
+        if (b >= 0 || discriminant < 0) {
+            return -1;
+        }
+        // Smaller root of a s² + 2 b s + c, in the form that is stable for b < 0.
+        return tMin + c / (-b + Math.sqrt(discriminant));
+    }
+
+    private void ensureNodes(int nodes) {
+        if (minX.length >= nodes) {
+            return;
+        }
+        int capacity = Math.max(nodes, minX.length * 2);
+        minX = new double[capacity];
+        minY = new double[capacity];
+        maxX = new double[capacity];
+        maxY = new double[capacity];
+        right = new int[capacity];
+        start = new int[capacity];
+        count = new int[capacity];
+    }
+}
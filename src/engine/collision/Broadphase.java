@@ -0,0 +1,18 @@
+package engine.collision;
+
+// Finds the candidate pairs for collision tests: every pair of bodies whose bounding boxes
+// [x - r, x + r] × [y - r, y + r] overlap. The narrow phase then tests the actual circles.
+public interface Broadphase {
+    // Adds each overlapping pair (i, j) with i < j to `pairs` exactly once. Indices refer to the
+    // first n entries of the arrays.
+    void findPairs(double[] x, double[] y, double[] radius, int n, PairList pairs);
+
+    // Drops whatever was carried over from earlier calls. CollisionStage calls it when bodies
+    // were added to or removed from the scene since the last call, as the same indices may then
+    // stand for other bodies.
+    default void reset() {
+    }
+
+    // A broadphase with the same settings and no carried-over state, for a cloned scene.
+    Broadphase copy();
+}
@@ -0,0 +1,532 @@
+package engine.collision;
+
+import engine.BodyStore;
+import engine.Scene;
+import engine.bodies.Body;
+import engine.bodies.Rigidbody;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static engine.Constants.SPEED_OF_LIGHT;
+
+// Detects and resolves contacts between the massive Rigidbodies of a scene, treating each as a
+// disc of Body.radius. Runs once after every step (Simulation.stepOnce).
+//
+// With `continuous` set (the default), every body is swept along the straight line from its
+// position at the start of the step (recorded by beginStep) to its position at the end, so fast
+// bodies cannot tunnel through each other. The broadphase gets a box around each sweep, and for
+// every candidate pair the time of impact t in [0, 1] (fraction of the step) is found from the
+// relative motion of the two discs. Contacts are then handled in order of t, sub-stepping only the
+// bodies involved: both are placed at their contact positions, the response is applied, and each
+// continues from there with its new velocity for the rest of the step, after which the impact
+// times of their other candidate pairs are recomputed. Contacts with bodies that were outside the
+// candidate boxes of the original sweeps are picked up in the next step. Without a recorded start
+// (or with `continuous` off) the test is a discrete overlap test at the end of the step.
+//
+// Bounces are done in the center-of-momentum frame of the pair: boost both momenta into it,
+// reverse (ELASTIC) or scale by -restitution (INELASTIC) their components along the line of
+// centers, and boost back. Each body keeps its energy in the CM frame, so energy and momentum
+// are conserved exactly; in an inelastic bounce the kinetic energy lost in that frame becomes
+// rest mass (heat), which is also added to internalEnergy for the bookkeeping.
+// Pairs that already move apart are left alone, so overlapping bodies are not pulled together.
+//
+// MERGE replaces the pair by one body carrying the total energy and momentum: its rest mass is
+// the invariant mass of the pair (slightly more than the sum of the masses, by the kinetic energy
+// turned into heat), its position the center of energy, and its radius that of a sphere with the
+// combined volume. The heavier body survives and keeps its name and color; the other one is
+// removed from the scene.
+public class CollisionStage {
+    public enum Response { ELASTIC, INELASTIC, MERGE }
+
+    // Closing speeds below this fraction of the pair's speeds count as separating. A plastic
+    // bounce leaves a closing speed of zero up to rounding, which must not start another contact.
+    private static final double APPROACH_TOLERANCE = 1e-9;
+
+    public Response response = Response.ELASTIC;
+    // Fraction of the normal relative momentum kept by an INELASTIC bounce: 1 is elastic, 0 plastic.
+    public double restitution = 0.5;
+    // SpatialHashBroadphase rebuilds every step; SweepAndPruneBroadphase updates incrementally and
+    // wins when bodies move little per step. Compare lastBroadphaseNanos to pick one for a scene.
+    public Broadphase broadphase = new SpatialHashBroadphase();
+    // Sweep bodies over the step instead of testing overlaps at its end only.
+    public boolean continuous = true;
+    // Contacts resolved per step at most, as a multiple of the candidate pairs; bounds the work
+    // for bodies resting against each other.
+    public int maxContactsPerPair = 4;
+
+    // --- Statistics ---
+    // Broadphase candidates and resolved contacts in the last resolve().
+    public int lastCandidates = 0;
+    public int lastContacts = 0;
+    public long lastBroadphaseNanos = 0;
+    // Bodies absorbed by MERGE since the stage was created.
+    public long merges = 0;
+
+    // --- Work state, indexed like the gathered bodies ---
+    private Rigidbody[] gathered = new Rigidbody[0];
+    // Trajectory over the step: position(t) = (ax + t * bx, ay + t * by), t in [0, 1].
+    private double[] ax = new double[0];
+    private double[] ay = new double[0];
+    private double[] bx = new double[0];
+    private double[] by = new double[0];
+    private double[] radius = new double[0];
+    private boolean[] absorbed = new boolean[0];
+    private boolean[] deflected = new boolean[0];
+    // Box around each sweep, for the broadphase.
+    private double[] boxX = new double[0];
+    private double[] boxY = new double[0];
+    private double[] boxRadius = new double[0];
+    private final PairList pairs = new PairList();
+    private final StepStart start = new StepStart();
+    // BodyStore.version() at the last resolve(), to reset the broadphase when bodies came or went.
+    private long storeVersion = -1;
+    // Whether the bodies of the current resolve() have sweeps.
+    private boolean swept = false;
+
+    // Candidate pairs by body (CSR), a version per pair, and the queue of impacts.
+    private int[] pairsOfStart = new int[0];
+    private int[] pairsOf = new int[0];
+    private int[] pairVersion = new int[0];
+    private final ImpactQueue queue = new ImpactQueue();
+
+    public CollisionStage() {
+    }
+
+    public CollisionStage(Response response) {
+        this.response = response;
+    }
+
+    public CollisionStage(Response response, Broadphase broadphase) {
+        this.response = response;
+        this.broadphase = broadphase;
+    }
+
+    // Records where every body starts the step. Called by Simulation before each step.
+    public void beginStep(Scene scene) {
+        if (continuous) {
+            start.capture(scene.bodies);
+        }
+    }
+
+    // dt: length of the step that just ended.
+    public void resolve(Scene scene, double dt) {
+        swept = continuous && start.matches(scene.bodies);
+        int n = gather(scene.bodies);
+        start.clear();
+        if (scene.bodies.version() != storeVersion) {
+            broadphase.reset();
+            storeVersion = scene.bodies.version();
+        }
+        pairs.clear();
+        long begin = System.nanoTime();
+        broadphase.findPairs(boxX, boxY, boxRadius, n, pairs);
+        lastBroadphaseNanos = System.nanoTime() - begin;
+        lastCandidates = pairs.count;
+        lastContacts = 0;
+        indexPairs(n);
+
+        queue.clear();
+        for (int k = 0; k < pairs.count; k++) {
+            schedule(k, 0);
+        }
+        int limit = maxContactsPerPair * pairs.count + 16;
+        List<Body> removed = null;
+        while (!queue.isEmpty() && lastContacts < limit) {
+            double t = queue.topTime();
+            int k = queue.topPair();
+            int version = queue.topVersion();
+            queue.pop();
+            int i = pairs.first[k];
+            int j = pairs.second[k];
+            if (version != pairVersion[k] || absorbed[i] || absorbed[j]) {
+                continue;
+            }
+
+            if (response == Response.MERGE) {
+                int survivor = gathered[i].getMass() >= gathered[j].getMass() ? i : j;
+                int other = survivor == i ? j : i;
+                moveTo(i, t);
+                moveTo(j, t);
+                merge(gathered[survivor], gathered[other]);
+                absorbed[other] = true;
+                radius[survivor] = gathered[survivor].radius;
+                continueFrom(survivor, t, dt);
+                if (removed == null) {
+                    removed = new ArrayList<>();
+                }
+                removed.add(gathered[other]);
+                merges++;
+            } else {
+                double dx = (ax[j] + t * bx[j]) - (ax[i] + t * bx[i]);
+                double dy = (ay[j] + t * by[j]) - (ay[i] + t * by[i]);
+                double distance = Math.sqrt(dx * dx + dy * dy);
+                double e = response == Response.ELASTIC ? 1 : restitution;
+                if (distance == 0 || !bounce(gathered[i], gathered[j], dx / distance, dy / distance, e)) {
+                    continue;
+                }
+                continueFrom(i, t, dt);
+                continueFrom(j, t, dt);
+            }
+            lastContacts++;
+            reschedule(i, t);
+            reschedule(j, t);
+        }
+
+        for (int i = 0; i < n; i++) {
+            if (deflected[i] && !absorbed[i]) {
+                gathered[i].position.setComponent(0, ax[i] + bx[i]);
+                gathered[i].position.setComponent(1, ay[i] + by[i]);
+            }
+        }
+        if (removed != null) {
+            scene.remove(removed);
+        }
+        // Drop references so removed bodies can be collected.
+        for (int i = 0; i < n; i++) {
+            gathered[i] = null;
+        }
+    }
+
+    // Collects the massive Rigidbodies (photons and massless bodies pass through) with their sweeps.
+    private int gather(BodyStore bodies) {
+        int size = bodies.size();
+        if (gathered.length < size) {
+            int capacity = Math.max(size, gathered.length * 2);
+            gathered = new Rigidbody[capacity];
+            ax = new double[capacity];
+            ay = new double[capacity];
+            bx = new double[capacity];
+            by = new double[capacity];
+            radius = new double[capacity];
+            absorbed = new boolean[capacity];
+            deflected = new boolean[capacity];
+            boxX = new double[capacity];
+            boxY = new double[capacity];
+            boxRadius = new double[capacity];
+        }
+        int n = 0;
+        for (int b = 0; b < size; b++) {
+            if (bodies.mass[b] <= 0 || bodies.get(b).radius <= 0) {
+                continue;
+            }
+            Rigidbody rigidbody = (Rigidbody) bodies.get(b);
+            double endX = bodies.x[b];
+            double endY = bodies.y[b];
+            double startX = swept ? start.x(b) : endX;
+            double startY = swept ? start.y(b) : endY;
+            gathered[n] = rigidbody;
+            ax[n] = startX;
+            ay[n] = startY;
+            bx[n] = endX - startX;
+            by[n] = endY - startY;
+            radius[n] = rigidbody.radius;
+            absorbed[n] = false;
+            deflected[n] = false;
+            // The circle around the midpoint that holds both end discs.
+            boxX[n] = startX + 0.5 * bx[n];
+            boxY[n] = startY + 0.5 * by[n];
+            boxRadius[n] = rigidbody.radius + 0.5 * Math.sqrt(bx[n] * bx[n] + by[n] * by[n]);
+            n++;
+        }
+        return n;
+    }
+
+    private void indexPairs(int n) {
+        if (pairsOfStart.length < n + 1) {
+            pairsOfStart = new int[Math.max(n + 1, 2 * pairsOfStart.length)];
+        }
+        if (pairsOf.length < 2 * pairs.count) {
+            pairsOf = new int[Math.max(2 * pairs.count, 2 * pairsOf.length)];
+            pairVersion = new int[pairsOf.length / 2];
+        }
+        Arrays.fill(pairsOfStart, 0, n + 1, 0);
+        for (int k = 0; k < pairs.count; k++) {
+            pairsOfStart[pairs.first[k] + 1]++;
+            pairsOfStart[pairs.second[k] + 1]++;
+            pairVersion[k] = 0;
+        }
+        for (int i = 0; i < n; i++) {
+            pairsOfStart[i + 1] += pairsOfStart[i];
+        }
+        // Filling advances each start to the next body's start; shift them back afterwards.
+        for (int k = 0; k < pairs.count; k++) {
+            pairsOf[pairsOfStart[pairs.first[k]]++] = k;
+            pairsOf[pairsOfStart[pairs.second[k]]++] = k;
+        }
+        for (int i = n; i > 0; i--) {
+            pairsOfStart[i] = pairsOfStart[i - 1];
+        }
+        pairsOfStart[0] = 0;
+    }
+
+    // Queues the first impact of pair k at or after `from`, if there is one within the step.
+    private void schedule(int k, double from) {
+        int i = pairs.first[k];
+        int j = pairs.second[k];
+        if (absorbed[i] || absorbed[j]) {
+            return;
+        }
+        // Relative position at `from` and relative motion per step.
+        double vx = bx[j] - bx[i];
+        double vy = by[j] - by[i];
+        double dx = (ax[j] - ax[i]) + from * vx;
+        double dy = (ay[j] - ay[i]) + from * vy;
+        double reach = radius[i] + radius[j];
+        double c = dx * dx + dy * dy - reach * reach;
+        if (c <= 0) {
+            // Already touching: resolve now; bounce() ignores pairs that move apart.
+            queue.push(from, k, pairVersion[k]);
+            return;
+        }
+        double a = vx * vx + vy * vy;
+        double b = dx * vx + dy * vy;
+        double discriminant = b * b - a * c;
+        if (b >= 0 || discriminant < 0) {
+            return;
+        }
+        double t = from + c / (-b + Math.sqrt(discriminant));
+        if (t <= 1) {
+            queue.push(t, k, pairVersion[k]);
+        }
+    }
+
+    // Invalidates the queued impacts of body i and queues them again from time t.
+    private void reschedule(int i, double t) {
+        for (int p = pairsOfStart[i]; p < pairsOfStart[i + 1]; p++) {
+            int k = pairsOf[p];
+            pairVersion[k]++;
+            schedule(k, t);
+        }
+    }
+
+    // Puts the body where its trajectory has it at time t.
+    private void moveTo(int i, double t) {
+        gathered[i].position.setComponent(0, ax[i] + t * bx[i]);
+        gathered[i].position.setComponent(1, ay[i] + t * by[i]);
+    }
+
+    // From time t the body moves in a straight line with its current velocity, starting where it
+    // is at t (its trajectory position, or for a merged body its current position). Without
+    // sweeps the body just stays where it is.
+    private void continueFrom(int i, double t, double dt) {
+        Rigidbody body = gathered[i];
+        if (!swept) {
+            ax[i] = body.position.get(0);
+            ay[i] = body.position.get(1);
+            return;
+        }
+        double px = response == Response.MERGE ? body.position.get(0) : ax[i] + t * bx[i];
+        double py = response == Response.MERGE ? body.position.get(1) : ay[i] + t * by[i];
+        bx[i] = body.velocity.get(0) * dt;
+        by[i] = body.velocity.get(1) * dt;
+        ax[i] = px - t * bx[i];
+        ay[i] = py - t * by[i];
+        deflected[i] = true;
+    }
+
+    // (nx, ny): unit vector from a to b. Returns false, changing nothing, if the bodies move apart.
+    private boolean bounce(Rigidbody a, Rigidbody b, double nx, double ny, double e) {
+        double approach = (a.velocity.get(0) - b.velocity.get(0)) * nx + (a.velocity.get(1) - b.velocity.get(1)) * ny;
+        if (approach <= APPROACH_TOLERANCE * (a.velocity.magnitude() + b.velocity.magnitude())) {
+            return false;
+        }
+        // Energies are carried as E / c² (kg) to keep the numbers small.
+        double c2 = SPEED_OF_LIGHT * SPEED_OF_LIGHT;
+        double pax = a.momentum.get(0), pay = a.momentum.get(1);
+        double pbx = b.momentum.get(0), pby = b.momentum.get(1);
+        double energyA = energy(a.getMass(), pax, pay);
+        double energyB = energy(b.getMass(), pbx, pby);
+
+        // Velocity of the center-of-momentum frame.
+        double total = energyA + energyB;
+        double ux = (pax + pbx) / total;
+        double uy = (pay + pby) / total;
+        double u2 = ux * ux + uy * uy;
+        double beta2 = u2 / c2;
+        double root = Math.sqrt(1 - beta2);
+        double gammaMinusOne = beta2 / (root * (1 + root));
+        double gamma = 1 + gammaMinusOne;
+
+        // Into the CM frame: p' = p + ((γ - 1)(p·u)/u² - γE) u.
+        double ka = u2 > 0 ? gammaMinusOne * (pax * ux + pay * uy) / u2 - gamma * energyA : 0;
+        double kb = u2 > 0 ? gammaMinusOne * (pbx * ux + pby * uy) / u2 - gamma * energyB : 0;
+        double qax = pax + ka * ux, qay = pay + ka * uy;
+        double qbx = pbx + kb * ux, qby = pby + kb * uy;
+        double cmEnergyA = energy(a.getMass(), qax, qay);
+        double cmEnergyB = energy(b.getMass(), qbx, qby);
+        double qa2 = qax * qax + qay * qay;
+        double qb2 = qbx * qbx + qby * qby;
+
+        double jn = (1 + e) * 0.5 * ((qax - qbx) * nx + (qay - qby) * ny);
+        qax -= jn * nx;
+        qay -= jn * ny;
+        qbx += jn * nx;
+        qby += jn * ny;
+        if (e < 1) {
+            heat(a, (qa2 - (qax * qax + qay * qay)) / c2);
+            heat(b, (qb2 - (qbx * qbx + qby * qby)) / c2);
+        }
+
+        // Back to the scene frame with the unchanged CM energies: p = p' + ((γ - 1)(p'·u)/u² + γE') u.
+        double la = u2 > 0 ? gammaMinusOne * (qax * ux + qay * uy) / u2 + gamma * cmEnergyA : 0;
+        double lb = u2 > 0 ? gammaMinusOne * (qbx * ux + qby * uy) / u2 + gamma * cmEnergyB : 0;
+        setMomentum(a, qax + la * ux, qay + la * uy);
+        setMomentum(b, qbx + lb * ux, qby + lb * uy);
+        return true;
+    }
+
+    // Raises the rest mass so that m² grows by `q2Loss` = (|p'|² - |p''|²) / c², which keeps the
+    // body's CM-frame energy while its momentum shrinks; the difference is written as m'' - m
+    // = q2Loss / (m'' + m) so that small amounts of heat are not lost to rounding.
+    private static void heat(Rigidbody body, double q2Loss) {
+        if (q2Loss <= 0) {
+            return;
+        }
+        double m = body.getMass();
+        double raised = Math.sqrt(m * m + q2Loss);
+        double gain = q2Loss / (raised + m);
+        body.setMass(m + gain);
+        body.internalEnergy += gain * SPEED_OF_LIGHT * SPEED_OF_LIGHT;
+    }
+
+    // Folds `other` into `survivor`, conserving energy and momentum.
+    private void merge(Rigidbody survivor, Rigidbody other) {
+        double c2 = SPEED_OF_LIGHT * SPEED_OF_LIGHT;
+        double m1 = survivor.getMass(), m2 = other.getMass();
+        double p1x = survivor.momentum.get(0), p1y = survivor.momentum.get(1);
+        double p2x = other.momentum.get(0), p2y = other.momentum.get(1);
+        double k1 = kineticMass(m1, p1x, p1y);
+        double k2 = kineticMass(m2, p2x, p2y);
+        double e1 = m1 + k1, e2 = m2 + k2;
+
+        // Invariant mass: M² = (m1 + m2)² + 2 (E1 E2 - m1 m2 - p1·p2 / c²), with the bracket
+        // expanded so the small difference is computed without cancellation against m1 m2.
+        double m = m1 + m2;
+        double excess = 2 * (m1 * k2 + m2 * k1 + k1 * k2 - (p1x * p2x + p1y * p2y) / c2);
+        double invariant = Math.sqrt(Math.max(0, m * m + excess));
+        double heat = excess / (invariant + m);
+
+        double x = (e1 * survivor.position.get(0) + e2 * other.position.get(0)) / (e1 + e2);
+        double y = (e1 * survivor.position.get(1) + e2 * other.position.get(1)) / (e1 + e2);
+        survivor.setMass(m + heat);
+        survivor.position.setComponent(0, x);
+        survivor.position.setComponent(1, y);
+        survivor.setCharge(survivor.getCharge() + other.getCharge());
+        survivor.radius = Math.cbrt(Math.pow(survivor.radius, 3) + Math.pow(other.radius, 3));
+        // Already part of the new rest mass; kept for the energy bookkeeping.
+        survivor.internalEnergy += other.internalEnergy + heat * c2;
+        setMomentum(survivor, p1x + p2x, p1y + p2y);
+    }
+
+    // E / c² of a body, in kg.
+    private static double energy(double mass, double px, double py) {
+        return mass + kineticMass(mass, px, py);
+    }
+
+    // (E - mc²) / c² written as (p/c)² / (E/c² + m), exact for slow bodies too.
+    private static double kineticMass(double mass, double px, double py) {
+        double q2 = (px * px + py * py) / (SPEED_OF_LIGHT * SPEED_OF_LIGHT);
+        return q2 / (Math.sqrt(mass * mass + q2) + mass);
+    }
+
+    // Sets the momentum and refreshes velocity, γ and the energies from it. A contact wakes a
+    // sleeping body.
+    private static void setMomentum(Rigidbody body, double px, double py) {
+        body.wake();
+        body.momentum.setComponent(0, px);
+        body.momentum.setComponent(1, py);
+        body.kick(0);
+        body.updateEnergy();
+    }
+
+    public CollisionStage copy() {
+        CollisionStage copy = new CollisionStage(response, broadphase.copy());
+        copy.restitution = restitution;
+        copy.continuous = continuous;
+        copy.maxContactsPerPair = maxContactsPerPair;
+        return copy;
+    }
+
+    // Binary min-heap of (time, pair, version). Entries whose version no longer matches the pair's
+    // are stale and skipped when popped, so nothing has to be removed from the middle.
+    private static final class ImpactQueue {
+        private double[] time = new double[64];
+        private int[] pair = new int[64];
+        private int[] version = new int[64];
+        private int size = 0;
+
+        void clear() {
+            size = 0;
+        }
+
+        boolean isEmpty() {
+            return size == 0;
+        }
+
+        double topTime() {
+            return time[0];
+        }
+
+        int topPair() {
+            return pair[0];
+        }
+
+        int topVersion() {
+            return version[0];
+        }
+
+        void push(double t, int k, int v) {
+            if (size == time.length) {
+                time = Arrays.copyOf(time, size * 2);
+                pair = Arrays.copyOf(pair, size * 2);
+                version = Arrays.copyOf(version, size * 2);
+            }
+            int at = size++;
+            while (at > 0) {
+                int parent = (at - 1) >>> 1;
+                if (time[parent] <= t) {
+                    break;
+                }
+                set(at, parent);
+                at = parent;
+            }
+            time[at] = t;
+            pair[at] = k;
+            version[at] = v;
+        }
+
+        void pop() {
+            size--;
+            if (size == 0) {
+                return;
+            }
+            double t = time[size];
+            int at = 0;
+            while (true) {
+                int child = 2 * at + 1;
+                if (child >= size) {
+                    break;
+                }
+                if (child + 1 < size && time[child + 1] < time[child]) {
+                    child++;
+                }
+                if (t <= time[child]) {
+                    break;
+                }
+                set(at, child);
+                at = child;
+            }
+            time[at] = t;
+            pair[at] = pair[size];
+            version[at] = version[size];
+        }
+
+        private void set(int to, int from) {
+            time[to] = time[from];
+            pair[to] = pair[from];
+            version[to] = version[from];
+        }
+    }
+}
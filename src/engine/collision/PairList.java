@@ -0,0 +1,24 @@
+package engine.collision;
+
+import java.util.Arrays;
+
+// Growable list of index pairs (first[k], second[k]), reused from step to step.
+public final class PairList {
+    public int[] first = new int[64];
+    public int[] second = new int[64];
+    public int count = 0;
+
+    public void add(int i, int j) {
+        if (count == first.length) {
+            first = Arrays.copyOf(first, count * 2);
+            second = Arrays.copyOf(second, count * 2);
+        }
+        first[count] = i;
+        second[count] = j;
+        count++;
+    }
+
+    public void clear() {
+        count = 0;
+    }
+}
@@ -0,0 +1,276 @@
+package engine.collision;
+
+import engine.BodyStore;
+import engine.Scene;
+import engine.bodies.Body;
+import engine.bodies.Photon;
+import engine.bodies.PhotonBeam;
+import engine.bodies.Rigidbody;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+
+import static engine.Constants.SPEED_OF_LIGHT;
+
+// Lets photons hit the massive Rigidbodies of a scene. Runs once after every step
+// (Simulation.stepOnce), after the CollisionStage.
+//
+// Photons of Scene.bodies and of the beams are both traced. The path of a photon over the step
+// is taken as the segment from its position at the start of the step (recorded by beginStep
+// along with the bodies') to its current one. LensingStage runs before this stage and may have
+// bent the path, which the segment then follows as a chord; photons without a recorded start
+// (a beam that lost photons, or bodies removed during the step) fall back to the straight
+// segment position - velocity * dt. That segment is raycast against a BoundingVolumeHierarchy
+// over the bodies' discs, refitted every step. The discs are swept from their positions at the
+// start of the step (recorded by beginStep) to their current ones, so a photon meets a fast body
+// where the body was when the photon got there; without a recorded start (e.g. after a MERGE
+// removed bodies) the discs rest at their end positions. At the first body hit, the photon is
+// reflected with probability Rigidbody.reflectivity and absorbed otherwise:
+// - absorbed: the body takes in the photon's momentum and energy (Rigidbody.absorb), which
+//   raises its rest mass by the heat and adds that to internalEnergy as for CollisionStage; the
+//   photon is removed from the scene (or its beam).
+// - reflected: the body receives p_in - p_out and the photon leaves along the mirrored direction
+//   for the rest of the step, where it may hit another body (up to maxBounces times).
+// Reflection is specular in the scene frame and keeps the wavelength, i.e. bodies are assumed to
+// move much slower than light, as everywhere else for photons in this engine.
+//
+// Momentum goes through Rigidbody.applyImpulse (or absorb), so every integrator transfers exactly the
+// photon's momentum (a force added between steps would only act on the first half kick of
+// the leapfrog integrators).
+public class RadiationStage {
+    // Reflections followed per photon and step.
+    public int maxBounces = 4;
+    // Seed of the absorb-or-reflect draws, so runs are repeatable.
+    public long seed = 1L;
+
+    // --- Statistics ---
+    public int lastPhotons = 0;
+    public int lastHits = 0;
+    public long absorbed = 0;
+    public long reflected = 0;
+
+    private final BoundingVolumeHierarchy hierarchy = new BoundingVolumeHierarchy();
+    private SplittableRandom random = null;
+
+    private Rigidbody[] gathered = new Rigidbody[0];
+    private double[] x = new double[0];
+    private double[] y = new double[0];
+    private double[] radius = new double[0];
+    // Displacement of each body over the step, filled when `swept`.
+    private double[] sweepX = new double[0];
+    private double[] sweepY = new double[0];
+    private boolean swept = false;
+    private final StepStart start = new StepStart();
+    private final double[] hit = new double[1];
+    // The traced photon: position and unit direction, updated by a reflection.
+    private final double[] photon = new double[4];
+
+    public RadiationStage() {
+    }
+
+    public RadiationStage(long seed) {
+        this.seed = seed;
+    }
+
+    // Records where every body and beam photon starts the step. Called by Simulation before each
+    // step.
+    public void beginStep(Scene scene) {
+        start.capture(scene.bodies);
+        start.captureBeams(scene.beams);
+    }
+
+    // dt: length of the step that just ended.
+    public void resolve(Scene scene, double dt) {
+        if (random == null) {
+            random = new SplittableRandom(seed);
+        }
+        BodyStore bodies = scene.bodies;
+        swept = start.matches(bodies);
+        int n = gather(bodies);
+        lastPhotons = 0;
+        lastHits = 0;
+        if (n == 0) {
+            start.clear();
+            return;
+        }
+        if (swept) {
+            hierarchy.update(x, y, radius, sweepX, sweepY, n);
+        } else {
+            hierarchy.update(x, y, radius, n);
+        }
+
+        List<Body> removed = null;
+        for (int p = 0, size = bodies.size(); p < size; p++) {
+            if (!(bodies.get(p) instanceof Photon)) {
+                continue;
+            }
+            // Unchanged unless the photon is reflected.
+            Photon body = (Photon) bodies.get(p);
+            lastPhotons++;
+            double ex = body.position.get(0);
+            double ey = body.position.get(1);
+            double speed = body.velocity.magnitude();
+            photon[0] = ex;
+            photon[1] = ey;
+            photon[2] = body.velocity.get(0) / speed;
+            photon[3] = body.velocity.get(1) / speed;
+            double ox = swept ? start.x(p) : ex - photon[2] * SPEED_OF_LIGHT * dt;
+            double oy = swept ? start.y(p) : ey - photon[3] * SPEED_OF_LIGHT * dt;
+            double momentum = body.momentum.magnitude();
+            long bounces = reflected;
+            if (trace(ox, oy, momentum, body.energy)) {
+                if (removed == null) {
+                    removed = new ArrayList<>();
+                }
+                removed.add(body);
+                continue;
+            }
+            if (reflected == bounces) {
+                continue;
+            }
+            body.position.setComponent(0, photon[0]);
+            body.position.setComponent(1, photon[1]);
+            body.velocity.setComponent(0, photon[2] * speed);
+            body.velocity.setComponent(1, photon[3] * speed);
+            body.momentum.setComponent(0, photon[2] * momentum);
+            body.momentum.setComponent(1, photon[3] * momentum);
+        }
+        if (removed != null) {
+            scene.remove(removed);
+        }
+
+        for (int b = 0; b < scene.beams.size(); b++) {
+            PhotonBeam beam = scene.beams.get(b);
+            boolean recorded = start.matches(b, beam);
+            // Backwards, so an absorption moves an already traced photon into the freed index.
+            for (int i = beam.size() - 1; i >= 0; i--) {
+                lastPhotons++;
+                photon[0] = beam.x[i];
+                photon[1] = beam.y[i];
+                photon[2] = beam.dirX[i];
+                photon[3] = beam.dirY[i];
+                double ox = recorded ? start.beamX(b, i) : photon[0] - photon[2] * SPEED_OF_LIGHT * dt;
+                double oy = recorded ? start.beamY(b, i) : photon[1] - photon[3] * SPEED_OF_LIGHT * dt;
+                long bounces = reflected;
+                if (trace(ox, oy, beam.momentum(i), beam.energy(i))) {
+                    beam.remove(i);
+                    continue;
+                }
+                if (reflected == bounces) {
+                    continue;
+                }
+                beam.x[i] = photon[0];
+                beam.y[i] = photon[1];
+                beam.dirX[i] = photon[2];
+                beam.dirY[i] = photon[3];
+            }
+        }
+        start.clear();
+        for (int i = 0; i < n; i++) {
+            gathered[i] = null;
+        }
+    }
+
+    // Follows the photon in `photon` over the last step, from (ox, oy) to its current position.
+    // `momentum` and `energy` are the magnitudes it carries. Returns true if it was absorbed;
+    // otherwise `photon` holds its position and direction after any reflections.
+    // The first body hit takes the photon's current momentum, the one the other stages accounted
+    // for (the chord of a lensed path points a little elsewhere), so totals stay conserved; after
+    // a reflection the photon carries its momentum along the mirrored path.
+    private boolean trace(double ox, double oy, double momentum, double energy) {
+        double dx = photon[0] - ox;
+        double dy = photon[1] - oy;
+        double length = Math.sqrt(dx * dx + dy * dy);
+        if (length == 0) {
+            return false;
+        }
+        double px = momentum * photon[2];
+        double py = momentum * photon[3];
+        // The photon is at o + t d at time t of the step; a reflection changes o and d, not t.
+        double t = 0;
+        for (int bounce = 0; bounce <= maxBounces; bounce++) {
+            int i = hierarchy.raycast(ox, oy, dx, dy, t, hit);
+            if (i < 0) {
+                return false;
+            }
+            lastHits++;
+            Rigidbody body = gathered[i];
+            if (bounce == maxBounces || random.nextDouble() >= body.reflectivity) {
+                body.absorb(px, py, energy);
+                absorbed++;
+                return true;
+            }
+
+            // Mirror about the surface normal at the hit point, from where the body was at t.
+            t = hit[0];
+            double hx = ox + t * dx;
+            double hy = oy + t * dy;
+            double nx = hx - x[i];
+            double ny = hy - y[i];
+            if (swept) {
+                nx += (1 - t) * sweepX[i];
+                ny += (1 - t) * sweepY[i];
+            }
+            double normal = Math.sqrt(nx * nx + ny * ny);
+            nx /= normal;
+            ny /= normal;
+            double dn = dx * nx + dy * ny;
+            dx -= 2 * dn * nx;
+            dy -= 2 * dn * ny;
+            ox = hx - t * dx;
+            oy = hy - t * dy;
+            photon[0] = ox + dx;
+            photon[1] = oy + dy;
+            photon[2] = dx / length;
+            photon[3] = dy / length;
+            double qx = momentum * photon[2];
+            double qy = momentum * photon[3];
+            body.applyImpulse(px - qx, py - qy);
+            px = qx;
+            py = qy;
+            reflected++;
+            if (t >= 1) {
+                return false;
+            }
+        }
+        return false;
+    }
+
+    // Collects the massive Rigidbodies with a radius, the only bodies photons can hit.
+    private int gather(BodyStore bodies) {
+        int size = bodies.size();
+        if (gathered.length < size) {
+            int capacity = Math.max(size, gathered.length * 2);
+            gathered = new Rigidbody[capacity];
+            x = new double[capacity];
+            y = new double[capacity];
+            radius = new double[capacity];
+            sweepX = new double[capacity];
+            sweepY = new double[capacity];
+        }
+        int n = 0;
+        for (int i = 0; i < size; i++) {
+            if (bodies.mass[i] > 0 && bodies.get(i).radius > 0) {
+                Rigidbody rigidbody = (Rigidbody) bodies.get(i);
+                gathered[n] = rigidbody;
+                x[n] = bodies.x[i];
+                y[n] = bodies.y[i];
+                radius[n] = rigidbody.radius;
+                if (swept) {
+                    sweepX[n] = x[n] - start.x(i);
+                    sweepY[n] = y[n] - start.y(i);
+                }
+                n++;
+            }
+        }
+        return n;
+    }
+
+    // Same settings, fresh random sequence.
+    public RadiationStage copy() {
+        RadiationStage copy = new RadiationStage(seed);
+        copy.maxBounces = maxBounces;
+        return copy;
+    }
+}
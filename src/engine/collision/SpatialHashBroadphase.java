@@ -0,0 +1,193 @@
+package engine.collision;
+
+import java.util.Arrays;
+
+// Uniform grid stored in a hash table, rebuilt every call.
+//
+// Each body is entered into every cell its bounding box touches, and only bodies sharing a cell
+// are compared, so with cells about one body across the search is O(N) expected. The grid is
+// unbounded: cells are addressed by (long) integer coordinates and hashed into a table of about
+// twice the number of entries, which is bucketed with a counting sort instead of per-cell lists.
+// A pair sharing several cells is reported only from the cell holding the lower-left corner of
+// the overlap of the two boxes.
+//
+// Bodies much larger than a cell would fill many cells; they are kept out of the grid and tested
+// against every other body instead.
+public class SpatialHashBroadphase implements Broadphase {
+    // Cell edge length in meters; 0 picks twice the mean radius on every call.
+    public double cellSize = 0d;
+    // Bodies whose box touches more cells than this are tested against all others.
+    public int maxCellsPerBody = 16;
+
+    // --- Statistics of the last call ---
+    public double lastCellSize = 0d;
+    public int lastEntries = 0;
+    public int lastOversized = 0;
+
+    // --- Entries (one per body and touched cell), in bucket order after the sort ---
+    private int[] entryBody = new int[0];
+    private long[] entryCellX = new long[0];
+    private long[] entryCellY = new long[0];
+    private int[] entryBucket = new int[0];
+    private int[] sortedBody = new int[0];
+    private long[] sortedCellX = new long[0];
+    private long[] sortedCellY = new long[0];
+    private int[] bucketStart = new int[0];
+
+    private int[] oversized = new int[0];
+    private boolean[] isOversized = new boolean[0];
+
+    @Override
+    public void findPairs(double[] x, double[] y, double[] radius, int n, PairList pairs) {
+        if (n < 2) {
+            return;
+        }
+        double size = cellSize > 0 ? cellSize : automaticCellSize(radius, n);
+        double inverse = 1 / size;
+        lastCellSize = size;
+        if (isOversized.length < n) {
+            isOversized = new boolean[n];
+            oversized = new int[n];
+        }
+
+        // Count the entries first, so the arrays are sized once.
+        int entries = 0;
+        int oversizedCount = 0;
+        for (int i = 0; i < n; i++) {
+            long columns = cell(x[i] + radius[i], inverse) - cell(x[i] - radius[i], inverse) + 1;
+            long rows = cell(y[i] + radius[i], inverse) - cell(y[i] - radius[i], inverse) + 1;
+            // Checked per axis first, so the product cannot overflow.
+            isOversized[i] = columns > maxCellsPerBody || rows > maxCellsPerBody || columns * rows > maxCellsPerBody;
+            if (isOversized[i]) {
+                oversized[oversizedCount++] = i;
+            } else {
+                entries += (int) (columns * rows);
+            }
+        }
+        ensureCapacity(entries);
+        int tableSize = Integer.highestOneBit(Math.max(16, 2 * entries) - 1) << 1;
+        int mask = tableSize - 1;
+        if (bucketStart.length < tableSize + 1) {
+            bucketStart = new int[tableSize + 1];
+        } else {
+            Arrays.fill(bucketStart, 0, tableSize + 1, 0);
+        }
+
+        int e = 0;
+        for (int i = 0; i < n; i++) {
+            if (isOversized[i]) {
+                continue;
+            }
+            long x0 = cell(x[i] - radius[i], inverse), x1 = cell(x[i] + radius[i], inverse);
+            long y0 = cell(y[i] - radius[i], inverse), y1 = cell(y[i] + radius[i], inverse);
+            for (long cx = x0; cx <= x1; cx++) {
+                for (long cy = y0; cy <= y1; cy++) {
+                    int bucket = hash(cx, cy) & mask;
+                    entryBody[e] = i;
+                    entryCellX[e] = cx;
+                    entryCellY[e] = cy;
+                    entryBucket[e] = bucket;
+                    bucketStart[bucket + 1]++;
+                    e++;
+                }
+            }
+        }
+        for (int b = 0; b < tableSize; b++) {
+            bucketStart[b + 1] += bucketStart[b];
+        }
+        // Scatter into bucket order; bucketStart[b] ends up at the end of bucket b, i.e. the
+        // start of bucket b + 1, so the loop below reads bucket b as [previous end, bucketStart[b]).
+        for (int k = 0; k < entries; k++) {
+            int slot = bucketStart[entryBucket[k]]++;
+            sortedBody[slot] = entryBody[k];
+            sortedCellX[slot] = entryCellX[k];
+            sortedCellY[slot] = entryCellY[k];
+        }
+
+        int begin = 0;
+        for (int b = 0; b < tableSize; b++) {
+            int end = bucketStart[b];
+            for (int a = begin; a < end; a++) {
+                int i = sortedBody[a];
+                long cx = sortedCellX[a];
+                long cy = sortedCellY[a];
+                for (int c = a + 1; c < end; c++) {
+                    if (sortedCellX[c] != cx || sortedCellY[c] != cy) {
+                        continue;
+                    }
+                    int j = sortedBody[c];
+                    if (!overlap(x, y, radius, i, j)) {
+                        continue;
+                    }
+                    // Report the pair only from the cell of the overlap's lower-left corner.
+                    double left = Math.max(x[i] - radius[i], x[j] - radius[j]);
+                    double bottom = Math.max(y[i] - radius[i], y[j] - radius[j]);
+                    if (cell(left, inverse) == cx && cell(bottom, inverse) == cy) {
+                        pairs.add(Math.min(i, j), Math.max(i, j));
+                    }
+                }
+            }
+            begin = end;
+        }
+
+        for (int k = 0; k < oversizedCount; k++) {
+            int i = oversized[k];
+            for (int j = 0; j < n; j++) {
+                // Pairs of two oversized bodies are reported by the lower index only.
+                if (j == i || (isOversized[j] && j < i)) {
+                    continue;
+                }
+                if (overlap(x, y, radius, i, j)) {
+                    pairs.add(Math.min(i, j), Math.max(i, j));
+                }
+            }
+        }
+        lastEntries = entries;
+        lastOversized = oversizedCount;
+    }
+
+    private static double automaticCellSize(double[] radius, int n) {
+        double sum = 0;
+        for (int i = 0; i < n; i++) {
+            sum += radius[i];
+        }
+        double size = 2 * sum / n;
+        return size > 0 ? size : 1;
+    }
+
+    private static long cell(double coordinate, double inverse) {
+        return (long) Math.floor(coordinate * inverse);
+    }
+
+    private static int hash(long cx, long cy) {
+        long h = cx * 0x9E3779B97F4A7C15L + cy * 0xC2B2AE3D27D4EB4FL;
+        return (int) (h ^ (h >>> 32));
+    }
+
+    private static boolean overlap(double[] x, double[] y, double[] radius, int i, int j) {
+        double reach = radius[i] + radius[j];
+        return Math.abs(x[i] - x[j]) <= reach && Math.abs(y[i] - y[j]) <= reach;
+    }
+
+    private void ensureCapacity(int entries) {
+        if (entryBody.length >= entries) {
+            return;
+        }
+        int capacity = Math.max(entries, entryBody.length * 2);
+        entryBody = new int[capacity];
+        entryCellX = new long[capacity];
+        entryCellY = new long[capacity];
+        entryBucket = new int[capacity];
+        sortedBody = new int[capacity];
+        sortedCellX = new long[capacity];
+        sortedCellY = new long[capacity];
+    }
+
+    @Override
+    public SpatialHashBroadphase copy() {
+        SpatialHashBroadphase copy = new SpatialHashBroadphase();
+        copy.cellSize = cellSize;
+        copy.maxCellsPerBody = maxCellsPerBody;
+        return copy;
+    }
+}
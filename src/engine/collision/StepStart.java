@@ -0,0 +1,103 @@
+package engine.collision;
+
+import engine.BodyStore;
+import engine.Vector;
+import engine.bodies.PhotonBeam;
+
+import java.util.Arrays;
+import java.util.List;
+
+// Positions of a scene's bodies at the start of a step, so the stages that run after the step
+// can sweep each body from where it was to where it is. Photons of beams can be recorded too.
+final class StepStart {
+    private double[] x = new double[0];
+    private double[] y = new double[0];
+    private BodyStore bodies = null;
+    private long version = -1;
+
+    // Photon positions per beam, and the beams and their sizes they were taken from.
+    private double[][] beamX = new double[0][];
+    private double[][] beamY = new double[0][];
+    private PhotonBeam[] beams = new PhotonBeam[0];
+    private int[] beamCount = new int[0];
+
+    void capture(BodyStore bodies) {
+        int n = bodies.size();
+        if (x.length < n) {
+            int capacity = Math.max(n, x.length * 2);
+            x = new double[capacity];
+            y = new double[capacity];
+        }
+        for (int i = 0; i < n; i++) {
+            if (bodies.kind[i] == BodyStore.OTHER) {
+                Vector position = bodies.get(i).getPos();
+                x[i] = position.get(0);
+                y[i] = position.get(1);
+            } else {
+                x[i] = bodies.x[i];
+                y[i] = bodies.y[i];
+            }
+        }
+        this.bodies = bodies;
+        this.version = bodies.version();
+    }
+
+    // True if the positions were captured from this store and no body was added or removed
+    // since (indices still match).
+    boolean matches(BodyStore bodies) {
+        return this.bodies == bodies && version == bodies.version();
+    }
+
+    double x(int i) {
+        return x[i];
+    }
+
+    double y(int i) {
+        return y[i];
+    }
+
+    void captureBeams(List<PhotonBeam> sources) {
+        int count = sources.size();
+        if (beams.length < count) {
+            beamX = Arrays.copyOf(beamX, count);
+            beamY = Arrays.copyOf(beamY, count);
+            beams = new PhotonBeam[count];
+            beamCount = new int[count];
+        }
+        for (int b = 0; b < count; b++) {
+            PhotonBeam beam = sources.get(b);
+            int n = beam.size();
+            if (beamX[b] == null || beamX[b].length < n) {
+                int capacity = Math.max(n, beamX[b] == null ? 0 : beamX[b].length * 2);
+                beamX[b] = new double[capacity];
+                beamY[b] = new double[capacity];
+            }
+            System.arraycopy(beam.x, 0, beamX[b], 0, n);
+            System.arraycopy(beam.y, 0, beamY[b], 0, n);
+            beams[b] = beam;
+            beamCount[b] = n;
+        }
+        Arrays.fill(beams, count, beams.length, null);
+    }
+
+    // True if the photon positions of beam b were captured from this beam and it still has the
+    // same photons. A beam that lost photons (e.g. captured by LensingStage) has moved others
+    // into their indices, so its recorded positions no longer match.
+    boolean matches(int b, PhotonBeam beam) {
+        return b < beams.length && beams[b] == beam && beamCount[b] == beam.size();
+    }
+
+    double beamX(int b, int i) {
+        return beamX[b][i];
+    }
+
+    double beamY(int b, int i) {
+        return beamY[b][i];
+    }
+
+    void clear() {
+        bodies = null;
+        version = -1;
+        Arrays.fill(beams, null);
+    }
+}
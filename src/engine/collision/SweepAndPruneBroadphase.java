@@ -0,0 +1,303 @@
+package engine.collision;
+
+import java.util.Arrays;
+
+// Incremental sweep and prune, for scenes where bodies move little from one step to the next.
+//
+// The interval ends of every body's bounding box are kept sorted along x and along y across
+// calls. Each call refreshes the end values and restores the order with insertion sort, which
+// costs O(N + swaps) when the scene is coherent. Every swap of a lower end past an upper end
+// means that two intervals started or stopped overlapping on that axis, so the set of pairs whose
+// boxes overlap on both axes is updated at those swaps only, and the call just lists that set.
+//
+// The state is tied to body indices: it is rebuilt from scratch (with a full sort) after reset(),
+// which CollisionStage calls whenever bodies were added or removed (even if their number stayed
+// the same), and whenever the number of bodies changes. Bodies moving a lot, or bodies coming and
+// going every step, make the spatial hash the better choice; lastSwaps and lastPairUpdates show
+// which case a scene is in.
+public class SweepAndPruneBroadphase implements Broadphase {
+    // --- Statistics ---
+    // Endpoint swaps and pair set insertions/removals in the last call.
+    public long lastSwaps = 0;
+    public long lastPairUpdates = 0;
+    // Full rebuilds since the broadphase was created.
+    public long rebuilds = 0;
+
+    private int count = -1;
+    // Per axis: end values in sorted order, and tags (body << 1 | 1 for an upper end).
+    private final double[][] values = {new double[0], new double[0]};
+    private final int[][] tags = {new int[0], new int[0]};
+    // Current box of every body, per axis.
+    private double[][] lower = {new double[0], new double[0]};
+    private double[][] upper = {new double[0], new double[0]};
+
+    private final PairSet overlapping = new PairSet();
+
+    @Override
+    public void findPairs(double[] x, double[] y, double[] radius, int n, PairList pairs) {
+        lastSwaps = 0;
+        lastPairUpdates = 0;
+        if (n != count) {
+            rebuild(x, y, radius, n);
+        } else {
+            updateBoxes(x, y, radius, n);
+            for (int axis = 0; axis < 2; axis++) {
+                refreshValues(axis);
+                insertionSort(axis);
+            }
+        }
+        overlapping.appendTo(pairs);
+    }
+
+    private void updateBoxes(double[] x, double[] y, double[] radius, int n) {
+        for (int i = 0; i < n; i++) {
+            lower[0][i] = x[i] - radius[i];
+            upper[0][i] = x[i] + radius[i];
+            lower[1][i] = y[i] - radius[i];
+            upper[1][i] = y[i] + radius[i];
+        }
+    }
+
+    private void refreshValues(int axis) {
+        double[] value = values[axis];
+        int[] tag = tags[axis];
+        double[] lo = lower[axis];
+        double[] hi = upper[axis];
+        for (int k = 0, ends = 2 * count; k < ends; k++) {
+            int body = tag[k] >> 1;
+            value[k] = (tag[k] & 1) == 0 ? lo[body] : hi[body];
+        }
+    }
+
+    // Ends are ordered by value, lower ends first on ties, so touching boxes count as overlapping.
+    private static boolean before(double value, int tag, double otherValue, int otherTag) {
+        return value < otherValue || (value == otherValue && (tag & 1) < (otherTag & 1));
+    }
+
+    private void insertionSort(int axis) {
+        double[] value = values[axis];
+        int[] tag = tags[axis];
+        int other = 1 - axis;
+        for (int k = 1, ends = 2 * count; k < ends; k++) {
+            double v = value[k];
+            int t = tag[k];
+            int j = k - 1;
+            while (j >= 0 && before(v, t, value[j], tag[j])) {
+                int passed = tag[j];
+                if ((t & 1) == 0 && (passed & 1) == 1) {
+                    // A lower end moved before an upper end: the intervals now overlap on this axis.
+                    int a = t >> 1, b = passed >> 1;
+                    if (overlaps(other, a, b) && overlapping.add(a, b)) {
+                        lastPairUpdates++;
+                    }
+                } else if ((t & 1) == 1 && (passed & 1) == 0) {
+                    // An upper end moved before a lower end: they no longer overlap.
+                    if (overlapping.remove(t >> 1, passed >> 1)) {
+                        lastPairUpdates++;
+                    }
+                }
+                value[j + 1] = value[j];
+                tag[j + 1] = passed;
+                j--;
+                lastSwaps++;
+            }
+            value[j + 1] = v;
+            tag[j + 1] = t;
+        }
+    }
+
+    private boolean overlaps(int axis, int a, int b) {
+        return lower[axis][a] <= upper[axis][b] && lower[axis][b] <= upper[axis][a];
+    }
+
+    private void rebuild(double[] x, double[] y, double[] radius, int n) {
+        count = n;
+        rebuilds++;
+        if (lower[0].length < n) {
+            lower = new double[][]{new double[n], new double[n]};
+            upper = new double[][]{new double[n], new double[n]};
+        }
+        updateBoxes(x, y, radius, n);
+        for (int axis = 0; axis < 2; axis++) {
+            if (values[axis].length < 2 * n) {
+                values[axis] = new double[2 * n];
+                tags[axis] = new int[2 * n];
+            }
+            for (int i = 0; i < n; i++) {
+                tags[axis][2 * i] = i << 1;
+                tags[axis][2 * i + 1] = (i << 1) | 1;
+            }
+            refreshValues(axis);
+            mergeSort(axis);
+        }
+
+        // One sweep along x, checking y for every pair of open intervals.
+        overlapping.clear();
+        int[] open = new int[n];
+        int[] openAt = new int[n];
+        int openCount = 0;
+        int[] tag = tags[0];
+        for (int k = 0; k < 2 * n; k++) {
+            int body = tag[k] >> 1;
+            if ((tag[k] & 1) == 0) {
+                for (int o = 0; o < openCount; o++) {
+                    if (overlaps(1, body, open[o])) {
+                        overlapping.add(body, open[o]);
+                    }
+                }
+                openAt[body] = openCount;
+                open[openCount++] = body;
+            } else {
+                int at = openAt[body];
+                int last = open[--openCount];
+                open[at] = last;
+                openAt[last] = at;
+            }
+        }
+        lastPairUpdates = overlapping.size();
+    }
+
+    // Full O(N log N) sort for rebuilds, where insertion sort could be quadratic.
+    private void mergeSort(int axis) {
+        int ends = 2 * count;
+        double[] value = values[axis];
+        int[] tag = tags[axis];
+        double[] valueBuffer = new double[ends];
+        int[] tagBuffer = new int[ends];
+        for (int width = 1; width < ends; width *= 2) {
+            for (int left = 0; left < ends; left += 2 * width) {
+                int middle = Math.min(left + width, ends);
+                int right = Math.min(left + 2 * width, ends);
+                int i = left, j = middle, out = left;
+                while (i < middle && j < right) {
+                    if (before(value[j], tag[j], value[i], tag[i])) {
+                        valueBuffer[out] = value[j];
+                        tagBuffer[out++] = tag[j++];
+                    } else {
+                        valueBuffer[out] = value[i];
+                        tagBuffer[out++] = tag[i++];
+                    }
+                }
+                while (i < middle) {
+                    valueBuffer[out] = value[i];
+                    tagBuffer[out++] = tag[i++];
+                }
+                while (j < right) {
+                    valueBuffer[out] = value[j];
+                    tagBuffer[out++] = tag[j++];
+                }
+            }
+            System.arraycopy(valueBuffer, 0, value, 0, ends);
+            System.arraycopy(tagBuffer, 0, tag, 0, ends);
+        }
+    }
+
+    @Override
+    public void reset() {
+        count = -1;
+    }
+
+    @Override
+    public SweepAndPruneBroadphase copy() {
+        return new SweepAndPruneBroadphase();
+    }
+
+    // Open-addressing hash set of unordered index pairs, with backward-shift deletion so no
+    // tombstones build up over many steps.
+    private static final class PairSet {
+        private static final long EMPTY = -1L;
+
+        private long[] keys = newTable(64);
+        private int size = 0;
+
+        private static long[] newTable(int capacity) {
+            long[] table = new long[capacity];
+            Arrays.fill(table, EMPTY);
+            return table;
+        }
+
+        private static long key(int a, int b) {
+            return a < b ? ((long) a << 32) | b : ((long) b << 32) | a;
+        }
+
+        private int slot(long key) {
+            long h = key * 0x9E3779B97F4A7C15L;
+            return (int) (h ^ (h >>> 32)) & (keys.length - 1);
+        }
+
+        boolean add(int a, int b) {
+            if (2 * (size + 1) > keys.length) {
+                grow();
+            }
+            long key = key(a, b);
+            int mask = keys.length - 1;
+            int s = slot(key);
+            while (keys[s] != EMPTY) {
+                if (keys[s] == key) {
+                    return false;
+                }
+                s = (s + 1) & mask;
+            }
+            keys[s] = key;
+            size++;
+            return true;
+        }
+
+        boolean remove(int a, int b) {
+            long key = key(a, b);
+            int mask = keys.length - 1;
+            int s = slot(key);
+            while (keys[s] != key) {
+                if (keys[s] == EMPTY) {
+                    return false;
+                }
+                s = (s + 1) & mask;
+            }
+            // Shift later entries of the probe run back into the hole.
+            int hole = s;
+            int next = (hole + 1) & mask;
+            while (keys[next] != EMPTY) {
+                int home = slot(keys[next]);
+                if (((next - home) & mask) >= ((next - hole) & mask)) {
+                    keys[hole] = keys[next];
+                    hole = next;
+                }
+                next = (next + 1) & mask;
+            }
+            keys[hole] = EMPTY;
+            size--;
+            return true;
+        }
+
+        void clear() {
+            Arrays.fill(keys, EMPTY);
+            size = 0;
+        }
+
+        int size() {
+            return size;
+        }
+
+        void appendTo(PairList pairs) {
+            for (long key : keys) {
+                if (key != EMPTY) {
+                    pairs.add((int) (key >>> 32), (int) key);
+                }
+            }
+        }
+
+        private void grow() {
+            long[] old = keys;
+            keys = newTable(old.length * 2);
+            for (long key : old) {
+                if (key != EMPTY) {
+                    int s = slot(key);
+                    while (keys[s] != EMPTY) {
+                        s = (s + 1) & (keys.length - 1);
+                    }
+                    keys[s] = key;
+                }
+            }
+        }
+    }
+}
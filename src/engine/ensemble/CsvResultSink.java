@@ -0,0 +1,38 @@
+package engine.ensemble;
+
+import java.io.PrintStream;
+
+// Writes one CSV line per member: index, time step, steps, energies, drift, wall time,
+// then x and y of every body.
+public class CsvResultSink implements ResultSink {
+    private final PrintStream out;
+
+    public CsvResultSink(PrintStream out, int bodyCount) {
+        this.out = out;
+        StringBuilder header = new StringBuilder("member,timeStep,steps,initialEnergy,finalEnergy,energyDrift,wallMs");
+        for (int i = 0; i < bodyCount; i++) {
+            header.append(",x").append(i).append(",y").append(i);
+        }
+        out.println(header);
+    }
+
+    @Override
+    public synchronized void accept(MemberResult result) {
+        if (result.failed()) {
+            out.println(result.member + "," + result.timeStep + ",failed," + result.error);
+            return;
+        }
+        StringBuilder line = new StringBuilder();
+        line.append(result.member).append(',')
+                .append(result.timeStep).append(',')
+                .append(result.steps).append(',')
+                .append(result.initialEnergy).append(',')
+                .append(result.finalEnergy).append(',')
+                .append(result.energyDrift()).append(',')
+                .append(result.wallNanos / 1e6);
+        for (int i = 0; i < result.x.length; i++) {
+            line.append(',').append(result.x[i]).append(',').append(result.y[i]);
+        }
+        out.println(line);
+    }
+}
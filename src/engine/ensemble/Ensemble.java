@@ -0,0 +1,107 @@
+package engine.ensemble;
+
+import engine.ConservationMonitor;
+import engine.Scene;
+import engine.Simulation;
+import engine.bodies.Body;
+import engine.integrators.SerialPhases;
+
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+
+// Monte Carlo / parameter-sweep runner: every member is a copy of a template scene, adjusted by a
+// ParameterGenerator and run headless in its own Simulation. Results stream into a ResultSink as
+// members finish, so nothing is kept per member once it is done.
+//
+// The template is only read, also by the copies (Scene.copy, Body.copy), which several members
+// make at the same time. Members clone it when they start and share whatever is read-only
+// (Constants, colors, constant vectors), and at most `maxInFlight` members exist at a time, so
+// memory stays flat however many members the sweep has.
+public class Ensemble {
+    // 0 runs each member on a virtual thread; n > 0 runs them on a fixed pool of n platform threads.
+    public int parallelism = 0;
+    // Members holding a cloned scene at the same time.
+    public int maxInFlight = 2 * Runtime.getRuntime().availableProcessors();
+    public long seed = 0L;
+
+    private final Scene template;
+    private final ParameterGenerator generator;
+
+    public Ensemble(Scene template, ParameterGenerator generator) {
+        if (template == null) {
+            throw new IllegalArgumentException("Ensemble needs a template scene");
+        }
+        this.template = template;
+        this.generator = generator;
+    }
+
+    // Runs members [0, members) until simTime simulated seconds each and blocks until every
+    // result has been handed to the sink. A member that throws is reported as a failed result.
+    public void run(int members, double simTime, ResultSink sink) throws InterruptedException {
+        if (members < 0) {
+            throw new IllegalArgumentException("Member count must not be negative, got " + members);
+        }
+        if (maxInFlight < 1) {
+            throw new IllegalArgumentException("maxInFlight must be at least 1, got " + maxInFlight);
+        }
+        Semaphore inFlight = new Semaphore(maxInFlight);
+        try (ExecutorService executor = parallelism > 0
+                ? Executors.newFixedThreadPool(parallelism)
+                : Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int k = 0; k < members; k++) {
+                int member = k;
+                inFlight.acquire();
+                executor.execute(() -> {
+                    try {
+                        sink.accept(runMember(member, simTime));
+                    } finally {
+                        inFlight.release();
+                    }
+                });
+            }
+        }
+    }
+
+    private MemberResult runMember(int member, double simTime) {
+        long start = System.nanoTime();
+        Simulation simulation = new Simulation();
+        if (template.timeStep > 0) {
+            simulation.timeStep = template.timeStep;
+        }
+        try {
+            simulation.scene = template.copy();
+            if (generator != null) {
+                generator.apply(member, new SplittableRandom(seed + member * 0x9E3779B97F4A7C15L), simulation);
+            }
+            simulation.load(simulation.scene);
+
+            double initialEnergy = totalEnergy(simulation.scene);
+            long steps = simulation.runUntil(simTime);
+            double finalEnergy = totalEnergy(simulation.scene);
+
+            List<Body> bodies = simulation.scene.bodies;
+            double[] x = new double[bodies.size()];
+            double[] y = new double[bodies.size()];
+            for (int i = 0; i < bodies.size(); i++) {
+                x[i] = bodies.get(i).getPos().get(0);
+                y[i] = bodies.get(i).getPos().get(1);
+            }
+            return new MemberResult(member, simulation.timeStep, steps, simulation.uptime, x, y, initialEnergy, finalEnergy, System.nanoTime() - start, null);
+        } catch (RuntimeException e) {
+            return MemberResult.failed(member, simulation.timeStep, System.nanoTime() - start, e);
+        } finally {
+            simulation.terminate();
+        }
+    }
+
+    // Total energy as ConservationMonitor counts it (kinetic, the solvers' potential, internal
+    // heat and beam photons), so the drift of a member means the same as the monitor's.
+    public static double totalEnergy(Scene scene) {
+        ConservationMonitor monitor = new ConservationMonitor();
+        monitor.sample(scene, SerialPhases.INSTANCE, true, 0, 0);
+        return monitor.latest.energy;
+    }
+}
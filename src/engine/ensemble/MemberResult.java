@@ -0,0 +1,55 @@
+package engine.ensemble;
+
+import java.util.Arrays;
+
+// Summary of one ensemble member after its run.
+public class MemberResult {
+    public final int member;
+    public final double timeStep;
+    public final long steps;
+    public final double uptime;
+    // Final positions, in the order of the template scene's bodies.
+    public final double[] x;
+    public final double[] y;
+    // Total energy (Ensemble.totalEnergy) at the start and the end of the run.
+    public final double initialEnergy;
+    public final double finalEnergy;
+    public final long wallNanos;
+    // Set instead of the values above when the member failed.
+    public final Throwable error;
+
+    MemberResult(int member, double timeStep, long steps, double uptime, double[] x, double[] y, double initialEnergy, double finalEnergy, long wallNanos, Throwable error) {
+        this.member = member;
+        this.timeStep = timeStep;
+        this.steps = steps;
+        this.uptime = uptime;
+        this.x = x;
+        this.y = y;
+        this.initialEnergy = initialEnergy;
+        this.finalEnergy = finalEnergy;
+        this.wallNanos = wallNanos;
+        this.error = error;
+    }
+
+    static MemberResult failed(int member, double timeStep, long wallNanos, Throwable error) {
+        return new MemberResult(member, timeStep, 0, 0, new double[0], new double[0], Double.NaN, Double.NaN, wallNanos, error);
+    }
+
+    public boolean failed() {
+        return error != null;
+    }
+
+    // (E_end - E_start) / |E_start|, or the absolute change when the start energy is 0.
+    public double energyDrift() {
+        double change = finalEnergy - initialEnergy;
+        return initialEnergy == 0 ? change : change / Math.abs(initialEnergy);
+    }
+
+    @Override
+    public String toString() {
+        if (failed()) {
+            return "Member " + member + " failed: " + error;
+        }
+        return "Member " + member + ": " + steps + " steps of " + timeStep + " s, energy drift " + energyDrift() + ", x " + Arrays.toString(x) + ", y " + Arrays.toString(y) + ", " + wallNanos / 1e6 + " ms";
+    }
+}
@@ -0,0 +1,15 @@
+package engine.ensemble;
+
+import engine.Simulation;
+
+import java.util.SplittableRandom;
+
+// Turns a freshly cloned member into one point of the sweep: perturb velocities or masses of
+// simulation.scene, change simulation.timeStep, ...
+// Called on the member's own thread, so it must only touch the simulation it is given.
+@FunctionalInterface
+public interface ParameterGenerator {
+    // `random` is seeded from the ensemble seed and the member index, so a sweep is reproducible
+    // regardless of the order in which members happen to run.
+    void apply(int member, SplittableRandom random, Simulation simulation);
+}
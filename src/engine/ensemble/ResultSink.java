@@ -0,0 +1,8 @@
+package engine.ensemble;
+
+// Receives one MemberResult per member as soon as it finishes.
+// Members finish on different threads, so implementations must be thread-safe.
+@FunctionalInterface
+public interface ResultSink {
+    void accept(MemberResult result);
+}
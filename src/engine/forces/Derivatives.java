@@ -0,0 +1,73 @@
+package engine.forces;
+
+// Cartesian derivatives of the (optionally softened) Newtonian kernel 1 / sqrt(x² + y² + eps²),
+// evaluated with the McMurchie-Davidson recursion:
+//   R(n, 0, 0)   = (-1)^n (2n - 1)!! s^-(2n + 1)/2          with s = x² + y² + eps²
+//   R(n, t+1, u) = t R(n+1, t-1, u) + x R(n+1, t, u)
+//   R(n, t, u+1) = u R(n+1, t, u-1) + y R(n+1, t, u)
+// so that ∂x^a ∂y^b kernel = R(0, a, b).
+// Instances keep scratch space, so each thread needs its own.
+final class Derivatives {
+    final int order;
+    // d[index(a, b)] holds ∂x^a ∂y^b of the kernel for a + b <= order.
+    final double[] d;
+
+    private final int stride;
+    private final double[] r;
+
+    Derivatives(int order) {
+        this.order = order;
+        this.d = new double[size(order)];
+        this.stride = order + 1;
+        this.r = new double[stride * stride * stride];
+    }
+
+    // Number of coefficients of total degree <= order.
+    static int size(int order) {
+        return (order + 1) * (order + 2) / 2;
+    }
+
+    // Position of the (a, b) coefficient, grouped by total degree.
+    static int index(int a, int b) {
+        int k = a + b;
+        return k * (k + 1) / 2 + b;
+    }
+
+    void compute(double x, double y, double eps2) {
+        double s = x * x + y * y + eps2;
+        double inv2 = 1.0 / s;
+        double v = Math.sqrt(inv2);
+        for (int n = 0; n <= order; n++) {
+            r[at(n, 0, 0)] = v;
+            v *= -(2 * n + 1) * inv2;
+        }
+        d[0] = r[at(0, 0, 0)];
+        for (int k = 1; k <= order; k++) {
+            for (int n = 0; n <= order - k; n++) {
+                for (int t = 0; t <= k; t++) {
+                    int u = k - t;
+                    double value;
+                    if (t > 0) {
+                        value = x * r[at(n + 1, t - 1, u)];
+                        if (t > 1) {
+                            value += (t - 1) * r[at(n + 1, t - 2, u)];
+                        }
+                    } else {
+                        value = y * r[at(n + 1, 0, u - 1)];
+                        if (u > 1) {
+                            value += (u - 1) * r[at(n + 1, 0, u - 2)];
+                        }
+                    }
+                    r[at(n, t, u)] = value;
+                }
+            }
+            for (int t = 0; t <= k; t++) {
+                d[index(t, k - t)] = r[at(0, t, k - t)];
+            }
+        }
+    }
+
+    private int at(int n, int t, int u) {
+        return (n * stride + t) * stride + u;
+    }
+}
@@ -0,0 +1,561 @@
+package engine.forces;
+
+import engine.BodyStore;
+
+import java.util.Arrays;
+
+import static engine.Constants.COULOMB_CONSTANT;
+import static engine.Constants.GRAVITATIONAL_CONSTANT;
+
+// Fast multipole method for 1/r² interactions (gravity or Coulomb) between Rigidbodies.
+//
+// Each quadtree cell carries a Cartesian multipole expansion of its sources about the cell's
+// geometric center, truncated at `order`. A dual-tree walk turns every well-separated pair of
+// cells into a multipole-to-local translation and leaves the rest to direct summation, so the
+// total work grows linearly with the number of bodies. Because the expansions are taken about
+// the geometric center rather than a center of mass, sources of both signs are handled exactly
+// the same way, which is what mixed electron/proton scenes need.
+public class FmmSolver implements ForceSolver {
+    public enum Kernel {
+        // Sources are masses, F = -G m_i Σ m_j (r_i - r_j) / |r_i - r_j|³
+        GRAVITY,
+        // Sources are charges, F = k_e q_i Σ q_j (r_i - r_j) / |r_i - r_j|³
+        COULOMB
+    }
+
+    public final Kernel kernel;
+    // Expansion order. Higher orders trade more work per cell for smaller far-field errors.
+    public final int order;
+    // Two cells interact through their expansions when (r_A + r_B) < theta * distance.
+    public double theta = 0.5;
+    // Plummer softening length in meters, used by the direct (near-field) part only.
+    public double softening = 0d;
+    public int leafCapacity = 16;
+
+    private final int terms;
+    private final double[] factorial;
+    private final double[][] binomial;
+    private final Derivatives derivatives;
+    private final double[] ex;
+    private final double[] ey;
+
+    // --- Per-step state ---
+    private int[] pointOf = new int[0];
+    private double[] x = new double[0];
+    private double[] y = new double[0];
+    private double[] w = new double[0];
+    private int points;
+    // Size of the body list at the last prepare(), for refresh().
+    private int preparedBodies = -1;
+    private QuadTree tree;
+
+    private double[] radius = new double[0];
+    private double[] multipole = new double[0];
+    private double[] local = new double[0];
+    // Tree position -> leaf containing it.
+    private int[] leafOf = new int[0];
+
+    // Near field in compressed rows: source leaves of target leaf L are
+    // nearList[nearStart[L] .. nearStart[L + 1]).
+    private int[] nearStart = new int[0];
+    private int[] nearList = new int[0];
+    private int[] pairTarget = new int[64];
+    private int[] pairSource = new int[64];
+    private int pairCount;
+    // Evaluation scratch, one per thread so ranges can be accumulated concurrently.
+    private final ThreadLocal<double[]> scratch;
+
+    public FmmSolver(Kernel kernel, int order) {
+        if (order < 1) {
+            throw new IllegalArgumentException("Expansion order must be at least 1, got " + order);
+        }
+        this.kernel = kernel;
+        this.order = order;
+        this.terms = Derivatives.size(order);
+        this.derivatives = new Derivatives(order);
+        this.ex = new double[order + 1];
+        this.ey = new double[order + 1];
+        // field (2) followed by the x and y power tables (order + 1 each)
+        this.scratch = ThreadLocal.withInitial(() -> new double[2 * order + 4]);
+
+        factorial = new double[order + 1];
+        factorial[0] = 1;
+        for (int i = 1; i <= order; i++) {
+            factorial[i] = factorial[i - 1] * i;
+        }
+        binomial = new double[order + 1][order + 1];
+        for (int n = 0; n <= order; n++) {
+            binomial[n][0] = 1;
+            for (int k = 1; k <= n; k++) {
+                binomial[n][k] = binomial[n - 1][k - 1] + (k <= n - 1 ? binomial[n - 1][k] : 0);
+            }
+        }
+    }
+
+    @Override
+    public void prepare(BodyStore bodies) {
+        gather(bodies);
+        if (tree == null || tree.leafCapacity != leafCapacity) {
+            tree = new QuadTree(leafCapacity);
+        }
+        tree.build(x, y, w, points);
+        preparedBodies = bodies.size();
+        expand();
+    }
+
+    // Keeps the tree of the last prepare() and refits it to the current positions, then redoes the
+    // expansions and interaction lists on it. That skips the sort of a rebuild but not the
+    // O(N) passes, so the FMM gains less from refresh() than Barnes-Hut does.
+    @Override
+    public void refresh(BodyStore bodies) {
+        if (tree == null || bodies.size() != preparedBodies || !gatherSamePoints(bodies)) {
+            prepare(bodies);
+            return;
+        }
+        tree.refit(x, y, w);
+        expand();
+    }
+
+    // Copies the current positions and strengths into x, y, w, and returns false (leaving the
+    // arrays unusable) if a body joined or left the set of sources since prepare().
+    private boolean gatherSamePoints(BodyStore bodies) {
+        double[] strengths = strengths(bodies);
+        for (int i = 0, n = bodies.size(); i < n; i++) {
+            double strength = strengths[i];
+            int p = pointOf[i];
+            if ((strength != 0) != (p >= 0)) {
+                return false;
+            }
+            if (p >= 0) {
+                x[p] = bodies.x[i];
+                y[p] = bodies.y[i];
+                w[p] = strength;
+            }
+        }
+        return true;
+    }
+
+    // Multipoles, the dual-tree walk, locals and the near lists for the current tree.
+    private void expand() {
+        int nodes = tree.nodeCount;
+        if (radius.length < nodes) {
+            int capacity = Math.max(nodes, radius.length * 2);
+            radius = new double[capacity];
+            multipole = new double[capacity * terms];
+            local = new double[capacity * terms];
+            nearStart = new int[capacity + 1];
+        }
+        if (leafOf.length < points) {
+            leafOf = new int[Math.max(points, leafOf.length * 2)];
+        }
+        Arrays.fill(multipole, 0, nodes * terms, 0);
+        Arrays.fill(local, 0, nodes * terms, 0);
+        pairCount = 0;
+        if (points == 0) {
+            return;
+        }
+
+        upwardPass();
+        traverse(0, 0);
+        downwardPass();
+        buildNearList();
+    }
+
+    @Override
+    public void accumulate(BodyStore bodies, int from, int to) {
+        double[] buffer = scratch.get();
+        double coupling = kernel == Kernel.GRAVITY ? -GRAVITATIONAL_CONSTANT : COULOMB_CONSTANT;
+        double[] fx = bodies.fx, fy = bodies.fy;
+        for (int i = from; i < to; i++) {
+            int p = pointOf[i];
+            if (p < 0) {
+                continue;
+            }
+            field(tree.position[p], buffer);
+            double scale = coupling * w[p];
+            fx[i] += buffer[0] * scale;
+            fy[i] += buffer[1] * scale;
+        }
+    }
+
+    // Exact pairwise potential of the kernel, softened like the near field, O(N²).
+    @Override
+    public double potentialEnergy(BodyStore bodies) {
+        int n = bodies.size();
+        double[] px = new double[n];
+        double[] py = new double[n];
+        double[] pw = new double[n];
+        int count = 0;
+        double[] strengths = strengths(bodies);
+        for (int i = 0; i < n; i++) {
+            if (strengths[i] == 0) {
+                continue;
+            }
+            px[count] = bodies.x[i];
+            py[count] = bodies.y[i];
+            pw[count] = strengths[i];
+            count++;
+        }
+        double eps2 = softening * softening;
+        double energy = 0;
+        for (int i = 0; i < count; i++) {
+            double sum = 0;
+            for (int j = i + 1; j < count; j++) {
+                double dx = px[j] - px[i];
+                double dy = py[j] - py[i];
+                double r2 = dx * dx + dy * dy + eps2;
+                if (r2 > 0) {
+                    sum += pw[j] / Math.sqrt(r2);
+                }
+            }
+            energy += pw[i] * sum;
+        }
+        return (kernel == Kernel.GRAVITY ? -GRAVITATIONAL_CONSTANT : COULOMB_CONSTANT) * energy;
+    }
+
+    // The kernel's potential energy of body i from the expansions built in prepare(): the leaf's
+    // local expansion for the far field plus the near field summed directly.
+    @Override
+    public double potentialEnergy(BodyStore bodies, int i) {
+        int p = pointOf[i];
+        if (p < 0) {
+            return 0d;
+        }
+        double coupling = kernel == Kernel.GRAVITY ? -GRAVITATIONAL_CONSTANT : COULOMB_CONSTANT;
+        return coupling * w[p] * potential(tree.position[p], scratch.get());
+    }
+
+    @Override
+    public FmmSolver copy() {
+        FmmSolver copy = new FmmSolver(kernel, order);
+        copy.theta = theta;
+        copy.softening = softening;
+        copy.leafCapacity = leafCapacity;
+        return copy;
+    }
+
+    private void gather(BodyStore bodies) {
+        int n = bodies.size();
+        if (pointOf.length < n) {
+            pointOf = new int[n];
+            x = new double[n];
+            y = new double[n];
+            w = new double[n];
+        }
+        points = 0;
+        double[] strengths = strengths(bodies);
+        for (int i = 0; i < n; i++) {
+            pointOf[i] = -1;
+            if (strengths[i] == 0) {
+                continue;
+            }
+            pointOf[i] = points;
+            x[points] = bodies.x[i];
+            y[points] = bodies.y[i];
+            w[points] = strengths[i];
+            points++;
+        }
+    }
+
+    // The column the kernel takes its source strengths from.
+    private double[] strengths(BodyStore bodies) {
+        return kernel == Kernel.GRAVITY ? bodies.mass : bodies.charge;
+    }
+
+    // -----------------------------------------------------------------
+    // Upward pass: P2M at the leaves, M2M towards the root
+    // -----------------------------------------------------------------
+    private void upwardPass() {
+        for (int node = tree.nodeCount - 1; node >= 0; node--) {
+            int base = node * terms;
+            double cx = tree.cx[node];
+            double cy = tree.cy[node];
+            if (tree.leaf[node]) {
+                double r = 0;
+                for (int k = tree.start[node], end = k + tree.count[node]; k < end; k++) {
+                    double dx = tree.xs[k] - cx;
+                    double dy = tree.ys[k] - cy;
+                    r = Math.max(r, Math.sqrt(dx * dx + dy * dy));
+                    powers(dx, dy);
+                    for (int a = 0; a <= order; a++) {
+                        for (int b = 0; a + b <= order; b++) {
+                            multipole[base + Derivatives.index(a, b)] += tree.ws[k] * ex[a] * ey[b] / (factorial[a] * factorial[b]);
+                        }
+                    }
+                    leafOf[k] = node;
+                }
+                radius[node] = r;
+                continue;
+            }
+
+            double r = 0;
+            for (int q = 0; q < 4; q++) {
+                int c = tree.child[4 * node + q];
+                if (c < 0) {
+                    continue;
+                }
+                double sx = tree.cx[c] - cx;
+                double sy = tree.cy[c] - cy;
+                r = Math.max(r, Math.sqrt(sx * sx + sy * sy) + radius[c]);
+                powers(sx, sy);
+                int childBase = c * terms;
+                for (int a = 0; a <= order; a++) {
+                    for (int b = 0; a + b <= order; b++) {
+                        double sum = 0;
+                        for (int i = 0; i <= a; i++) {
+                            for (int j = 0; j <= b; j++) {
+                                sum += multipole[childBase + Derivatives.index(i, j)]
+                                        * ex[a - i] * ey[b - j] / (factorial[a - i] * factorial[b - j]);
+                            }
+                        }
+                        multipole[base + Derivatives.index(a, b)] += sum;
+                    }
+                }
+            }
+            radius[node] = r;
+        }
+    }
+
+    // -----------------------------------------------------------------
+    // Dual-tree walk: field at target cell A due to source cell B
+    // -----------------------------------------------------------------
+    private void traverse(int a, int b) {
+        if (a == b) {
+            if (tree.leaf[a]) {
+                addPair(a, a);
+                return;
+            }
+            for (int i = 0; i < 4; i++) {
+                int ca = tree.child[4 * a + i];
+                if (ca < 0) {
+                    continue;
+                }
+                for (int j = 0; j < 4; j++) {
+                    int cb = tree.child[4 * a + j];
+                    if (cb >= 0) {
+                        traverse(ca, cb);
+                    }
+                }
+            }
+            return;
+        }
+
+        double dx = tree.cx[a] - tree.cx[b];
+        double dy = tree.cy[a] - tree.cy[b];
+        double distance = Math.sqrt(dx * dx + dy * dy);
+        if (radius[a] + radius[b] < theta * distance) {
+            multipoleToLocal(b, a, dx, dy);
+            return;
+        }
+        if (tree.leaf[a] && tree.leaf[b]) {
+            addPair(a, b);
+            return;
+        }
+        // Split the larger cell; a leaf can never be split.
+        boolean splitTarget = !tree.leaf[a] && (tree.leaf[b] || radius[a] >= radius[b]);
+        int split = splitTarget ? a : b;
+        for (int q = 0; q < 4; q++) {
+            int c = tree.child[4 * split + q];
+            if (c < 0) {
+                continue;
+            }
+            if (splitTarget) {
+                traverse(c, b);
+            } else {
+                traverse(a, c);
+            }
+        }
+    }
+
+    private void multipoleToLocal(int source, int target, double dx, double dy) {
+        derivatives.compute(dx, dy, 0);
+        double[] d = derivatives.d;
+        int sourceBase = source * terms;
+        int targetBase = target * terms;
+        for (int k = 0; k <= order; k++) {
+            for (int l = 0; k + l <= order; l++) {
+                double sum = 0;
+                for (int a = 0; a + k + l <= order; a++) {
+                    for (int b = 0; a + b + k + l <= order; b++) {
+                        double m = multipole[sourceBase + Derivatives.index(a, b)];
+                        double term = m * d[Derivatives.index(a + k, b + l)];
+                        sum += ((a + b) & 1) == 0 ? term : -term;
+                    }
+                }
+                local[targetBase + Derivatives.index(k, l)] += sum / (factorial[k] * factorial[l]);
+            }
+        }
+    }
+
+    private void addPair(int target, int source) {
+        if (pairCount == pairTarget.length) {
+            pairTarget = Arrays.copyOf(pairTarget, pairCount * 2);
+            pairSource = Arrays.copyOf(pairSource, pairCount * 2);
+        }
+        pairTarget[pairCount] = target;
+        pairSource[pairCount] = source;
+        pairCount++;
+    }
+
+    // -----------------------------------------------------------------
+    // Downward pass: L2L from every cell into its children
+    // -----------------------------------------------------------------
+    private void downwardPass() {
+        // Parents precede their children, so a forward sweep sees every local expansion complete.
+        for (int node = 0; node < tree.nodeCount; node++) {
+            if (tree.leaf[node]) {
+                continue;
+            }
+            int base = node * terms;
+            for (int q = 0; q < 4; q++) {
+                int c = tree.child[4 * node + q];
+                if (c < 0) {
+                    continue;
+                }
+                powers(tree.cx[c] - tree.cx[node], tree.cy[c] - tree.cy[node]);
+                int childBase = c * terms;
+                for (int k = 0; k <= order; k++) {
+                    for (int l = 0; k + l <= order; l++) {
+                        double sum = 0;
+                        for (int i = k; i <= order; i++) {
+                            for (int j = l; i + j <= order; j++) {
+                                sum += local[base + Derivatives.index(i, j)]
+                                        * binomial[i][k] * binomial[j][l] * ex[i - k] * ey[j - l];
+                            }
+                        }
+                        local[childBase + Derivatives.index(k, l)] += sum;
+                    }
+                }
+            }
+        }
+    }
+
+    private void buildNearList() {
+        int nodes = tree.nodeCount;
+        Arrays.fill(nearStart, 0, nodes + 1, 0);
+        for (int i = 0; i < pairCount; i++) {
+            nearStart[pairTarget[i] + 1]++;
+        }
+        for (int node = 0; node < nodes; node++) {
+            nearStart[node + 1] += nearStart[node];
+        }
+        if (nearList.length < pairCount) {
+            nearList = new int[Math.max(pairCount, nearList.length * 2)];
+        }
+        int[] cursor = Arrays.copyOf(nearStart, nodes);
+        for (int i = 0; i < pairCount; i++) {
+            nearList[cursor[pairTarget[i]]++] = pairSource[i];
+        }
+    }
+
+    // -----------------------------------------------------------------
+    // Evaluation: L2P plus direct near-field sum, E = -∇Φ
+    // -----------------------------------------------------------------
+    // Writes the field at tree position k into buffer[0..1]; the rest of the buffer is scratch.
+    private void field(int k, double[] buffer) {
+        int leaf = leafOf[k];
+        double tx = tree.xs[k];
+        double ty = tree.ys[k];
+
+        // Far field from the leaf's local expansion.
+        double dx = tx - tree.cx[leaf];
+        double dy = ty - tree.cy[leaf];
+        int px = 2;
+        int py = px + order + 1;
+        buffer[px] = 1;
+        buffer[py] = 1;
+        for (int i = 1; i <= order; i++) {
+            buffer[px + i] = buffer[px + i - 1] * dx;
+            buffer[py + i] = buffer[py + i - 1] * dy;
+        }
+        int base = leaf * terms;
+        double gx = 0, gy = 0;
+        for (int a = 0; a <= order; a++) {
+            for (int b = 0; a + b <= order; b++) {
+                double l = local[base + Derivatives.index(a, b)];
+                if (a > 0) {
+                    gx += a * l * buffer[px + a - 1] * buffer[py + b];
+                }
+                if (b > 0) {
+                    gy += b * l * buffer[px + a] * buffer[py + b - 1];
+                }
+            }
+        }
+        double fx = -gx;
+        double fy = -gy;
+
+        // Near field, summed directly.
+        double eps2 = softening * softening;
+        for (int n = nearStart[leaf], end = nearStart[leaf + 1]; n < end; n++) {
+            int source = nearList[n];
+            for (int j = tree.start[source], last = j + tree.count[source]; j < last; j++) {
+                if (j == k) {
+                    continue;
+                }
+                double rx = tx - tree.xs[j];
+                double ry = ty - tree.ys[j];
+                double r2 = rx * rx + ry * ry + eps2;
+                if (r2 == 0) {
+                    continue;
+                }
+                double inv3 = tree.ws[j] / (r2 * Math.sqrt(r2));
+                fx += rx * inv3;
+                fy += ry * inv3;
+            }
+        }
+        buffer[0] = fx;
+        buffer[1] = fy;
+    }
+
+    // Φ = Σ w / r at tree position k, the potential whose gradient field() evaluates. Uses the
+    // buffer like field() does.
+    private double potential(int k, double[] buffer) {
+        int leaf = leafOf[k];
+        double tx = tree.xs[k];
+        double ty = tree.ys[k];
+
+        double dx = tx - tree.cx[leaf];
+        double dy = ty - tree.cy[leaf];
+        int px = 2;
+        int py = px + order + 1;
+        buffer[px] = 1;
+        buffer[py] = 1;
+        for (int i = 1; i <= order; i++) {
+            buffer[px + i] = buffer[px + i - 1] * dx;
+            buffer[py + i] = buffer[py + i - 1] * dy;
+        }
+        int base = leaf * terms;
+        double phi = 0;
+        for (int a = 0; a <= order; a++) {
+            for (int b = 0; a + b <= order; b++) {
+                phi += local[base + Derivatives.index(a, b)] * buffer[px + a] * buffer[py + b];
+            }
+        }
+
+        double eps2 = softening * softening;
+        for (int n = nearStart[leaf], end = nearStart[leaf + 1]; n < end; n++) {
+            int source = nearList[n];
+            for (int j = tree.start[source], last = j + tree.count[source]; j < last; j++) {
+                if (j == k) {
+                    continue;
+                }
+                double rx = tx - tree.xs[j];
+                double ry = ty - tree.ys[j];
+                double r2 = rx * rx + ry * ry + eps2;
+                if (r2 > 0) {
+                    phi += tree.ws[j] / Math.sqrt(r2);
+                }
+            }
+        }
+        return phi;
+    }
+
+    private void powers(double dx, double dy) {
+        ex[0] = 1;
+        ey[0] = 1;
+        for (int i = 1; i <= order; i++) {
+            ex[i] = ex[i - 1] * dx;
+            ey[i] = ey[i - 1] * dy;
+        }
+    }
+}
@@ -0,0 +1,50 @@
+package engine.forces;
+
+import engine.BodyStore;
+
+// A force stage that runs before the bodies of a scene are integrated.
+// Solvers read positions and masses from the store's columns and add their result to its force
+// accumulators (BodyStore.fx/fy), so the integrator picks it up together with every other force
+// applied during the step.
+public interface ForceSolver {
+    // Rebuilds whatever the solver needs for the current positions (trees, expansions, ...).
+    // Called once per step, before any call to accumulate.
+    void prepare(BodyStore bodies);
+
+    // Brings the state from the last prepare() up to date with the current positions, for
+    // sub-steps that only evaluate a few bodies. Solvers may keep their structure (tree cells,
+    // interaction lists) and only refit it, which is cheaper but a little less accurate the
+    // further the bodies have moved since prepare(). Falls back to prepare() when the set of
+    // bodies has changed.
+    default void refresh(BodyStore bodies) {
+        prepare(bodies);
+    }
+
+    // Adds the solver's force to the bodies at indices [from, to).
+    // Each call only writes to the bodies of its own range.
+    void accumulate(BodyStore bodies, int from, int to);
+
+    // Adds the solver's force to the bodies at indices targets[from .. to), for integrators that
+    // only update some bodies in a sub-step. Each call only writes to its own targets.
+    default void accumulate(BodyStore bodies, int[] targets, int from, int to) {
+        for (int k = from; k < to; k++) {
+            accumulate(bodies, targets[k], targets[k] + 1);
+        }
+    }
+
+    // Total potential energy of the bodies under this force, in joules. Meant for diagnostics
+    // between steps rather than for the step itself; solvers without a potential return 0.
+    default double potentialEnergy(BodyStore bodies) {
+        return 0d;
+    }
+
+    // Potential energy of body i in the field of every other body, approximated the same way as
+    // the force (trees, expansions). Valid after prepare() and meant to be called for many bodies
+    // at once from several threads. Summed over all bodies it counts every pair twice.
+    default double potentialEnergy(BodyStore bodies, int i) {
+        return 0d;
+    }
+
+    // A solver with the same settings and none of the per-step state, for a cloned scene.
+    ForceSolver copy();
+}
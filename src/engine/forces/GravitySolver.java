@@ -0,0 +1,527 @@
+package engine.forces;
+
+import engine.BodyStore;
+
+import static engine.Constants.GRAVITATIONAL_CONSTANT;
+
+// Mutual Newtonian gravity between every massive Rigidbody of a scene.
+//
+// BARNES_HUT groups distant bodies into quadtree cells and treats each cell as a single
+// point mass (plus, optionally, its quadrupole moment), for O(N log N) per step.
+// EXACT sums every pair directly in O(N²); it is there to check the accuracy of the tree.
+public class GravitySolver implements ForceSolver {
+    public enum Mode { BARNES_HUT, EXACT }
+
+    // Inner loop for EXACT mode and tree leaves. SIMD uses the JDK Vector API in double precision,
+    // SIMD_MIXED computes in float and accumulates in double. Both fall back to the scalar loop when
+    // the JVM runs without --add-modules jdk.incubator.vector.
+    public enum KernelMode { SCALAR, SIMD, SIMD_MIXED }
+
+    public Mode mode = Mode.BARNES_HUT;
+    // Opening angle: a cell of side s at distance d is approximated when s / d < theta.
+    // 0 degenerates into the exact sum, ~0.5 is the usual trade-off.
+    public double theta = 0.5;
+    // Plummer softening length in meters, keeps close encounters finite.
+    public double softening = 0d;
+    // Adds the quadrupole term to accepted cells, which is noticeably more accurate at the same theta.
+    public boolean quadrupole = false;
+    // Maximum number of bodies in a leaf before it is split.
+    public int leafCapacity = 8;
+    // The SIMD kernels pay off most on long runs of sources: EXACT mode, or a leafCapacity of 16-32.
+    public KernelMode kernelMode = KernelMode.SCALAR;
+
+    // --- Per-step state ---
+    // Body index -> point index, -1 for bodies that take no part (photons, massless bodies).
+    private int[] pointOf = new int[0];
+    private double[] x = new double[0];
+    private double[] y = new double[0];
+    private double[] m = new double[0];
+    private int points;
+    // Size of the body list at the last prepare(), for refresh().
+    private int preparedBodies = -1;
+    private QuadTree tree;
+    private PairKernel pairKernel = PairKernels.scalar();
+
+    // Float copies of the direct-summation sources for SIMD_MIXED, scaled so every value is O(1)
+    // and r³ stays in float range. Masses are divided by massScale. In EXACT mode positions are
+    // relative to the bounding box center in units of its half size; in tree order they are
+    // relative to the center of their leaf in units of its half size, which keeps the float
+    // resolution proportional to the leaf and not to the whole scene.
+    private float[] floatX = new float[0];
+    private float[] floatY = new float[0];
+    private float[] floatM = new float[0];
+    private double originX, originY, lengthScale = 1, massScale = 1;
+    // Traversal scratch, one per thread so ranges can be accumulated concurrently.
+    private final ThreadLocal<Scratch> scratch = ThreadLocal.withInitial(Scratch::new);
+
+    // Cell moments: total mass, center of mass and second moments about the center of mass.
+    private double[] mass = new double[0];
+    private double[] comX = new double[0];
+    private double[] comY = new double[0];
+    private double[] sxx = new double[0];
+    private double[] sxy = new double[0];
+    private double[] syy = new double[0];
+
+    public GravitySolver() {
+    }
+
+    public GravitySolver(Mode mode) {
+        this.mode = mode;
+    }
+
+    @Override
+    public void prepare(BodyStore bodies) {
+        int n = bodies.size();
+        if (pointOf.length < n) {
+            pointOf = new int[n];
+            x = new double[n];
+            y = new double[n];
+            m = new double[n];
+        }
+        preparedBodies = n;
+        points = 0;
+        // Only Rigidbody slots have a mass column above 0.
+        double[] bodyX = bodies.x, bodyY = bodies.y, bodyMass = bodies.mass;
+        for (int i = 0; i < n; i++) {
+            if (bodyMass[i] > 0) {
+                pointOf[i] = points;
+                x[points] = bodyX[i];
+                y[points] = bodyY[i];
+                m[points] = bodyMass[i];
+                points++;
+            } else {
+                pointOf[i] = -1;
+            }
+        }
+
+        if (mode == Mode.BARNES_HUT) {
+            if (tree == null || tree.leafCapacity != leafCapacity) {
+                tree = new QuadTree(leafCapacity);
+            }
+            tree.build(x, y, m, points);
+            computeMoments();
+        }
+
+        pairKernel = kernelMode == KernelMode.SCALAR ? PairKernels.scalar() : PairKernels.simd();
+        if (kernelMode == KernelMode.SIMD_MIXED) {
+            buildFloatSources();
+        }
+    }
+
+    // Refits the tree built by prepare() to the current positions when the same bodies take part,
+    // which skips the sort and allocation of a rebuild. Cells only grow, so the opening test stays
+    // conservative, but a tree refitted over many sub-steps gets loose; prepare() rebuilds it.
+    @Override
+    public void refresh(BodyStore bodies) {
+        int n = bodies.size();
+        if (mode != Mode.BARNES_HUT || tree == null || n != preparedBodies || !gatherSamePoints(bodies)) {
+            prepare(bodies);
+            return;
+        }
+        tree.refit(x, y, m);
+        computeMoments();
+        pairKernel = kernelMode == KernelMode.SCALAR ? PairKernels.scalar() : PairKernels.simd();
+        if (kernelMode == KernelMode.SIMD_MIXED) {
+            buildFloatSources();
+        }
+    }
+
+    // Copies the current positions and masses into x, y, m, and returns false (leaving the arrays
+    // unusable) if a body joined or left the massive set since prepare().
+    private boolean gatherSamePoints(BodyStore bodies) {
+        double[] bodyX = bodies.x, bodyY = bodies.y, bodyMass = bodies.mass;
+        for (int i = 0, n = bodies.size(); i < n; i++) {
+            int p = pointOf[i];
+            boolean massive = bodyMass[i] > 0;
+            if (massive != (p >= 0)) {
+                return false;
+            }
+            if (massive) {
+                x[p] = bodyX[i];
+                y[p] = bodyY[i];
+                m[p] = bodyMass[i];
+            }
+        }
+        return true;
+    }
+
+    private void buildFloatSources() {
+        if (floatX.length < points) {
+            int capacity = Math.max(points, floatX.length * 2);
+            floatX = new float[capacity];
+            floatY = new float[capacity];
+            floatM = new float[capacity];
+        }
+        double[] ws = mode == Mode.BARNES_HUT ? tree.ws : m;
+        double maxM = 0;
+        for (int i = 0; i < points; i++) {
+            maxM = Math.max(maxM, ws[i]);
+        }
+        massScale = maxM > 0 ? maxM : 1;
+        for (int i = 0; i < points; i++) {
+            floatM[i] = (float) (ws[i] / massScale);
+        }
+
+        if (mode == Mode.BARNES_HUT) {
+            for (int node = 0; node < tree.nodeCount; node++) {
+                if (tree.leaf[node]) {
+                    toFloat(tree.xs, tree.ys, tree.start[node], tree.start[node] + tree.count[node], tree.cx[node], tree.cy[node], tree.half[node]);
+                }
+            }
+            return;
+        }
+        double minX = Double.POSITIVE_INFINITY, maxX = Double.NEGATIVE_INFINITY;
+        double minY = Double.POSITIVE_INFINITY, maxY = Double.NEGATIVE_INFINITY;
+        for (int i = 0; i < points; i++) {
+            minX = Math.min(minX, x[i]);
+            maxX = Math.max(maxX, x[i]);
+            minY = Math.min(minY, y[i]);
+            maxY = Math.max(maxY, y[i]);
+        }
+        originX = 0.5 * (minX + maxX);
+        originY = 0.5 * (minY + maxY);
+        lengthScale = 0.5 * Math.max(maxX - minX, maxY - minY);
+        toFloat(x, y, 0, points, originX, originY, lengthScale);
+    }
+
+    private void toFloat(double[] xs, double[] ys, int from, int to, double cx, double cy, double length) {
+        double inverse = length > 0 ? 1 / length : 1;
+        for (int i = from; i < to; i++) {
+            floatX[i] = (float) ((xs[i] - cx) * inverse);
+            floatY[i] = (float) ((ys[i] - cy) * inverse);
+        }
+    }
+
+    // Adds Σ m·d / (r² + eps²)^1.5 over the sources [from, to) to local.direct. In SIMD_MIXED mode the
+    // float copies are used, relative to (cx, cy) in units of `length` as set up by buildFloatSources.
+    private void direct(double px, double py, double[] xs, double[] ys, double[] ws, int from, int to, double eps2,
+                        double cx, double cy, double length, Scratch local) {
+        if (kernelMode != KernelMode.SIMD_MIXED) {
+            pairKernel.accumulate(px, py, xs, ys, ws, from, to, eps2, local.direct);
+            return;
+        }
+        // The target is converted with the same expression as the sources in toFloat, so a body
+        // among the sources lands on exactly its own float position and its self pair drops out
+        // (r² = 0) instead of giving a huge force at one ulp of distance.
+        double inverse = length > 0 ? 1 / length : 1;
+        double[] partial = local.partial;
+        partial[0] = 0;
+        partial[1] = 0;
+        pairKernel.accumulate((float) ((px - cx) * inverse), (float) ((py - cy) * inverse), floatX, floatY, floatM,
+                from, to, (float) (eps2 * inverse * inverse), partial);
+        double factor = massScale * inverse * inverse;
+        local.direct[0] += factor * partial[0];
+        local.direct[1] += factor * partial[1];
+    }
+
+    @Override
+    public void accumulate(BodyStore bodies, int from, int to) {
+        Scratch local = scratch.get();
+        Derivatives derivatives = quadrupole ? local.derivatives : null;
+        double[] acceleration = local.acceleration;
+        double[] fx = bodies.fx, fy = bodies.fy;
+        for (int i = from; i < to; i++) {
+            int p = pointOf[i];
+            if (p < 0) {
+                continue;
+            }
+            if (mode == Mode.EXACT) {
+                exactAcceleration(p, local, acceleration);
+            } else {
+                treeAcceleration(p, local, derivatives, acceleration);
+            }
+            double bodyMass = m[p];
+            fx[i] += acceleration[0] * bodyMass;
+            fy[i] += acceleration[1] * bodyMass;
+        }
+    }
+
+    // Exact pairwise -G m_i m_j / r with the same softening as the force, O(N²).
+    @Override
+    public double potentialEnergy(BodyStore bodies) {
+        int n = bodies.size();
+        double[] px = new double[n];
+        double[] py = new double[n];
+        double[] pm = new double[n];
+        int count = 0;
+        for (int i = 0; i < n; i++) {
+            if (bodies.mass[i] > 0) {
+                px[count] = bodies.x[i];
+                py[count] = bodies.y[i];
+                pm[count] = bodies.mass[i];
+                count++;
+            }
+        }
+        double eps2 = softening * softening;
+        double energy = 0;
+        for (int i = 0; i < count; i++) {
+            double sum = 0;
+            for (int j = i + 1; j < count; j++) {
+                double dx = px[j] - px[i];
+                double dy = py[j] - py[i];
+                double r2 = dx * dx + dy * dy + eps2;
+                if (r2 > 0) {
+                    sum += pm[j] / Math.sqrt(r2);
+                }
+            }
+            energy -= pm[i] * sum;
+        }
+        return GRAVITATIONAL_CONSTANT * energy;
+    }
+
+    // -G m_i Σ m_j / r_ij from the tree built in prepare(), with the same opening angle, quadrupole
+    // setting and softening as the force; EXACT mode sums every pair.
+    @Override
+    public double potentialEnergy(BodyStore bodies, int i) {
+        int p = pointOf[i];
+        if (p < 0) {
+            return 0d;
+        }
+        double phi = mode == Mode.EXACT ? exactPotential(p) : treePotential(p, scratch.get());
+        return -GRAVITATIONAL_CONSTANT * m[p] * phi;
+    }
+
+    @Override
+    public GravitySolver copy() {
+        GravitySolver copy = new GravitySolver(mode);
+        copy.kernelMode = kernelMode;
+        copy.theta = theta;
+        copy.softening = softening;
+        copy.quadrupole = quadrupole;
+        copy.leafCapacity = leafCapacity;
+        return copy;
+    }
+
+    // -----------------------------------------------------------------
+    // Exact pairwise sum
+    // -----------------------------------------------------------------
+    // The point itself drops out: without softening its r² is 0 and is skipped, with softening dx = dy = 0.
+    private void exactAcceleration(int p, Scratch local, double[] out) {
+        double[] sum = local.direct;
+        sum[0] = 0;
+        sum[1] = 0;
+        direct(x[p], y[p], x, y, m, 0, points, softening * softening, originX, originY, lengthScale, local);
+        out[0] = GRAVITATIONAL_CONSTANT * sum[0];
+        out[1] = GRAVITATIONAL_CONSTANT * sum[1];
+    }
+
+    // Σ m_j / r_pj over every other point. Unlike the force, the point itself has to be skipped by
+    // index, since with softening it would add m_p / eps.
+    private double exactPotential(int p) {
+        double eps2 = softening * softening;
+        double px = x[p], py = y[p];
+        double sum = 0;
+        for (int j = 0; j < points; j++) {
+            double dx = x[j] - px;
+            double dy = y[j] - py;
+            double r2 = dx * dx + dy * dy + eps2;
+            if (j != p && r2 > 0) {
+                sum += m[j] / Math.sqrt(r2);
+            }
+        }
+        return sum;
+    }
+
+    // -----------------------------------------------------------------
+    // Barnes-Hut
+    // -----------------------------------------------------------------
+    private void computeMoments() {
+        int nodes = tree.nodeCount;
+        if (mass.length < nodes) {
+            int capacity = Math.max(nodes, mass.length * 2);
+            mass = new double[capacity];
+            comX = new double[capacity];
+            comY = new double[capacity];
+            sxx = new double[capacity];
+            sxy = new double[capacity];
+            syy = new double[capacity];
+        }
+        // Children always come after their parent, so a reverse sweep is bottom-up.
+        for (int node = nodes - 1; node >= 0; node--) {
+            double total = 0, mx = 0, my = 0;
+            if (tree.leaf[node]) {
+                for (int k = tree.start[node], end = k + tree.count[node]; k < end; k++) {
+                    total += tree.ws[k];
+                    mx += tree.ws[k] * tree.xs[k];
+                    my += tree.ws[k] * tree.ys[k];
+                }
+            } else {
+                for (int q = 0; q < 4; q++) {
+                    int c = tree.child[4 * node + q];
+                    if (c >= 0) {
+                        total += mass[c];
+                        mx += mass[c] * comX[c];
+                        my += mass[c] * comY[c];
+                    }
+                }
+            }
+            mass[node] = total;
+            comX[node] = total > 0 ? mx / total : tree.cx[node];
+            comY[node] = total > 0 ? my / total : tree.cy[node];
+
+            if (!quadrupole) {
+                continue;
+            }
+            double qxx = 0, qxy = 0, qyy = 0;
+            if (tree.leaf[node]) {
+                for (int k = tree.start[node], end = k + tree.count[node]; k < end; k++) {
+                    double dx = tree.xs[k] - comX[node];
+                    double dy = tree.ys[k] - comY[node];
+                    qxx += tree.ws[k] * dx * dx;
+                    qxy += tree.ws[k] * dx * dy;
+                    qyy += tree.ws[k] * dy * dy;
+                }
+            } else {
+                // Parallel-axis shift of each child's moments onto this cell's center of mass.
+                for (int q = 0; q < 4; q++) {
+                    int c = tree.child[4 * node + q];
+                    if (c >= 0) {
+                        double dx = comX[c] - comX[node];
+                        double dy = comY[c] - comY[node];
+                        qxx += sxx[c] + mass[c] * dx * dx;
+                        qxy += sxy[c] + mass[c] * dx * dy;
+                        qyy += syy[c] + mass[c] * dy * dy;
+                    }
+                }
+            }
+            sxx[node] = qxx;
+            sxy[node] = qxy;
+            syy[node] = qyy;
+        }
+    }
+
+    private void treeAcceleration(int p, Scratch local, Derivatives derivatives, double[] out) {
+        int[] stack = local.stack;
+        double[] sum = local.direct;
+        double ax = 0, ay = 0;
+        sum[0] = 0;
+        sum[1] = 0;
+        if (points > 0) {
+            int self = tree.position[p];
+            double px = tree.xs[self];
+            double py = tree.ys[self];
+            double eps2 = softening * softening;
+            double theta2 = theta * theta;
+
+            int top = 0;
+            stack[top++] = 0;
+            while (top > 0) {
+                int node = stack[--top];
+                if (tree.leaf[node]) {
+                    // The point itself drops out as in exactAcceleration.
+                    direct(px, py, tree.xs, tree.ys, tree.ws, tree.start[node], tree.start[node] + tree.count[node], eps2,
+                            tree.cx[node], tree.cy[node], tree.half[node], local);
+                    continue;
+                }
+
+                double rx = px - comX[node];
+                double ry = py - comY[node];
+                double d2 = rx * rx + ry * ry;
+                double side = 2 * tree.half[node];
+                if (side * side < theta2 * d2 && !tree.contains(node, px, py)) {
+                    if (derivatives == null) {
+                        double r2 = d2 + eps2;
+                        double inv3 = mass[node] / (r2 * Math.sqrt(r2));
+                        ax -= rx * inv3;
+                        ay -= ry * inv3;
+                    } else {
+                        derivatives.compute(rx, ry, eps2);
+                        double[] d = derivatives.d;
+                        double M = mass[node];
+                        ax += M * d[Derivatives.index(1, 0)]
+                                + 0.5 * (sxx[node] * d[Derivatives.index(3, 0)]
+                                + 2 * sxy[node] * d[Derivatives.index(2, 1)]
+                                + syy[node] * d[Derivatives.index(1, 2)]);
+                        ay += M * d[Derivatives.index(0, 1)]
+                                + 0.5 * (sxx[node] * d[Derivatives.index(2, 1)]
+                                + 2 * sxy[node] * d[Derivatives.index(1, 2)]
+                                + syy[node] * d[Derivatives.index(0, 3)]);
+                    }
+                    continue;
+                }
+
+                for (int q = 0; q < 4; q++) {
+                    int c = tree.child[4 * node + q];
+                    if (c >= 0) {
+                        stack[top++] = c;
+                    }
+                }
+            }
+        }
+        out[0] = GRAVITATIONAL_CONSTANT * (ax + sum[0]);
+        out[1] = GRAVITATIONAL_CONSTANT * (ay + sum[1]);
+    }
+
+    // The walk of treeAcceleration with the potential of each accepted cell: M / r plus, with
+    // quadrupole, ½ Σ S_ab ∂a∂b (1/r).
+    private double treePotential(int p, Scratch local) {
+        if (points == 0) {
+            return 0d;
+        }
+        int[] stack = local.stack;
+        Derivatives derivatives = quadrupole ? local.derivatives : null;
+        int self = tree.position[p];
+        double px = tree.xs[self];
+        double py = tree.ys[self];
+        double eps2 = softening * softening;
+        double theta2 = theta * theta;
+        double sum = 0;
+
+        int top = 0;
+        stack[top++] = 0;
+        while (top > 0) {
+            int node = stack[--top];
+            if (tree.leaf[node]) {
+                for (int k = tree.start[node], end = k + tree.count[node]; k < end; k++) {
+                    double dx = tree.xs[k] - px;
+                    double dy = tree.ys[k] - py;
+                    double r2 = dx * dx + dy * dy + eps2;
+                    if (k != self && r2 > 0) {
+                        sum += tree.ws[k] / Math.sqrt(r2);
+                    }
+                }
+                continue;
+            }
+
+            double rx = px - comX[node];
+            double ry = py - comY[node];
+            double d2 = rx * rx + ry * ry;
+            double side = 2 * tree.half[node];
+            if (side * side < theta2 * d2 && !tree.contains(node, px, py)) {
+                if (derivatives == null) {
+                    sum += mass[node] / Math.sqrt(d2 + eps2);
+                } else {
+                    derivatives.compute(rx, ry, eps2);
+                    double[] d = derivatives.d;
+                    sum += mass[node] * d[Derivatives.index(0, 0)]
+                            + 0.5 * (sxx[node] * d[Derivatives.index(2, 0)]
+                            + 2 * sxy[node] * d[Derivatives.index(1, 1)]
+                            + syy[node] * d[Derivatives.index(0, 2)]);
+                }
+                continue;
+            }
+
+            for (int q = 0; q < 4; q++) {
+                int c = tree.child[4 * node + q];
+                if (c >= 0) {
+                    stack[top++] = c;
+                }
+            }
+        }
+        return sum;
+    }
+
+    // True if the Vector API kernel can be used in this JVM.
+    public static boolean simdAvailable() {
+        return PairKernels.simdAvailable();
+    }
+
+    private static final class Scratch {
+        final int[] stack = new int[4 * (QuadTree.maxDepth() + 1)];
+        final Derivatives derivatives = new Derivatives(3);
+        final double[] acceleration = new double[2];
+        // Direct-summation result and the scaled per-call result of the float kernel.
+        final double[] direct = new double[2];
+        final double[] partial = new double[2];
+    }
+}
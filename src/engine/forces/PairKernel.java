@@ -0,0 +1,13 @@
+package engine.forces;
+
+// Direct-summation inner loop over flat source arrays:
+//   out += Σ_j w_j (x_j - px, y_j - py) / (|r_j|² + eps²)^(3/2)   for j in [from, to)
+// Pairs with |r|² + eps² == 0 (the target itself without softening) are skipped.
+// Callers apply the coupling constant (and, for the float variant, their unit scaling).
+interface PairKernel {
+    void accumulate(double px, double py, double[] x, double[] y, double[] w, int from, int to, double eps2, double[] out);
+
+    // Same sum computed in float and accumulated in double. Inputs should be scaled to O(1)
+    // so that r³ stays in float range.
+    void accumulate(float px, float py, float[] x, float[] y, float[] w, int from, int to, float eps2, double[] out);
+}
@@ -0,0 +1,34 @@
+package engine.forces;
+
+// Picks the PairKernel implementation. The SIMD kernel is only linked when requested, so the
+// engine still runs on a JVM started without --add-modules jdk.incubator.vector.
+final class PairKernels {
+    private static PairKernel simd;
+    private static boolean simdResolved = false;
+
+    private PairKernels() {
+    }
+
+    static PairKernel scalar() {
+        return ScalarPairKernel.INSTANCE;
+    }
+
+    // The Vector API kernel, or the scalar one if the incubator module is not available.
+    static synchronized PairKernel simd() {
+        if (!simdResolved) {
+            simdResolved = true;
+            try {
+                simd = (PairKernel) Class.forName("engine.forces.SimdPairKernel").getDeclaredConstructor().newInstance();
+            } catch (ReflectiveOperationException | LinkageError e) {
+                System.err.println("SIMD kernel unavailable (run with --add-modules jdk.incubator.vector), using the scalar kernel");
+                simd = null;
+            }
+        }
+        return simd != null ? simd : ScalarPairKernel.INSTANCE;
+    }
+
+    static synchronized boolean simdAvailable() {
+        simd();
+        return simd != null;
+    }
+}
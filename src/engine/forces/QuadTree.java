@@ -0,0 +1,188 @@
+package engine.forces;
+
+import java.util.Arrays;
+
+// Array-backed quadtree over a set of weighted points in the XY plane.
+// Points are reordered so every node covers a contiguous range [start, start + count)
+// of xs/ys/ws, which keeps leaf interactions on flat arrays.
+// Nodes are created in depth-first order, so a child always has a larger index than its parent.
+final class QuadTree {
+    // Hard stop for coincident points, which can never be separated by subdivision.
+    private static final int MAX_DEPTH = 48;
+
+    final int leafCapacity;
+
+    // --- Points in tree order ---
+    int size;
+    double[] xs = new double[0];
+    double[] ys = new double[0];
+    double[] ws = new double[0];
+    // Tree order -> original point index.
+    int[] index = new int[0];
+    // Original point index -> position in tree order.
+    int[] position = new int[0];
+
+    // --- Nodes ---
+    int nodeCount;
+    double[] cx = new double[0];
+    double[] cy = new double[0];
+    double[] half = new double[0];
+    int[] start = new int[0];
+    int[] count = new int[0];
+    // Four slots per node, -1 where the quadrant is empty. All -1 for leaves.
+    int[] child = new int[0];
+    boolean[] leaf = new boolean[0];
+
+    private int[] scratch = new int[0];
+    // Per-depth quadrant counters and offsets, reused by every build.
+    private final int[][] quadrantScratch = new int[MAX_DEPTH + 1][12];
+
+    QuadTree(int leafCapacity) {
+        this.leafCapacity = Math.max(1, leafCapacity);
+    }
+
+    void build(double[] x, double[] y, double[] w, int n) {
+        size = n;
+        nodeCount = 0;
+        if (index.length < n) {
+            int capacity = Math.max(n, index.length * 2);
+            index = new int[capacity];
+            position = new int[capacity];
+            scratch = new int[capacity];
+            xs = new double[capacity];
+            ys = new double[capacity];
+            ws = new double[capacity];
+        }
+        if (n == 0) {
+            return;
+        }
+
+        double minX = Double.POSITIVE_INFINITY, maxX = Double.NEGATIVE_INFINITY;
+        double minY = Double.POSITIVE_INFINITY, maxY = Double.NEGATIVE_INFINITY;
+        for (int i = 0; i < n; i++) {
+            index[i] = i;
+            minX = Math.min(minX, x[i]);
+            maxX = Math.max(maxX, x[i]);
+            minY = Math.min(minY, y[i]);
+            maxY = Math.max(maxY, y[i]);
+        }
+        double rootHalf = 0.5 * Math.max(maxX - minX, maxY - minY);
+        // Pad slightly so points on the far edge still fall inside the root.
+        rootHalf = rootHalf * (1 + 1e-9) + Double.MIN_NORMAL;
+
+        subdivide(newNode(0.5 * (minX + maxX), 0.5 * (minY + maxY), rootHalf, 0, n), x, y, 0);
+
+        for (int i = 0; i < n; i++) {
+            int p = index[i];
+            xs[i] = x[p];
+            ys[i] = y[p];
+            ws[i] = w[p];
+            position[p] = i;
+        }
+    }
+
+    // Moves the points to new coordinates (and weights) while keeping the node structure. Node
+    // squares keep their centers and grow to cover their points again, so a node still contains
+    // every point below it. The same n points as in build() are expected.
+    void refit(double[] x, double[] y, double[] w) {
+        for (int i = 0; i < size; i++) {
+            int p = index[i];
+            xs[i] = x[p];
+            ys[i] = y[p];
+            ws[i] = w[p];
+        }
+        // Children come after their parent, so a reverse sweep is bottom-up.
+        for (int node = nodeCount - 1; node >= 0; node--) {
+            double h = half[node];
+            if (leaf[node]) {
+                for (int k = start[node], end = k + count[node]; k < end; k++) {
+                    h = Math.max(h, Math.max(Math.abs(xs[k] - cx[node]), Math.abs(ys[k] - cy[node])));
+                }
+            } else {
+                for (int q = 0; q < 4; q++) {
+                    int c = child[4 * node + q];
+                    if (c >= 0) {
+                        h = Math.max(h, Math.max(Math.abs(cx[c] - cx[node]), Math.abs(cy[c] - cy[node])) + half[c]);
+                    }
+                }
+            }
+            half[node] = h;
+        }
+    }
+
+    private void subdivide(int node, double[] x, double[] y, int depth) {
+        int from = start[node];
+        int n = count[node];
+        if (n <= leafCapacity || depth >= MAX_DEPTH) {
+            leaf[node] = true;
+            return;
+        }
+
+        double midX = cx[node];
+        double midY = cy[node];
+        // [0, 4) counts, [4, 8) offsets, [8, 12) write cursors
+        int[] quadrants = quadrantScratch[depth];
+        Arrays.fill(quadrants, 0);
+        for (int i = from; i < from + n; i++) {
+            quadrants[quadrant(x[index[i]], y[index[i]], midX, midY)]++;
+        }
+        for (int q = 1; q < 4; q++) {
+            quadrants[4 + q] = quadrants[4 + q - 1] + quadrants[q - 1];
+        }
+        System.arraycopy(quadrants, 4, quadrants, 8, 4);
+        for (int i = from; i < from + n; i++) {
+            int p = index[i];
+            scratch[from + quadrants[8 + quadrant(x[p], y[p], midX, midY)]++] = p;
+        }
+        System.arraycopy(scratch, from, index, from, n);
+
+        double childHalf = 0.5 * half[node];
+        for (int q = 0; q < 4; q++) {
+            if (quadrants[q] == 0) {
+                continue;
+            }
+            double childX = midX + ((q & 1) != 0 ? childHalf : -childHalf);
+            double childY = midY + ((q & 2) != 0 ? childHalf : -childHalf);
+            int c = newNode(childX, childY, childHalf, from + quadrants[4 + q], quadrants[q]);
+            child[4 * node + q] = c;
+            subdivide(c, x, y, depth + 1);
+        }
+    }
+
+    private static int quadrant(double px, double py, double midX, double midY) {
+        return (px >= midX ? 1 : 0) | (py >= midY ? 2 : 0);
+    }
+
+    private int newNode(double x, double y, double h, int from, int n) {
+        if (nodeCount == cx.length) {
+            int capacity = Math.max(16, nodeCount * 2);
+            cx = Arrays.copyOf(cx, capacity);
+            cy = Arrays.copyOf(cy, capacity);
+            half = Arrays.copyOf(half, capacity);
+            start = Arrays.copyOf(start, capacity);
+            count = Arrays.copyOf(count, capacity);
+            leaf = Arrays.copyOf(leaf, capacity);
+            child = Arrays.copyOf(child, capacity * 4);
+        }
+        int node = nodeCount++;
+        cx[node] = x;
+        cy[node] = y;
+        half[node] = h;
+        start[node] = from;
+        count[node] = n;
+        leaf[node] = false;
+        Arrays.fill(child, 4 * node, 4 * node + 4, -1);
+        return node;
+    }
+
+    // True if (px, py) lies inside the node's square.
+    boolean contains(int node, double px, double py) {
+        double h = half[node];
+        return Math.abs(px - cx[node]) <= h && Math.abs(py - cy[node]) <= h;
+    }
+
+    // Deepest level of the tree, used to size traversal stacks.
+    static int maxDepth() {
+        return MAX_DEPTH;
+    }
+}
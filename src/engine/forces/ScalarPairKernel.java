@@ -0,0 +1,45 @@
+package engine.forces;
+
+// Plain loops, the reference for the SIMD kernel and its fallback.
+final class ScalarPairKernel implements PairKernel {
+    static final ScalarPairKernel INSTANCE = new ScalarPairKernel();
+
+    private ScalarPairKernel() {
+    }
+
+    @Override
+    public void accumulate(double px, double py, double[] x, double[] y, double[] w, int from, int to, double eps2, double[] out) {
+        double ax = 0, ay = 0;
+        for (int j = from; j < to; j++) {
+            double dx = x[j] - px;
+            double dy = y[j] - py;
+            double r2 = dx * dx + dy * dy + eps2;
+            if (r2 == 0) {
+                continue;
+            }
+            double inv3 = w[j] / (r2 * Math.sqrt(r2));
+            ax += dx * inv3;
+            ay += dy * inv3;
+        }
+        out[0] += ax;
+        out[1] += ay;
+    }
+
+    @Override
+    public void accumulate(float px, float py, float[] x, float[] y, float[] w, int from, int to, float eps2, double[] out) {
+        double ax = 0, ay = 0;
+        for (int j = from; j < to; j++) {
+            float dx = x[j] - px;
+            float dy = y[j] - py;
+            float r2 = dx * dx + dy * dy + eps2;
+            if (r2 == 0) {
+                continue;
+            }
+            float inv3 = w[j] / (r2 * (float) Math.sqrt(r2));
+            ax += dx * inv3;
+            ay += dy * inv3;
+        }
+        out[0] += ax;
+        out[1] += ay;
+    }
+}
@@ -0,0 +1,95 @@
+package engine.forces;
+
+import jdk.incubator.vector.DoubleVector;
+import jdk.incubator.vector.FloatVector;
+import jdk.incubator.vector.VectorMask;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+// PairKernel on the JDK Vector API, using the widest lanes the CPU offers.
+// Needs --add-modules jdk.incubator.vector at compile and run time; PairKernels loads it
+// reflectively and falls back to ScalarPairKernel when the module is missing.
+final class SimdPairKernel implements PairKernel {
+    private static final VectorSpecies<Double> DOUBLES = DoubleVector.SPECIES_PREFERRED;
+    private static final VectorSpecies<Float> FLOATS = FloatVector.SPECIES_PREFERRED;
+    // Float lanes are summed into the double result after this many sources, which bounds
+    // the rounding error of the float partial sums.
+    private static final int FLOAT_TILE = 256;
+
+    @Override
+    public void accumulate(double px, double py, double[] x, double[] y, double[] w, int from, int to, double eps2, double[] out) {
+        DoubleVector vpx = DoubleVector.broadcast(DOUBLES, px);
+        DoubleVector vpy = DoubleVector.broadcast(DOUBLES, py);
+        DoubleVector veps2 = DoubleVector.broadcast(DOUBLES, eps2);
+        DoubleVector zero = DoubleVector.zero(DOUBLES);
+        DoubleVector ax = zero;
+        DoubleVector ay = zero;
+
+        int j = from;
+        for (int upper = from + DOUBLES.loopBound(to - from); j < upper; j += DOUBLES.length()) {
+            DoubleVector dx = DoubleVector.fromArray(DOUBLES, x, j).sub(vpx);
+            DoubleVector dy = DoubleVector.fromArray(DOUBLES, y, j).sub(vpy);
+            DoubleVector r2 = dx.fma(dx, dy.fma(dy, veps2));
+            VectorMask<Double> nonZero = r2.compare(VectorOperators.NE, 0d);
+            DoubleVector inv3 = zero.blend(DoubleVector.fromArray(DOUBLES, w, j).div(r2.mul(r2.sqrt())), nonZero);
+            ax = dx.fma(inv3, ax);
+            ay = dy.fma(inv3, ay);
+        }
+        double sx = ax.reduceLanes(VectorOperators.ADD);
+        double sy = ay.reduceLanes(VectorOperators.ADD);
+        for (; j < to; j++) {
+            double dx = x[j] - px;
+            double dy = y[j] - py;
+            double r2 = dx * dx + dy * dy + eps2;
+            if (r2 == 0) {
+                continue;
+            }
+            double inv3 = w[j] / (r2 * Math.sqrt(r2));
+            sx += dx * inv3;
+            sy += dy * inv3;
+        }
+        out[0] += sx;
+        out[1] += sy;
+    }
+
+    @Override
+    public void accumulate(float px, float py, float[] x, float[] y, float[] w, int from, int to, float eps2, double[] out) {
+        FloatVector vpx = FloatVector.broadcast(FLOATS, px);
+        FloatVector vpy = FloatVector.broadcast(FLOATS, py);
+        FloatVector veps2 = FloatVector.broadcast(FLOATS, eps2);
+        FloatVector zero = FloatVector.zero(FLOATS);
+        double sx = 0, sy = 0;
+
+        int j = from;
+        int upper = from + FLOATS.loopBound(to - from);
+        while (j < upper) {
+            int tileEnd = Math.min(upper, j + FLOAT_TILE);
+            FloatVector ax = zero;
+            FloatVector ay = zero;
+            for (; j < tileEnd; j += FLOATS.length()) {
+                FloatVector dx = FloatVector.fromArray(FLOATS, x, j).sub(vpx);
+                FloatVector dy = FloatVector.fromArray(FLOATS, y, j).sub(vpy);
+                FloatVector r2 = dx.fma(dx, dy.fma(dy, veps2));
+                VectorMask<Float> nonZero = r2.compare(VectorOperators.NE, 0f);
+                FloatVector inv3 = zero.blend(FloatVector.fromArray(FLOATS, w, j).div(r2.mul(r2.sqrt())), nonZero);
+                ax = dx.fma(inv3, ax);
+                ay = dy.fma(inv3, ay);
+            }
+            sx += ax.reduceLanes(VectorOperators.ADD);
+            sy += ay.reduceLanes(VectorOperators.ADD);
+        }
+        for (; j < to; j++) {
+            float dx = x[j] - px;
+            float dy = y[j] - py;
+            float r2 = dx * dx + dy * dy + eps2;
+            if (r2 == 0) {
+                continue;
+            }
+            float inv3 = w[j] / (r2 * (float) Math.sqrt(r2));
+            sx += dx * inv3;
+            sy += dy * inv3;
+        }
+        out[0] += sx;
+        out[1] += sy;
+    }
+}
@@ -0,0 +1,233 @@
+package engine.integrators;
+
+import engine.BodyStore;
+import engine.Scene;
+
+import java.util.Arrays;
+
+// Kick-drift-kick leapfrog with individual, hierarchical timesteps.
+//
+// The scene step dt is split into 2^maxLevel ticks and every body steps with dt / 2^level, so
+// steps of different bodies always line up. Within a scene step the integrator jumps from one
+// step boundary to the next: every body drifts there (cheap, and it keeps the force sources
+// current), but only the bodies whose step ends there ("active" bodies) get their forces
+// recomputed and are kicked. After the closing half kick an active body picks its next level
+// from the criterion dt_i = eta * |a| / |da/dt|, with the jerk estimated from the change in
+// acceleration since its previous force evaluation. A body may go to a finer level at any
+// boundary, but to a coarser one only one level at a time and only where the coarser step
+// starts, which keeps the block structure intact.
+//
+// Forces from the end of a scene step are reused by the opening kicks of the next one, as in
+// LeapfrogIntegrator.KICK_DRIFT_KICK. Force solvers are rebuilt once per scene step and only
+// refreshed (ForceSolver.refresh) at the finer boundaries. Kicks and the timestep criterion work
+// on single slots of the scene's BodyStore.
+public class BlockTimestepIntegrator implements Integrator {
+    // Accuracy parameter of the timestep criterion.
+    public double eta = 0.01;
+    // Finest level: the smallest step is dt / 2^maxLevel.
+    public final int maxLevel;
+
+    // --- Statistics, cumulative until reset() ---
+    // Force evaluations of single bodies, and boundaries where at least one body was active.
+    public long bodyForceEvaluations = 0;
+    public long subSteps = 0;
+    public long steps = 0;
+
+    // --- Per-body state, indexed like scene.bodies ---
+    private int[] level = new int[0];
+    private int[] tiBegin = new int[0];
+    private int[] tiStep = new int[0];
+    // Acceleration at the last force evaluation, when it happened, and the jerk estimate.
+    private double[] ax = new double[0];
+    private double[] ay = new double[0];
+    private double[] evalTime = new double[0];
+    private double[] jerk = new double[0];
+    private int[] active = new int[0];
+    // Time since the integrator was primed, for the jerk estimate.
+    private double clock = 0d;
+
+    // Scene and body count the cached forces belong to.
+    private Scene primedScene = null;
+    private int primedCount = -1;
+
+    public BlockTimestepIntegrator() {
+        this(12);
+    }
+
+    public BlockTimestepIntegrator(int maxLevel) {
+        if (maxLevel < 0 || maxLevel > 30) {
+            throw new IllegalArgumentException("maxLevel must be in [0, 30], got " + maxLevel);
+        }
+        this.maxLevel = maxLevel;
+    }
+
+    @Override
+    public void step(Scene scene, double dt, StepPhases phases) {
+        BodyStore bodies = scene.bodies;
+        int n = bodies.size();
+        int ticks = 1 << maxLevel;
+        double tick = dt / ticks;
+
+        if (primedScene != scene || primedCount != n) {
+            prime(scene, phases);
+        }
+
+        // Every body starts a new step at the scene step boundary.
+        for (int i = 0; i < n; i++) {
+            setLevel(i, desiredLevel(bodies, i, dt), ticks);
+            tiBegin[i] = 0;
+            bodies.kick(i, i + 1, 0.5 * tiStep[i] * tick);
+        }
+
+        int t = 0;
+        while (t < ticks) {
+            int next = ticks;
+            for (int i = 0; i < n; i++) {
+                next = Math.min(next, tiBegin[i] + tiStep[i]);
+            }
+            double span = (next - t) * tick;
+            phases.drift(scene, span);
+            clock += span;
+            t = next;
+
+            int count = 0;
+            for (int i = 0; i < n; i++) {
+                if (tiBegin[i] + tiStep[i] == t) {
+                    active[count++] = i;
+                    bodies.clearForces(i, i + 1);
+                }
+            }
+            // The solvers are rebuilt only at the end of the scene step, the boundary of the coarsest
+            // level; the sub-steps in between refit them, so a sub-step costs O(active) walks
+            // plus an O(N) refit rather than a full rebuild of the tree over all N bodies.
+            phases.computeForces(scene, active, count, t == ticks);
+            bodyForceEvaluations += count;
+            subSteps++;
+
+            for (int k = 0; k < count; k++) {
+                int i = active[k];
+                bodies.kick(i, i + 1, 0.5 * tiStep[i] * tick);
+                recordAcceleration(bodies, i);
+                if (t == ticks) {
+                    continue;
+                }
+                int wanted = desiredLevel(bodies, i, dt);
+                if (wanted < level[i]) {
+                    // Coarsen one level at a time, and only where the coarser step starts.
+                    wanted = (t % (2 * tiStep[i]) == 0) ? level[i] - 1 : level[i];
+                }
+                setLevel(i, wanted, ticks);
+                tiBegin[i] = t;
+                bodies.kick(i, i + 1, 0.5 * tiStep[i] * tick);
+            }
+        }
+        phases.endStep(scene);
+        steps++;
+    }
+
+    // First step on this scene: forces for every body and no jerk history yet.
+    private void prime(Scene scene, StepPhases phases) {
+        int n = scene.bodies.size();
+        if (level.length < n) {
+            level = new int[n];
+            tiBegin = new int[n];
+            tiStep = new int[n];
+            ax = new double[n];
+            ay = new double[n];
+            evalTime = new double[n];
+            jerk = new double[n];
+            active = new int[n];
+        }
+        Arrays.fill(jerk, 0, n, 0d);
+        Arrays.fill(evalTime, 0, n, Double.NaN);
+        clock = 0d;
+        phases.computeForces(scene);
+        bodyForceEvaluations += n;
+        for (int i = 0; i < n; i++) {
+            recordAcceleration(scene.bodies, i);
+        }
+        primedScene = scene;
+        primedCount = n;
+    }
+
+    // Stores the acceleration from the freshly computed forces and updates the jerk estimate.
+    private void recordAcceleration(BodyStore bodies, int i) {
+        double mass = bodies.mass[i];
+        if (mass == 0) {
+            return;
+        }
+        double newAx = bodies.fx[i] / mass + bodies.ax[i];
+        double newAy = bodies.fy[i] / mass + bodies.ay[i];
+        double elapsed = clock - evalTime[i];
+        if (elapsed > 0) {
+            double dx = newAx - ax[i];
+            double dy = newAy - ay[i];
+            jerk[i] = Math.sqrt(dx * dx + dy * dy) / elapsed;
+        }
+        ax[i] = newAx;
+        ay[i] = newAy;
+        evalTime[i] = clock;
+    }
+
+    // Level whose step satisfies the criterion; 0 (the full scene step) when nothing constrains it.
+    private int desiredLevel(BodyStore bodies, int i, double dt) {
+        if (bodies.mass[i] == 0) {
+            return 0;
+        }
+        double acceleration = Math.sqrt(ax[i] * ax[i] + ay[i] * ay[i]);
+        if (acceleration == 0) {
+            return 0;
+        }
+        double step;
+        if (jerk[i] > 0) {
+            step = eta * acceleration / jerk[i];
+        } else {
+            // No history yet: |v| / |a| has the same scale as |a| / |da/dt| on an orbit.
+            double speed = Math.sqrt(bodies.vx[i] * bodies.vx[i] + bodies.vy[i] * bodies.vy[i]);
+            step = speed > 0 ? eta * speed / acceleration : 0;
+        }
+        if (step >= dt) {
+            return 0;
+        }
+        if (step <= 0) {
+            return maxLevel;
+        }
+        int wanted = (int) Math.ceil(Math.log(dt / step) / Math.log(2));
+        return Math.min(maxLevel, Math.max(0, wanted));
+    }
+
+    private void setLevel(int i, int newLevel, int ticks) {
+        level[i] = newLevel;
+        tiStep[i] = ticks >> newLevel;
+    }
+
+    // Current level of the body at index i, for diagnostics.
+    public int levelOf(int i) {
+        return level[i];
+    }
+
+    @Override
+    public int forceEvaluationsPerStep() {
+        // Average over the steps so far, in units of one evaluation of every body.
+        if (steps == 0 || primedCount <= 0) {
+            return 1;
+        }
+        return (int) Math.ceil((double) bodyForceEvaluations / (steps * primedCount));
+    }
+
+    @Override
+    public void reset() {
+        primedScene = null;
+        primedCount = -1;
+        bodyForceEvaluations = 0;
+        subSteps = 0;
+        steps = 0;
+    }
+
+    @Override
+    public BlockTimestepIntegrator copy() {
+        BlockTimestepIntegrator copy = new BlockTimestepIntegrator(maxLevel);
+        copy.eta = eta;
+        return copy;
+    }
+}
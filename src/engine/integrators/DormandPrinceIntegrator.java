@@ -0,0 +1,336 @@
+package engine.integrators;
+
+import engine.BodyStore;
+import engine.Scene;
+import engine.Vector;
+import engine.VectorDynamic;
+import engine.bodies.Rigidbody;
+
+import static engine.Constants.SPEED_OF_LIGHT;
+
+// Adaptive embedded Runge-Kutta 5(4) of Dormand and Prince.
+//
+// The massive Rigidbodies of the scene are packed into one flat state [x, y, px, py] per body,
+// with dx/dt = p / (γ m) and dp/dt = F, read from and written to the columns of their slots. Each call to step() covers dt with as many internal
+// steps as the tolerance needs: the 4th-order embedded solution gives an error estimate, steps
+// that miss the tolerance are rejected and retried smaller, and the step size carries over from
+// one call to the next. Simulation.runUntil() asks for that step through preferredStep(), so a
+// headless run strides through quiet stretches, bounded by maxStep rather than TIME_STEP, and
+// slows down only near close approaches. The last stage of an accepted step is
+// the first stage of the next one (FSAL), so an accepted step costs six force evaluations.
+//
+// Forces added between calls (Rigidbody.addForce) are held constant over the whole call.
+// Photons and massless bodies take no part in the state and move in a straight line; sleeping
+// bodies stay out of it as well and are kicked (which may wake them) and drifted like photons.
+// constantVelocity is not applied while the integrator runs.
+public class DormandPrinceIntegrator implements Integrator {
+    // --- Butcher tableau ---
+    private static final double A21 = 1d / 5;
+    private static final double A31 = 3d / 40, A32 = 9d / 40;
+    private static final double A41 = 44d / 45, A42 = -56d / 15, A43 = 32d / 9;
+    private static final double A51 = 19372d / 6561, A52 = -25360d / 2187, A53 = 64448d / 6561, A54 = -212d / 729;
+    private static final double A61 = 9017d / 3168, A62 = -355d / 33, A63 = 46732d / 5247, A64 = 49d / 176, A65 = -5103d / 18656;
+    private static final double B1 = 35d / 384, B3 = 500d / 1113, B4 = 125d / 192, B5 = -2187d / 6784, B6 = 11d / 84;
+    // 5th minus 4th order weights, for the error estimate.
+    private static final double E1 = 71d / 57600, E3 = -71d / 16695, E4 = 71d / 1920, E5 = -17253d / 339200, E6 = 22d / 525, E7 = -1d / 40;
+
+    private static final double SAFETY = 0.9;
+    private static final double MIN_FACTOR = 0.2;
+    private static final double MAX_FACTOR = 5;
+
+    // Error tolerance per component: |error| <= absolute + relative * |value|.
+    public double relativeTolerance = 1e-9;
+    // Absolute parts, in meters and kg·m/s.
+    public double absolutePositionTolerance = 1e-3;
+    public double absoluteMomentumTolerance = 0d;
+    // Bounds for the internal step, in seconds; 0 means unbounded. maxStep also bounds the steps
+    // runUntil() takes, which is how often collisions, lensing and the clock see the scene.
+    public double minStep = 0d;
+    public double maxStep = 0d;
+
+    // --- Statistics, cumulative until reset() ---
+    public long acceptedSteps = 0;
+    public long rejectedSteps = 0;
+    public long forceEvaluations = 0;
+    private long calls = 0;
+
+    // Step size the next internal step starts with, 0 before the first step.
+    private double step = 0d;
+
+    // --- Work state ---
+    // Slots of the state bodies in `store`, the scene's BodyStore.
+    private int[] state = new int[0];
+    private int count;
+    private BodyStore store;
+    // External force per state body, captured at the start of a call.
+    private double[] externalFx = new double[0];
+    private double[] externalFy = new double[0];
+    private VectorDynamic y;
+    private VectorDynamic stage;
+    private VectorDynamic next;
+    private final VectorDynamic[] k = new VectorDynamic[7];
+
+    @Override
+    public void step(Scene scene, double dt, StepPhases phases) {
+        gather(scene);
+        BodyStore bodies = store;
+        int size = 4 * count;
+        double[] yd = y.data;
+
+        evaluate(scene, phases, yd, k[0].data);
+        if (step <= 0) {
+            step = initialStep(dt);
+        }
+
+        double done = 0;
+        boolean lastRejected = false;
+        while (done < dt) {
+            double wanted = clampStep(step);
+            double h = Math.min(wanted, dt - done);
+            boolean last = h >= dt - done;
+            double error = attempt(scene, phases, h, size);
+            if (error <= 1 || (minStep > 0 && h <= minStep)) {
+                acceptedSteps++;
+                System.arraycopy(next.data, 0, yd, 0, size);
+                // FSAL: f(next) becomes the first stage of the next step.
+                VectorDynamic first = k[0];
+                k[0] = k[6];
+                k[6] = first;
+                done = last ? dt : done + h;
+                double factor = error == 0 ? MAX_FACTOR : Math.min(MAX_FACTOR, Math.max(MIN_FACTOR, SAFETY * Math.pow(error, -0.2)));
+                if (lastRejected) {
+                    factor = Math.min(factor, 1);
+                }
+                // A step shortened to land on dt says nothing about the step the error allows.
+                if (h >= wanted || factor < 1) {
+                    step = h * factor;
+                }
+                lastRejected = false;
+            } else {
+                rejectedSteps++;
+                step = h * Math.max(MIN_FACTOR, SAFETY * Math.pow(error, -0.2));
+                lastRejected = true;
+            }
+        }
+
+        scatter(yd);
+        for (int i = 0, n = bodies.size(); i < n; i++) {
+            if (isState(bodies, i)) {
+                // Refreshes velocity, γ and the force magnitude from the final state.
+                bodies.kick(i, i + 1, 0);
+            } else {
+                bodies.kick(i, i + 1, dt);
+                bodies.drift(i, i + 1, dt);
+            }
+        }
+        phases.clearForces(scene);
+        phases.endStep(scene);
+        calls++;
+    }
+
+    // One trial step of size h from y; leaves the 5th-order result in `next` and k[6] = f(next).
+    // Returns the error norm relative to the tolerance (accept if <= 1).
+    private double attempt(Scene scene, StepPhases phases, double h, int size) {
+        double[] yd = y.data;
+        double[] s = stage.data;
+        double[] k1 = k[0].data, k2 = k[1].data, k3 = k[2].data, k4 = k[3].data, k5 = k[4].data, k6 = k[5].data, k7 = k[6].data;
+
+        for (int i = 0; i < size; i++) {
+            s[i] = yd[i] + h * A21 * k1[i];
+        }
+        evaluate(scene, phases, s, k2);
+        for (int i = 0; i < size; i++) {
+            s[i] = yd[i] + h * (A31 * k1[i] + A32 * k2[i]);
+        }
+        evaluate(scene, phases, s, k3);
+        for (int i = 0; i < size; i++) {
+            s[i] = yd[i] + h * (A41 * k1[i] + A42 * k2[i] + A43 * k3[i]);
+        }
+        evaluate(scene, phases, s, k4);
+        for (int i = 0; i < size; i++) {
+            s[i] = yd[i] + h * (A51 * k1[i] + A52 * k2[i] + A53 * k3[i] + A54 * k4[i]);
+        }
+        evaluate(scene, phases, s, k5);
+        for (int i = 0; i < size; i++) {
+            s[i] = yd[i] + h * (A61 * k1[i] + A62 * k2[i] + A63 * k3[i] + A64 * k4[i] + A65 * k5[i]);
+        }
+        evaluate(scene, phases, s, k6);
+        double[] yn = next.data;
+        for (int i = 0; i < size; i++) {
+            yn[i] = yd[i] + h * (B1 * k1[i] + B3 * k3[i] + B4 * k4[i] + B5 * k5[i] + B6 * k6[i]);
+        }
+        evaluate(scene, phases, yn, k7);
+
+        double sum = 0;
+        for (int i = 0; i < size; i++) {
+            double error = h * (E1 * k1[i] + E3 * k3[i] + E4 * k4[i] + E5 * k5[i] + E6 * k6[i] + E7 * k7[i]);
+            double scale = tolerance(i, Math.max(Math.abs(yd[i]), Math.abs(yn[i])));
+            if (scale > 0) {
+                sum += (error / scale) * (error / scale);
+            } else if (error != 0) {
+                return Double.POSITIVE_INFINITY;
+            }
+        }
+        return size == 0 ? 0 : Math.sqrt(sum / size);
+    }
+
+    // Derivative of the flat state: velocities from the momenta, forces from the solvers.
+    private void evaluate(Scene scene, StepPhases phases, double[] s, double[] out) {
+        double[] x = store.x, y = store.y, mass = store.mass, fx = store.fx, fy = store.fy;
+        for (int b = 0; b < count; b++) {
+            x[state[b]] = s[4 * b];
+            y[state[b]] = s[4 * b + 1];
+        }
+        phases.clearForces(scene);
+        phases.computeForces(scene);
+        forceEvaluations++;
+        for (int b = 0; b < count; b++) {
+            int slot = state[b];
+            double m = mass[slot];
+            double px = s[4 * b + 2];
+            double py = s[4 * b + 3];
+            // v = p / (γ m) with γ m = sqrt(m² + p²/c²)
+            double gammaMass = Math.sqrt(m * m + (px * px + py * py) / (SPEED_OF_LIGHT * SPEED_OF_LIGHT));
+            out[4 * b] = px / gammaMass;
+            out[4 * b + 1] = py / gammaMass;
+            out[4 * b + 2] = fx[slot] + externalFx[b];
+            out[4 * b + 3] = fy[slot] + externalFy[b];
+        }
+    }
+
+    private double tolerance(int component, double magnitude) {
+        boolean position = (component & 2) == 0;
+        return (position ? absolutePositionTolerance : absoluteMomentumTolerance) + relativeTolerance * magnitude;
+    }
+
+    // Starting step from the scale of the state and its derivative (Hairer, Nørsett & Wanner).
+    private double initialStep(double dt) {
+        double d0 = 0, d1 = 0;
+        double[] yd = y.data;
+        double[] f = k[0].data;
+        for (int i = 0; i < 4 * count; i++) {
+            double scale = tolerance(i, Math.abs(yd[i]));
+            if (scale > 0) {
+                d0 += (yd[i] / scale) * (yd[i] / scale);
+                d1 += (f[i] / scale) * (f[i] / scale);
+            }
+        }
+        double h = (d0 < 1e-10 || d1 < 1e-10) ? 1e-6 * dt : 0.01 * Math.sqrt(d0 / d1);
+        return Math.min(h, dt);
+    }
+
+    private double clampStep(double h) {
+        if (maxStep > 0) {
+            h = Math.min(h, maxStep);
+        }
+        if (minStep > 0) {
+            h = Math.max(h, minStep);
+        }
+        return h;
+    }
+
+    private static boolean isState(BodyStore bodies, int i) {
+        return bodies.mass[i] > 0 && !bodies.get(i).isSleeping();
+    }
+
+    // Packs the massive bodies into the flat state and takes over forces added since the last step.
+    private void gather(Scene scene) {
+        BodyStore bodies = scene.bodies;
+        store = bodies;
+        int n = bodies.size();
+        if (state.length < n) {
+            state = new int[n];
+            externalFx = new double[n];
+            externalFy = new double[n];
+        }
+        count = 0;
+        for (int i = 0; i < n; i++) {
+            if (isState(bodies, i)) {
+                state[count++] = i;
+            }
+        }
+        int size = Math.max(1, 4 * count);
+        if (y == null || y.dimension() < size) {
+            y = new VectorDynamic(new double[size]);
+            stage = new VectorDynamic(new double[size]);
+            next = new VectorDynamic(new double[size]);
+            for (int s = 0; s < k.length; s++) {
+                k[s] = new VectorDynamic(new double[size]);
+            }
+        }
+        double[] yd = y.data;
+        for (int b = 0; b < count; b++) {
+            int slot = state[b];
+            double mass = bodies.mass[slot];
+            yd[4 * b] = bodies.x[slot];
+            yd[4 * b + 1] = bodies.y[slot];
+            yd[4 * b + 2] = bodies.px[slot];
+            yd[4 * b + 3] = bodies.py[slot];
+            double fx = bodies.fx[slot] + mass * bodies.ax[slot];
+            double fy = bodies.fy[slot] + mass * bodies.ay[slot];
+            if (bodies.kind[slot] != BodyStore.PLAIN) {
+                Rigidbody body = (Rigidbody) bodies.get(slot);
+                Vector constantForce = body.getConstantForce();
+                Vector constantAcceleration = body.getConstantAcceleration();
+                if (constantForce != null) {
+                    fx += constantForce.get(0);
+                    fy += constantForce.get(1);
+                }
+                if (constantAcceleration != null) {
+                    fx += mass * constantAcceleration.get(0);
+                    fy += mass * constantAcceleration.get(1);
+                }
+            }
+            externalFx[b] = fx;
+            externalFy[b] = fy;
+        }
+    }
+
+    // Writes the flat state back into the bodies.
+    private void scatter(double[] s) {
+        for (int b = 0; b < count; b++) {
+            int slot = state[b];
+            store.x[slot] = s[4 * b];
+            store.y[slot] = s[4 * b + 1];
+            store.px[slot] = s[4 * b + 2];
+            store.py[slot] = s[4 * b + 3];
+        }
+    }
+
+    @Override
+    public boolean isAdaptive() {
+        return true;
+    }
+
+    // The fixed step until the first call has sized a step of its own.
+    @Override
+    public double preferredStep(double dt) {
+        return step > 0 ? clampStep(step) : dt;
+    }
+
+    @Override
+    public int forceEvaluationsPerStep() {
+        // Average per call so far.
+        return calls == 0 ? 7 : (int) Math.ceil((double) forceEvaluations / calls);
+    }
+
+    @Override
+    public void reset() {
+        step = 0d;
+        acceptedSteps = 0;
+        rejectedSteps = 0;
+        forceEvaluations = 0;
+        calls = 0;
+    }
+
+    @Override
+    public DormandPrinceIntegrator copy() {
+        DormandPrinceIntegrator copy = new DormandPrinceIntegrator();
+        copy.relativeTolerance = relativeTolerance;
+        copy.absolutePositionTolerance = absolutePositionTolerance;
+        copy.absoluteMomentumTolerance = absoluteMomentumTolerance;
+        copy.minStep = minStep;
+        copy.maxStep = maxStep;
+        return copy;
+    }
+}
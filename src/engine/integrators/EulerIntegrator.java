@@ -0,0 +1,23 @@
+package engine.integrators;
+
+import engine.Scene;
+
+// Semi-implicit (symplectic) Euler, the engine's original scheme: forces, then Body.update,
+// which kicks the momentum and drifts with the new velocity. First order.
+public class EulerIntegrator implements Integrator {
+    @Override
+    public void step(Scene scene, double dt, StepPhases phases) {
+        phases.computeForces(scene);
+        phases.update(scene, dt);
+    }
+
+    @Override
+    public int forceEvaluationsPerStep() {
+        return 1;
+    }
+
+    @Override
+    public EulerIntegrator copy() {
+        return new EulerIntegrator();
+    }
+}
@@ -0,0 +1,34 @@
+package engine.integrators;
+
+import engine.Scene;
+
+// Advances a scene by one step, composed from StepPhases.
+//
+// Forces added with Rigidbody.addForce between steps are picked up by the first kick of the next
+// step. Integrators that reuse forces from the previous step (LeapfrogIntegrator) keep them in the
+// bodies' accumulators, so such forces then only act on that first half kick.
+public interface Integrator {
+    void step(Scene scene, double dt, StepPhases phases);
+
+    // Force evaluations per step, for comparing the cost of integrators.
+    int forceEvaluationsPerStep();
+
+    // True if the integrator picks its own internal steps within the dt it is given. runUntil()
+    // then steps by preferredStep() instead of the fixed step, shortening the last one so it ends
+    // exactly on the requested time.
+    default boolean isAdaptive() {
+        return false;
+    }
+
+    // The step an adaptive integrator wants to take next, given the engine's fixed step dt.
+    default double preferredStep(double dt) {
+        return dt;
+    }
+
+    // Drops anything carried over from earlier steps, e.g. after the scene was edited from outside.
+    default void reset() {
+    }
+
+    // An integrator with the same settings and no carried-over state, for a cloned scene.
+    Integrator copy();
+}
@@ -0,0 +1,59 @@
+package engine.integrators;
+
+import engine.bodies.Body;
+
+import java.util.Arrays;
+import java.util.List;
+
+// The fixed reduction tree behind StepPhases.sum, shared by the serial and the parallel phases so
+// that both give the same bits.
+//
+// The bodies are cut into chunks of CHUNK, a constant that does not depend on the thread count.
+// Each chunk is summed in index order into its own partial; the partials are then added in
+// pairs, level by level: (0 + 1), (2 + 3), ... then (01 + 23), ... and so on. The shape of the
+// tree only depends on the number of bodies, so it does not matter which thread summed a chunk
+// or in which order the chunks finished.
+public final class PairwiseSum {
+    public static final int CHUNK = 1024;
+
+    private PairwiseSum() {
+    }
+
+    public static int chunks(int n) {
+        return Math.max(1, (n + CHUNK - 1) / CHUNK);
+    }
+
+    // Sums the terms of chunk c into partial, which is cleared first.
+    public static void chunk(List<Body> bodies, int c, double[] partial, StepPhases.BodySum terms) {
+        Arrays.fill(partial, 0);
+        for (int i = c * CHUNK, end = Math.min(bodies.size(), i + CHUNK); i < end; i++) {
+            terms.add(i, bodies.get(i), partial);
+        }
+    }
+
+    // Adds partials[0 .. chunks) along the fixed tree into totals. Overwrites the partials.
+    public static void combine(double[][] partials, int chunks, double[] totals) {
+        int width = totals.length;
+        for (int stride = 1; stride < chunks; stride *= 2) {
+            for (int c = 0; c + stride < chunks; c += 2 * stride) {
+                double[] left = partials[c], right = partials[c + stride];
+                for (int k = 0; k < width; k++) {
+                    left[k] += right[k];
+                }
+            }
+        }
+        System.arraycopy(partials[0], 0, totals, 0, width);
+    }
+
+    // Partial buffers for `chunks` chunks of `width` values, reusing `partials` when it is large enough.
+    public static double[][] ensure(double[][] partials, int chunks, int width) {
+        if (partials.length >= chunks && partials.length > 0 && partials[0].length == width) {
+            return partials;
+        }
+        double[][] grown = new double[Math.max(chunks, partials.length)][];
+        for (int c = 0; c < grown.length; c++) {
+            grown[c] = new double[width];
+        }
+        return grown;
+    }
+}
@@ -0,0 +1,80 @@
+package engine.integrators;
+
+import engine.BodyStore;
+import engine.Scene;
+import engine.bodies.Body;
+import engine.forces.ForceSolver;
+
+import java.util.List;
+
+// StepPhases as plain loops on the calling thread.
+public final class SerialPhases implements StepPhases {
+    public static final SerialPhases INSTANCE = new SerialPhases();
+
+    // Partials of sum(); SerialPhases is shared, so each thread gets its own.
+    private static final ThreadLocal<double[][]> partials = ThreadLocal.withInitial(() -> new double[0][]);
+
+    private SerialPhases() {
+    }
+
+    @Override
+    public void computeForces(Scene scene) {
+        BodyStore bodies = scene.bodies;
+        for (int i = 0; i < scene.forceSolvers.size(); i++) {
+            ForceSolver solver = scene.forceSolvers.get(i);
+            solver.prepare(bodies);
+            solver.accumulate(bodies, 0, bodies.size());
+        }
+    }
+
+    @Override
+    public void computeForces(Scene scene, int[] targets, int count, boolean rebuild) {
+        BodyStore bodies = scene.bodies;
+        for (int i = 0; i < scene.forceSolvers.size(); i++) {
+            ForceSolver solver = scene.forceSolvers.get(i);
+            if (rebuild) {
+                solver.prepare(bodies);
+            } else {
+                solver.refresh(bodies);
+            }
+            solver.accumulate(bodies, targets, 0, count);
+        }
+    }
+
+    @Override
+    public void kick(Scene scene, double dt) {
+        scene.bodies.kick(0, scene.bodies.size(), dt);
+    }
+
+    @Override
+    public void drift(Scene scene, double dt) {
+        scene.bodies.drift(0, scene.bodies.size(), dt);
+    }
+
+    @Override
+    public void clearForces(Scene scene) {
+        scene.bodies.clearForces(0, scene.bodies.size());
+    }
+
+    @Override
+    public void update(Scene scene, double dt) {
+        scene.bodies.update(0, scene.bodies.size(), dt);
+    }
+
+    @Override
+    public void endStep(Scene scene) {
+        scene.bodies.endStep(0, scene.bodies.size());
+    }
+
+    @Override
+    public void sum(Scene scene, double[] totals, BodySum terms, boolean fixedTree) {
+        List<Body> bodies = scene.bodies;
+        int chunks = PairwiseSum.chunks(bodies.size());
+        double[][] buffers = PairwiseSum.ensure(partials.get(), chunks, totals.length);
+        partials.set(buffers);
+        for (int c = 0; c < chunks; c++) {
+            PairwiseSum.chunk(bodies, c, buffers[c], terms);
+        }
+        PairwiseSum.combine(buffers, chunks, totals);
+    }
+}
@@ -0,0 +1,50 @@
+package engine.integrators;
+
+import engine.Scene;
+import engine.bodies.Body;
+
+// The building blocks an Integrator composes a step from. Each phase covers every body of the
+// scene and returns only once all of them are done, so phases can run in parallel internally
+// (ParallelStepper) or as plain loops (SerialPhases). The body phases go through the range
+// methods of BodyStore, which step plain Rigidbodies on the store's columns.
+public interface StepPhases {
+    // Prepares every force solver of the scene and adds its forces to the bodies' accumulators.
+    void computeForces(Scene scene);
+
+    // Like computeForces, but only adds forces to the bodies at indices targets[0 .. count).
+    // Every body still acts as a source: with rebuild the solvers are prepared from scratch,
+    // otherwise they are only refreshed (ForceSolver.refresh), which is meant for the many small
+    // sub-steps between two rebuilds.
+    void computeForces(Scene scene, int[] targets, int count, boolean rebuild);
+
+    // Body.kick(dt) on every body.
+    void kick(Scene scene, double dt);
+
+    // Body.drift(dt) on every body.
+    void drift(Scene scene, double dt);
+
+    // Body.clearForces() on every body.
+    void clearForces(Scene scene);
+
+    // Body.update(dt) on every body: the combined explicit Euler step.
+    void update(Scene scene, double dt);
+
+    // Body.endStep() on every body.
+    void endStep(Scene scene);
+
+    // Sums terms over every body of the scene into totals (overwritten), e.g. total energy and
+    // momentum. With fixedTree the partials are added along the fixed tree of PairwiseSum, so the
+    // result does not depend on the number of threads. SerialPhases always adds that way.
+    void sum(Scene scene, double[] totals, BodySum terms, boolean fixedTree);
+
+    // sum() with the phases' own default: the fixed tree for SerialPhases, the stepper's
+    // `deterministic` setting for ParallelStepper.
+    default void sum(Scene scene, double[] totals, BodySum terms) {
+        sum(scene, totals, terms, true);
+    }
+
+    // Adds the terms of one body to partial; partial has the length of the totals.
+    interface BodySum {
+        void add(int index, Body body, double[] partial);
+    }
+}
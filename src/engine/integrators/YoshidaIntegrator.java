@@ -0,0 +1,38 @@
+package engine.integrators;
+
+import engine.Scene;
+
+// Fourth-order symplectic integrator from Yoshida (1990): three leapfrog steps with the weights
+// w1, w0, w1, where w0 < 0 steps backwards. Written as drift-kick-drift, so it needs three force
+// evaluations per step and carries no state between steps.
+public class YoshidaIntegrator implements Integrator {
+    private static final double CBRT2 = Math.cbrt(2);
+    private static final double W1 = 1 / (2 - CBRT2);
+    private static final double W0 = -CBRT2 / (2 - CBRT2);
+
+    // Drift coefficients c1..c4 and kick coefficients d1..d3.
+    private static final double[] DRIFT = {W1 / 2, (W0 + W1) / 2, (W0 + W1) / 2, W1 / 2};
+    private static final double[] KICK = {W1, W0, W1};
+
+    @Override
+    public void step(Scene scene, double dt, StepPhases phases) {
+        for (int i = 0; i < KICK.length; i++) {
+            phases.drift(scene, DRIFT[i] * dt);
+            phases.computeForces(scene);
+            phases.kick(scene, KICK[i] * dt);
+            phases.clearForces(scene);
+        }
+        phases.drift(scene, DRIFT[3] * dt);
+        phases.endStep(scene);
+    }
+
+    @Override
+    public int forceEvaluationsPerStep() {
+        return 3;
+    }
+
+    @Override
+    public YoshidaIntegrator copy() {
+        return new YoshidaIntegrator();
+    }
+}
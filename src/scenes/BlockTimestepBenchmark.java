@@ -0,0 +1,136 @@
+package scenes;
+
+import engine.BodyStore;
+import engine.Scene;
+import engine.Simulation;
+import engine.Vector2;
+import engine.bodies.Rigidbody;
+import engine.ensemble.Ensemble;
+import engine.forces.ForceSolver;
+import engine.forces.GravitySolver;
+import engine.integrators.BlockTimestepIntegrator;
+import engine.integrators.LeapfrogIntegrator;
+
+import java.util.SplittableRandom;
+
+import static engine.Constants.GRAVITATIONAL_CONSTANT;
+
+// Two checks of BlockTimestepIntegrator.
+//
+// 1. An eccentric binary (e = 0.9, a = 1 AU) with `field` light bodies on wide orbits around it,
+//    exact gravity, for `periods` binary periods: uniform leapfrog at P / 650 against block
+//    steps with eta = 0.005. Prints the energy drift, body force evaluations and wall time.
+// 2. The same binary inside a Barnes-Hut cluster of `cluster` stars, a few scene steps of block
+//    steps with the tree refitted between rebuilds (the default) and rebuilt on every sub-step,
+//    to show what the refit saves.
+// Usage: BlockTimestepBenchmark [field=300] [periods=50] [cluster=20000] [steps=4]
+public class BlockTimestepBenchmark {
+    private static final double SUN = 1.989e30;
+    private static final double AU = 1.496e11;
+
+    public static void main(String[] args) {
+        int field = args.length > 0 ? Integer.parseInt(args[0]) : 300;
+        int periods = args.length > 1 ? Integer.parseInt(args[1]) : 50;
+        int cluster = args.length > 2 ? Integer.parseInt(args[2]) : 20000;
+        int steps = args.length > 3 ? Integer.parseInt(args[3]) : 4;
+
+        double period = 2 * Math.PI * Math.sqrt(AU * AU * AU / (GRAVITATIONAL_CONSTANT * 2 * SUN));
+
+        Scene uniform = binaryWithField(field, 50 * AU, 100 * AU, 1e-6 * SUN);
+        uniform.addForceSolver(new GravitySolver(GravitySolver.Mode.EXACT));
+        uniform.integrator = new LeapfrogIntegrator();
+        run("uniform leapfrog, P / 650", uniform, period / 650, 650L * periods);
+
+        Scene block = binaryWithField(field, 50 * AU, 100 * AU, 1e-6 * SUN);
+        block.addForceSolver(new GravitySolver(GravitySolver.Mode.EXACT));
+        BlockTimestepIntegrator integrator = new BlockTimestepIntegrator(14);
+        integrator.eta = 0.005;
+        block.integrator = integrator;
+        run("block steps, eta 0.005", block, period / 2, 2L * periods);
+
+        // The cluster's stars sit between 100 AU and 0.05 pc, so the binary sets the finest level.
+        for (boolean refit : new boolean[]{true, false}) {
+            Scene scene = binaryWithField(cluster, 100 * AU, 1e4 * AU, 0.5 * SUN);
+            GravitySolver gravity = new GravitySolver();
+            gravity.softening = AU;
+            scene.addForceSolver(refit ? gravity : rebuildEverySubStep(gravity));
+            BlockTimestepIntegrator blocks = new BlockTimestepIntegrator(14);
+            blocks.eta = 0.005;
+            scene.integrator = blocks;
+            run(cluster + " stars, Barnes-Hut " + (refit ? "refitted between rebuilds" : "rebuilt every sub-step"),
+                    scene, period, steps);
+        }
+    }
+
+    private static void run(String label, Scene scene, double timeStep, long steps) {
+        Simulation simulation = new Simulation(scene);
+        simulation.timeStep = timeStep;
+        double initial = Ensemble.totalEnergy(scene);
+        long start = System.nanoTime();
+        simulation.step(steps);
+        double seconds = (System.nanoTime() - start) / 1e9;
+        double drift = (Ensemble.totalEnergy(scene) - initial) / Math.abs(initial);
+        long evaluations = scene.integrator instanceof BlockTimestepIntegrator
+                ? ((BlockTimestepIntegrator) scene.integrator).bodyForceEvaluations
+                : steps * scene.bodies.size();
+        System.out.printf("%-58s energy drift %.2e, %.3fM body force evaluations, %.2f s%n",
+                label + ":", drift, evaluations / 1e6, seconds);
+        simulation.terminate();
+    }
+
+    // Prepares the solver from scratch on every refresh(), as every sub-step did before refits.
+    private static ForceSolver rebuildEverySubStep(ForceSolver solver) {
+        return new ForceSolver() {
+            @Override
+            public void prepare(BodyStore bodies) {
+                solver.prepare(bodies);
+            }
+
+            @Override
+            public void accumulate(BodyStore bodies, int from, int to) {
+                solver.accumulate(bodies, from, to);
+            }
+
+            @Override
+            public void accumulate(BodyStore bodies, int[] targets, int from, int to) {
+                solver.accumulate(bodies, targets, from, to);
+            }
+
+            @Override
+            public double potentialEnergy(BodyStore bodies) {
+                return solver.potentialEnergy(bodies);
+            }
+
+            @Override
+            public ForceSolver copy() {
+                return rebuildEverySubStep(solver.copy());
+            }
+        };
+    }
+
+    // An eccentric binary of two suns at its apoapsis, and n bodies of the given mass on circular
+    // orbits around it, spread evenly in radius between inner and outer.
+    private static Scene binaryWithField(int n, double inner, double outer, double mass) {
+        Scene scene = new Scene();
+        double e = 0.9;
+        double apoapsis = AU * (1 + e);
+        // Relative speed at apoapsis of an orbit with a = 1 AU and total mass 2 suns.
+        double speed = Math.sqrt(GRAVITATIONAL_CONSTANT * 2 * SUN * (1 - e) / apoapsis);
+        scene.add(body(SUN, 0.5 * apoapsis, 0, 0, 0.5 * speed));
+        scene.add(body(SUN, -0.5 * apoapsis, 0, 0, -0.5 * speed));
+        SplittableRandom random = new SplittableRandom(3);
+        for (int i = 0; i < n; i++) {
+            double r = inner + (outer - inner) * random.nextDouble();
+            double angle = 2 * Math.PI * random.nextDouble();
+            double v = Math.sqrt(GRAVITATIONAL_CONSTANT * 2 * SUN / r);
+            scene.add(body(mass, r * Math.cos(angle), r * Math.sin(angle), -v * Math.sin(angle), v * Math.cos(angle)));
+        }
+        return scene;
+    }
+
+    private static Rigidbody body(double mass, double x, double y, double vx, double vy) {
+        Vector2 velocity = new Vector2(vx, vy);
+        return new Rigidbody(mass, velocity, velocity.mul(mass), new Vector2(x, y),
+                new Vector2(0, 0), new Vector2(0, 0), 0, 0, 0, null, null, null);
+    }
+}
@@ -0,0 +1,178 @@
+package scenes;
+
+import engine.Simulation;
+import engine.Scene;
+import engine.Vector2;
+import engine.bodies.Body;
+import engine.bodies.Rigidbody;
+import engine.collision.AllPairsBroadphase;
+import engine.collision.Broadphase;
+import engine.collision.CollisionStage;
+import engine.collision.PairList;
+import engine.collision.SpatialHashBroadphase;
+import engine.collision.SweepAndPruneBroadphase;
+
+import java.util.HashSet;
+import java.util.Set;
+import java.util.SplittableRandom;
+
+// Times the collision broadphases on a random field of discs and checks that they find the same
+// pairs as the all-pairs reference, on a static field and on one that drifts a little every step
+// (where sweep and prune can reuse its order). Then fires two rocks at each other fast enough to
+// pass through one another within a step, with and without continuous detection, and lets a
+// cloud of rocks accrete with CollisionStage.Response.MERGE, printing the totals before and after.
+// Usage: CollisionBenchmark [bodies=100000] [bodies for the all-pairs check=5000] [steps=20]
+public class CollisionBenchmark {
+    public static void main(String[] args) {
+        int n = args.length > 0 ? Integer.parseInt(args[0]) : 100000;
+        int checked = args.length > 1 ? Integer.parseInt(args[1]) : 5000;
+        int steps = args.length > 2 ? Integer.parseInt(args[2]) : 20;
+
+        compare(new SpatialHashBroadphase(), checked, steps);
+        compare(new SweepAndPruneBroadphase(), checked, steps);
+        time(new SpatialHashBroadphase(), n, steps);
+        time(new SweepAndPruneBroadphase(), n, steps);
+        tunnel(false);
+        tunnel(true);
+        accrete(2000);
+    }
+
+    // Discs of 1-10 km spread so that each touches about one other on average.
+    private static double[][] field(int n, SplittableRandom random) {
+        double side = 2e4 * Math.sqrt(n);
+        double[][] field = new double[3][n];
+        for (int i = 0; i < n; i++) {
+            field[0][i] = side * random.nextDouble();
+            field[1][i] = side * random.nextDouble();
+            field[2][i] = 1e3 + 9e3 * random.nextDouble();
+        }
+        return field;
+    }
+
+    // Moves every disc by up to 50 m, about 1% of the mean radius.
+    private static void drift(double[][] field, SplittableRandom random) {
+        for (int i = 0; i < field[0].length; i++) {
+            field[0][i] += 100 * (random.nextDouble() - 0.5);
+            field[1][i] += 100 * (random.nextDouble() - 0.5);
+        }
+    }
+
+    private static void compare(Broadphase broadphase, int n, int steps) {
+        double[][] field = field(n, new SplittableRandom(1));
+        SplittableRandom random = new SplittableRandom(4);
+        PairList expected = new PairList();
+        PairList found = new PairList();
+        boolean same = true;
+        for (int step = 0; step <= steps; step++) {
+            expected.clear();
+            found.clear();
+            new AllPairsBroadphase().findPairs(field[0], field[1], field[2], n, expected);
+            broadphase.findPairs(field[0], field[1], field[2], n, found);
+            same &= keys(expected).equals(keys(found));
+            drift(field, random);
+        }
+        System.out.printf("%s, %d bodies, %d steps: last step %d pairs (all-pairs %d), same sets: %b%n",
+                broadphase.getClass().getSimpleName(), n, steps, found.count, expected.count, same);
+    }
+
+    private static Set<Long> keys(PairList pairs) {
+        Set<Long> keys = new HashSet<>();
+        for (int k = 0; k < pairs.count; k++) {
+            keys.add(((long) pairs.first[k] << 32) | pairs.second[k]);
+        }
+        return keys;
+    }
+
+    // First call (a full build for sweep and prune) and the average of the drifting steps after it.
+    private static void time(Broadphase broadphase, int n, int steps) {
+        double[][] field = field(n, new SplittableRandom(2));
+        SplittableRandom random = new SplittableRandom(5);
+        PairList pairs = new PairList();
+        long start = System.nanoTime();
+        broadphase.findPairs(field[0], field[1], field[2], n, pairs);
+        long first = System.nanoTime() - start;
+        long total = 0;
+        long swaps = 0, updates = 0;
+        for (int step = 0; step < steps; step++) {
+            drift(field, random);
+            pairs.clear();
+            start = System.nanoTime();
+            broadphase.findPairs(field[0], field[1], field[2], n, pairs);
+            total += System.nanoTime() - start;
+            if (broadphase instanceof SweepAndPruneBroadphase) {
+                swaps += ((SweepAndPruneBroadphase) broadphase).lastSwaps;
+                updates += ((SweepAndPruneBroadphase) broadphase).lastPairUpdates;
+            }
+        }
+        System.out.printf("%s, %d bodies: %d pairs, first call %.2f ms, then %.2f ms per step", broadphase.getClass().getSimpleName(),
+                n, pairs.count, first / 1e6, total / 1e6 / steps);
+        if (broadphase instanceof SweepAndPruneBroadphase) {
+            System.out.printf(" (%d swaps, %d pair updates per step)", swaps / steps, updates / steps);
+        }
+        System.out.println();
+    }
+
+    // Two 1 km rocks closing at 200 km/s, 2 s steps: 400 km per step against a 2 km contact distance.
+    private static void tunnel(boolean continuous) {
+        Scene scene = new Scene();
+        for (int side = -1; side <= 1; side += 2) {
+            Rigidbody rock = new Rigidbody("1e3");
+            rock.setInitialPosition(new Vector2(side * 1.3e5, 0));
+            Vector2 velocity = new Vector2(-side * 1e5, 0);
+            rock.setInitialVelocity(velocity);
+            rock.setInitialMomentum(velocity.mul(rock.getMass()));
+            rock.radius = 1e3;
+            scene.add(rock);
+        }
+        scene.collisions = new CollisionStage(CollisionStage.Response.ELASTIC);
+        scene.collisions.continuous = continuous;
+
+        double[] before = totals(scene);
+        Simulation simulation = new Simulation(scene);
+        simulation.timeStep = 2;
+        int contacts = 0;
+        for (int step = 0; step < 3; step++) {
+            simulation.step(1);
+            contacts += scene.collisions.lastContacts;
+        }
+        double[] after = totals(scene);
+        Body left = scene.bodies.get(0);
+        System.out.printf("Head-on at 200 km/s, continuous %b: %d contacts, left rock at x = %.0f m moving %.0f m/s%n",
+                continuous, contacts, left.getPos().get(0), left.getVel().get(0));
+        System.out.printf("  momentum (%.6e, %.6e) -> (%.6e, %.6e) kg m/s%n", before[0], before[1], after[0], after[1]);
+    }
+
+    private static void accrete(int n) {
+        SplittableRandom random = new SplittableRandom(3);
+        Scene scene = new Scene();
+        for (int i = 0; i < n; i++) {
+            Rigidbody rock = new Rigidbody(String.valueOf(1e15 * (1 + random.nextDouble())));
+            rock.setInitialPosition(new Vector2(1e6 * random.nextDouble(), 1e6 * random.nextDouble()));
+            Vector2 velocity = new Vector2(100 * random.nextGaussian(), 100 * random.nextGaussian());
+            rock.setInitialVelocity(velocity);
+            rock.setInitialMomentum(velocity.mul(rock.getMass()));
+            rock.radius = 2e3;
+            scene.add(rock);
+        }
+        scene.collisions = new CollisionStage(CollisionStage.Response.MERGE);
+
+        double[] before = totals(scene);
+        Simulation simulation = new Simulation(scene);
+        simulation.timeStep = 10;
+        simulation.step(1000);
+        double[] after = totals(scene);
+        System.out.printf("Accretion: %d -> %d bodies, %d merges%n", n, scene.bodies.size(), scene.collisions.merges);
+        System.out.printf("  momentum (%.6e, %.6e) -> (%.6e, %.6e) kg m/s%n", before[0], before[1], after[0], after[1]);
+        System.out.printf("  mass %.9e -> %.9e kg%n", before[2], after[2]);
+    }
+
+    private static double[] totals(Scene scene) {
+        double[] totals = new double[3];
+        for (Body body : scene.bodies) {
+            totals[0] += body.getMomentum().get(0);
+            totals[1] += body.getMomentum().get(1);
+            totals[2] += body.getMass();
+        }
+        return totals;
+    }
+}
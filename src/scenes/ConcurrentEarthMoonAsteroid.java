@@ -0,0 +1,74 @@
+package scenes;
+
+import engine.Scene;
+import engine.Simulation;
+import engine.Vector2;
+import engine.bodies.Rigidbody;
+import engine.forces.GravitySolver;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static engine.Constants.*;
+
+// Runs many independent Earth-Moon-asteroid scenes side by side in one JVM, each in its own
+// Simulation. Scene k launches the asteroid at 25 km/s + k * 100 m/s.
+// Usage: ConcurrentEarthMoonAsteroid [scenes=32] [simulated seconds=JULIAN_YEAR] [time step=60] [threads=cores]
+public class ConcurrentEarthMoonAsteroid {
+    public static void main(String[] args) throws Exception {
+        int sceneCount = args.length > 0 ? Integer.parseInt(args[0]) : 32;
+        double simTime = args.length > 1 ? Double.parseDouble(args[1]) : JULIAN_YEAR;
+        double timeStep = args.length > 2 ? Double.parseDouble(args[2]) : 60d;
+        int threads = args.length > 3 ? Integer.parseInt(args[3]) : Runtime.getRuntime().availableProcessors();
+
+        List<Simulation> simulations = new ArrayList<>();
+        for (int k = 0; k < sceneCount; k++) {
+            Simulation simulation = new Simulation(buildScene(25000 + 100 * k));
+            simulation.timeStep = timeStep;
+            simulations.add(simulation);
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        long start = System.nanoTime();
+        List<Future<Long>> results = new ArrayList<>();
+        for (Simulation simulation : simulations) {
+            results.add(executor.submit(() -> simulation.runUntil(simTime)));
+        }
+        long steps = 0;
+        for (Future<Long> result : results) {
+            steps += result.get();
+        }
+        double seconds = (System.nanoTime() - start) / 1e9;
+        executor.shutdown();
+
+        for (int k = 0; k < sceneCount; k++) {
+            Scene scene = simulations.get(k).scene;
+            System.out.println("Scene " + k + " asteroid position: " + scene.bodies.get(2).getPos());
+        }
+        System.out.println("Simulated " + sceneCount + " scenes for " + simTime + " s, " + steps + " steps in total");
+        System.out.printf("Wall time: %.3f s, %.0f steps/s on %d threads%n", seconds, steps / seconds, threads);
+    }
+
+    private static Scene buildScene(double asteroidSpeed) {
+        Rigidbody earth = body("Earth", EARTH_MASS, new Vector2(0, 0), new Vector2(0, 0));
+        Rigidbody moon = body("Moon", MOON_MASS, new Vector2(384400000, 0), new Vector2(0, 1022));
+        Rigidbody asteroid = body("Asteroid", 1e12, new Vector2(1e9, 0), new Vector2(0, asteroidSpeed));
+
+        Scene scene = new Scene();
+        scene.add(earth);
+        scene.add(moon);
+        scene.add(asteroid);
+        // Solvers keep per-step scratch, so every scene gets its own.
+        scene.addForceSolver(new GravitySolver(GravitySolver.Mode.EXACT));
+        return scene;
+    }
+
+    private static Rigidbody body(String name, double mass, Vector2 position, Vector2 velocity) {
+        Rigidbody body = new Rigidbody(mass, velocity, velocity.mul(mass), position, new Vector2(0, 0), new Vector2(0, 0), 0, 0, 0, null, null, null);
+        body.name = name;
+        return body;
+    }
+}
@@ -0,0 +1,113 @@
+package scenes;
+
+import engine.ConservationMonitor;
+import engine.Scene;
+import engine.Simulation;
+import engine.Vector2;
+import engine.bodies.Rigidbody;
+import engine.forces.FmmSolver;
+import engine.forces.ForceSolver;
+import engine.forces.GravitySolver;
+import engine.integrators.LeapfrogIntegrator;
+import engine.integrators.SerialPhases;
+
+import java.util.SplittableRandom;
+
+import static engine.Constants.GRAVITATIONAL_CONSTANT;
+
+// Checks the ConservationMonitor on a star cluster. First, for Barnes-Hut (with and without the
+// quadrupole) and the FMM, the sampled potential energy against the exact O(N²) sum, with the
+// time of each. Then a leapfrog run with the monitor sampling every `interval` steps on the given
+// threads, printing the time per step without and with the monitor and the drifts at the end.
+// Usage: ConservationBenchmark [bodies=20000] [steps=200] [interval=20] [threads=4]
+public class ConservationBenchmark {
+    public static void main(String[] args) {
+        int n = args.length > 0 ? Integer.parseInt(args[0]) : 20000;
+        int steps = args.length > 1 ? Integer.parseInt(args[1]) : 200;
+        int interval = args.length > 2 ? Integer.parseInt(args[2]) : 20;
+        int threads = args.length > 3 ? Integer.parseInt(args[3]) : 4;
+
+        GravitySolver quadrupole = gravity();
+        quadrupole.quadrupole = true;
+        ForceSolver[] solvers = {gravity(), quadrupole, fmm()};
+        String[] names = {"Barnes-Hut", "Barnes-Hut + quadrupole", "FMM order 4"};
+        for (int s = 0; s < solvers.length; s++) {
+            Scene scene = cluster(n);
+            scene.addForceSolver(solvers[s]);
+            long start = System.nanoTime();
+            double exact = solvers[s].potentialEnergy(scene.bodies);
+            double exactMillis = (System.nanoTime() - start) / 1e6;
+            ConservationMonitor monitor = new ConservationMonitor();
+            // One untimed sample to warm up.
+            monitor.sample(scene, SerialPhases.INSTANCE, true, 0, 0);
+            start = System.nanoTime();
+            monitor.sample(scene, SerialPhases.INSTANCE, true, 0, 0);
+            double sampleMillis = (System.nanoTime() - start) / 1e6;
+            System.out.printf("%-24s potential %.9e J, exact %.9e J, relative error %.2e; sample %.1f ms, exact sum %.1f ms%n",
+                    names[s], monitor.latest.potentialEnergy, exact, Math.abs(monitor.latest.potentialEnergy / exact - 1),
+                    sampleMillis, exactMillis);
+        }
+
+        // An untimed run first, so neither timed run pays for the JIT.
+        run(n, steps / 4, interval, threads, false);
+        double plain = run(n, steps, interval, threads, false);
+        double monitored = run(n, steps, interval, threads, true);
+        System.out.printf("monitor every %d steps costs %.1f%% of the step time%n", interval, 100 * (monitored / plain - 1));
+    }
+
+    private static double run(int n, int steps, int interval, int threads, boolean monitored) {
+        Scene scene = cluster(n);
+        scene.addForceSolver(gravity());
+        scene.integrator = new LeapfrogIntegrator();
+        if (monitored) {
+            scene.conservation = new ConservationMonitor();
+            scene.conservation.interval = interval;
+        }
+        Simulation simulation = new Simulation(scene);
+        simulation.setThreadCount(threads);
+        simulation.timeStep = 3.15e8;
+        long start = System.nanoTime();
+        simulation.step(steps);
+        double millis = (System.nanoTime() - start) / 1e6 / steps;
+        simulation.terminate();
+        System.out.printf("%d bodies, %d threads, monitor %s: %.2f ms per step", n, threads, monitored ? "on" : "off", millis);
+        if (monitored) {
+            ConservationMonitor.Sample sample = scene.conservation.latest;
+            System.out.printf(", %d samples; at step %d energy drift %.3e, momentum drift %.3e, angular momentum drift %.3e",
+                    scene.conservation.samples, sample.step, sample.energyDrift, sample.momentumDrift, sample.angularMomentumDrift);
+        }
+        System.out.println();
+        return millis;
+    }
+
+    private static GravitySolver gravity() {
+        GravitySolver gravity = new GravitySolver();
+        gravity.softening = 1e13;
+        return gravity;
+    }
+
+    private static FmmSolver fmm() {
+        FmmSolver fmm = new FmmSolver(FmmSolver.Kernel.GRAVITY, 4);
+        fmm.softening = 1e13;
+        return fmm;
+    }
+
+    // Stars of random mass in a disc of 1 light-year on roughly circular orbits, denser towards
+    // the center.
+    private static Scene cluster(int n) {
+        SplittableRandom random = new SplittableRandom(11);
+        Scene scene = new Scene();
+        for (int i = 0; i < n; i++) {
+            double mass = 1.989e30 * (0.1 + 2 * random.nextDouble());
+            double r = 9.46e15 * Math.pow(random.nextDouble(), 1.5) + 1e13;
+            double angle = 2 * Math.PI * random.nextDouble();
+            // Circular speed around the mass inside r; a fraction (r / R)^(2/3) of the stars is.
+            double inside = 1.1 * 1.989e30 * n * Math.pow(r / 9.46e15, 2 / 3.0);
+            double speed = Math.sqrt(GRAVITATIONAL_CONSTANT * inside / r);
+            Vector2 velocity = new Vector2(-speed * Math.sin(angle), speed * Math.cos(angle));
+            scene.add(new Rigidbody(mass, velocity, velocity.mul(mass), new Vector2(r * Math.cos(angle), r * Math.sin(angle)),
+                    new Vector2(0, 0), new Vector2(0, 0), 0, 0, 0, null, null, null));
+        }
+        return scene;
+    }
+}
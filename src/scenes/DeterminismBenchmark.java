@@ -0,0 +1,140 @@
+package scenes;
+
+import engine.Scene;
+import engine.Simulation;
+import engine.Vector;
+import engine.Vector2;
+import engine.bodies.Body;
+import engine.bodies.Rigidbody;
+import engine.forces.GravitySolver;
+import engine.integrators.LeapfrogIntegrator;
+import engine.integrators.StepPhases;
+
+import java.util.Arrays;
+import java.util.SplittableRandom;
+
+import static engine.Constants.*;
+
+// Steps the same star cluster (Barnes-Hut gravity, leapfrog) with 1, 2, 3, 4 and 8 threads in
+// deterministic mode, and checks that every position and the kinetic energy and momentum sums
+// come out bit for bit the same as on one thread. Then sums the same terms over a large field
+// with every thread count in both modes, to show where the fast path drifts in the last bits,
+// and times one sum in each mode.
+// Usage: DeterminismBenchmark [bodies=20000] [steps=20] [field=1000000] [repetitions=20]
+public class DeterminismBenchmark {
+    private static final int[] THREADS = {1, 2, 3, 4, 8};
+
+    // Kinetic energy, then both momentum components.
+    private static final StepPhases.BodySum TOTALS = (index, body, partial) -> {
+        double m = body.getMass();
+        Vector v = body.getVel();
+        double vx = v.get(0), vy = v.get(1);
+        partial[0] += 0.5 * m * (vx * vx + vy * vy);
+        partial[1] += m * vx;
+        partial[2] += m * vy;
+    };
+
+    public static void main(String[] args) {
+        int n = args.length > 0 ? Integer.parseInt(args[0]) : 20000;
+        int steps = args.length > 1 ? Integer.parseInt(args[1]) : 20;
+        int field = args.length > 2 ? Integer.parseInt(args[2]) : 1000000;
+        int repetitions = args.length > 3 ? Integer.parseInt(args[3]) : 20;
+
+        double[] reference = null;
+        double[] referenceTotals = null;
+        for (int threads : THREADS) {
+            Simulation simulation = new Simulation(cluster(n));
+            simulation.setThreadCount(threads);
+            simulation.setDeterministic(true);
+            simulation.timeStep = 3.15e8;
+            long start = System.nanoTime();
+            simulation.step(steps);
+            double millis = (System.nanoTime() - start) / 1e6 / steps;
+            double[] totals = new double[3];
+            simulation.sum(totals, TOTALS);
+            double[] positions = positions(simulation.scene);
+            simulation.terminate();
+            if (reference == null) {
+                reference = positions;
+                referenceTotals = totals;
+            }
+            System.out.printf("%d threads, deterministic: %.2f ms per step, %d of %d coordinates differ, totals %s%n",
+                    threads, millis, differences(positions, reference), positions.length,
+                    Arrays.equals(totals, referenceTotals) ? "identical" : "DIFFER");
+        }
+
+        Scene scene = cluster(field);
+        for (boolean deterministic : new boolean[]{true, false}) {
+            double[] first = null;
+            int differing = 0;
+            double best = Double.MAX_VALUE;
+            for (int threads : THREADS) {
+                Simulation simulation = new Simulation(scene);
+                simulation.setThreadCount(threads);
+                simulation.setDeterministic(deterministic);
+                double[] totals = new double[3];
+                for (int r = 0; r < repetitions; r++) {
+                    long start = System.nanoTime();
+                    simulation.sum(totals, TOTALS);
+                    if (threads == THREADS[THREADS.length - 1]) {
+                        best = Math.min(best, (System.nanoTime() - start) / 1e6);
+                    }
+                }
+                simulation.terminate();
+                if (first == null) {
+                    first = totals.clone();
+                } else if (!Arrays.equals(totals, first)) {
+                    differing++;
+                }
+            }
+            System.out.printf("%d bodies, %s sums: %d of %d thread counts differ from one thread, %.3f ms per sum on %d threads%n",
+                    field, deterministic ? "deterministic" : "fast", differing, THREADS.length - 1, best,
+                    THREADS[THREADS.length - 1]);
+        }
+    }
+
+    // Stars of random mass in a disc of 1 light-year on roughly circular orbits, denser towards
+    // the center.
+    private static Scene cluster(int n) {
+        SplittableRandom random = new SplittableRandom(7);
+        Scene scene = new Scene();
+        scene.integrator = new LeapfrogIntegrator();
+        GravitySolver gravity = new GravitySolver();
+        gravity.softening = 1e13;
+        gravity.kernelMode = GravitySolver.simdAvailable() ? GravitySolver.KernelMode.SIMD : GravitySolver.KernelMode.SCALAR;
+        scene.addForceSolver(gravity);
+        for (int i = 0; i < n; i++) {
+            double mass = 1.989e30 * (0.1 + 2 * random.nextDouble());
+            double r = 9.46e15 * Math.pow(random.nextDouble(), 1.5) + 1e13;
+            double angle = 2 * Math.PI * random.nextDouble();
+            // Circular speed around the mass inside r; a fraction (r / R)^(2/3) of the stars is.
+            double inside = 1.1 * 1.989e30 * n * Math.pow(r / 9.46e15, 2 / 3.0);
+            double speed = Math.sqrt(GRAVITATIONAL_CONSTANT * inside / r);
+            Vector2 velocity = new Vector2(-speed * Math.sin(angle), speed * Math.cos(angle));
+            // The mass in kilograms; the String constructor would read it in solar masses.
+            scene.add(new Rigidbody(mass, velocity, velocity.mul(mass), new Vector2(r * Math.cos(angle), r * Math.sin(angle)),
+                    new Vector2(0, 0), new Vector2(0, 0), 0, 0, 0, null, null, null));
+        }
+        return scene;
+    }
+
+    private static double[] positions(Scene scene) {
+        double[] positions = new double[2 * scene.bodies.size()];
+        for (int i = 0; i < scene.bodies.size(); i++) {
+            Body body = scene.bodies.get(i);
+            positions[2 * i] = body.getPos().get(0);
+            positions[2 * i + 1] = body.getPos().get(1);
+        }
+        return positions;
+    }
+
+    private static int differences(double[] a, double[] b) {
+        int count = 0;
+        for (int i = 0; i < a.length; i++) {
+            if (Double.doubleToRawLongBits(a[i]) != Double.doubleToRawLongBits(b[i])) {
+                count++;
+            }
+        }
+        return count;
+    }
+}
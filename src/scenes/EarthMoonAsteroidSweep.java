@@ -0,0 +1,48 @@
+package scenes;
+
+import engine.Scene;
+import engine.Vector2;
+import engine.bodies.Bodies;
+import engine.bodies.Rigidbody;
+import engine.ensemble.CsvResultSink;
+import engine.ensemble.Ensemble;
+import engine.forces.GravitySolver;
+
+// Monte Carlo sweep over the Earth-Moon-asteroid scene: every member launches the asteroid with
+// a Gaussian perturbation of its velocity and steps with 30, 60 or 120 s. Prints one CSV line per member.
+// Usage: EarthMoonAsteroidSweep [members=1000] [simulated seconds=30 days] [velocity sigma m/s=100] [threads=0 (virtual)]
+public class EarthMoonAsteroidSweep {
+    private static final double[] TIME_STEPS = {30, 60, 120};
+
+    public static void main(String[] args) throws InterruptedException {
+        int members = args.length > 0 ? Integer.parseInt(args[0]) : 1000;
+        double simTime = args.length > 1 ? Double.parseDouble(args[1]) : 30 * 86400d;
+        double sigma = args.length > 2 ? Double.parseDouble(args[2]) : 100d;
+        int threads = args.length > 3 ? Integer.parseInt(args[3]) : 0;
+
+        // The static templates form the read-only template scene; members run on copies.
+        Scene template = new Scene();
+        for (Rigidbody body : new Rigidbody[]{Bodies.earth, Bodies.moon, Bodies.asteroid}) {
+            body.setInitialMomentum(body.getVel().mul(body.getMass()));
+            template.add(body);
+        }
+        Bodies.earth.name = "Earth";
+        Bodies.moon.name = "Moon";
+        Bodies.asteroid.name = "Asteroid";
+        template.addForceSolver(new GravitySolver(GravitySolver.Mode.EXACT));
+
+        Ensemble ensemble = new Ensemble(template, (member, random, simulation) -> {
+            Rigidbody asteroid = (Rigidbody) simulation.scene.bodies.get(2);
+            Vector2 velocity = new Vector2(asteroid.getVel().get(0) + sigma * random.nextGaussian(), asteroid.getVel().get(1) + sigma * random.nextGaussian());
+            asteroid.setInitialVelocity(velocity);
+            asteroid.setInitialMomentum(velocity.mul(asteroid.getMass()));
+            simulation.timeStep = TIME_STEPS[member % TIME_STEPS.length];
+        });
+        ensemble.parallelism = threads;
+        ensemble.seed = 42L;
+
+        long start = System.nanoTime();
+        ensemble.run(members, simTime, new CsvResultSink(System.out, template.bodies.size()));
+        System.err.printf("%d members in %.3f s%n", members, (System.nanoTime() - start) / 1e9);
+    }
+}
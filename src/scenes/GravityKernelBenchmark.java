@@ -0,0 +1,92 @@
+package scenes;
+
+import engine.BodyStore;
+import engine.Vector2;
+import engine.bodies.Rigidbody;
+import engine.forces.GravitySolver;
+
+import java.util.SplittableRandom;
+
+// Times one force evaluation of a random star cluster for every GravitySolver kernel, in EXACT
+// and BARNES_HUT mode, and reports the largest acceleration error relative to the scalar kernel.
+// Run with --add-modules jdk.incubator.vector, otherwise the SIMD rows fall back to scalar.
+// Usage: GravityKernelBenchmark [bodies=20000] [repetitions=5] [leaf capacity=16]
+public class GravityKernelBenchmark {
+    public static void main(String[] args) {
+        int n = args.length > 0 ? Integer.parseInt(args[0]) : 20000;
+        int repetitions = args.length > 1 ? Integer.parseInt(args[1]) : 5;
+        int leafCapacity = args.length > 2 ? Integer.parseInt(args[2]) : 16;
+
+        BodyStore bodies = cluster(n, new SplittableRandom(7));
+        System.out.println("SIMD available: " + GravitySolver.simdAvailable());
+        System.out.println("mode        kernel      ms/eval    Mpairs/s  max rel err");
+        for (GravitySolver.Mode mode : GravitySolver.Mode.values()) {
+            double[] reference = null;
+            for (GravitySolver.KernelMode kernel : GravitySolver.KernelMode.values()) {
+                GravitySolver solver = new GravitySolver(mode);
+                solver.kernelMode = kernel;
+                solver.leafCapacity = leafCapacity;
+                solver.softening = 1e9;
+
+                // One untimed evaluation to warm up, then the best of the repetitions.
+                evaluate(solver, bodies);
+                long best = Long.MAX_VALUE;
+                for (int r = 0; r < repetitions; r++) {
+                    long start = System.nanoTime();
+                    evaluate(solver, bodies);
+                    best = Math.min(best, System.nanoTime() - start);
+                }
+
+                double[] forces = forces(bodies);
+                if (reference == null) {
+                    reference = forces;
+                }
+                double pairs = mode == GravitySolver.Mode.EXACT ? (double) n * n : Double.NaN;
+                System.out.printf("%-11s %-11s %8.2f %11.1f  %.3e%n", mode, kernel, best / 1e6,
+                        pairs / (best / 1e9) / 1e6, maxRelativeError(forces, reference));
+            }
+        }
+    }
+
+    // Equal-mass bodies in a disc of 1 light-year, denser towards the center.
+    private static BodyStore cluster(int n, SplittableRandom random) {
+        BodyStore bodies = new BodyStore(n);
+        for (int i = 0; i < n; i++) {
+            double r = 9.46e15 * Math.pow(random.nextDouble(), 1.5);
+            double angle = 2 * Math.PI * random.nextDouble();
+            Rigidbody star = new Rigidbody("1.989e30");
+            star.setInitialPosition(new Vector2(r * Math.cos(angle), r * Math.sin(angle)));
+            bodies.add(star);
+        }
+        return bodies;
+    }
+
+    private static void evaluate(GravitySolver solver, BodyStore bodies) {
+        bodies.clearForces(0, bodies.size());
+        solver.prepare(bodies);
+        solver.accumulate(bodies, 0, bodies.size());
+    }
+
+    private static double[] forces(BodyStore bodies) {
+        double[] forces = new double[2 * bodies.size()];
+        for (int i = 0; i < bodies.size(); i++) {
+            Rigidbody body = (Rigidbody) bodies.get(i);
+            forces[2 * i] = body.sumOfForces.get(0);
+            forces[2 * i + 1] = body.sumOfForces.get(1);
+        }
+        return forces;
+    }
+
+    private static double maxRelativeError(double[] forces, double[] reference) {
+        double worst = 0;
+        for (int i = 0; i < forces.length; i += 2) {
+            double dx = forces[i] - reference[i];
+            double dy = forces[i + 1] - reference[i + 1];
+            double magnitude = Math.hypot(reference[i], reference[i + 1]);
+            if (magnitude > 0) {
+                worst = Math.max(worst, Math.hypot(dx, dy) / magnitude);
+            }
+        }
+        return worst;
+    }
+}
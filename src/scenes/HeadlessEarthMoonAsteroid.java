@@ -0,0 +1,82 @@
+package scenes;
+
+import engine.Engine;
+import engine.Scene;
+import engine.bodies.Bodies;
+import engine.bodies.Rigidbody;
+import engine.ensemble.Ensemble;
+import engine.forces.GravitySolver;
+import engine.integrators.BlockTimestepIntegrator;
+import engine.integrators.DormandPrinceIntegrator;
+import engine.integrators.EulerIntegrator;
+import engine.integrators.Integrator;
+import engine.integrators.LeapfrogIntegrator;
+import engine.integrators.YoshidaIntegrator;
+
+import static engine.Constants.JULIAN_YEAR;
+
+// Runs the Earth, Moon and asteroid under mutual gravity without a UI, as fast as possible.
+// Usage: HeadlessEarthMoonAsteroid [simulated seconds] [time step in seconds] [threads] [euler|leapfrog|yoshida|block|rk45]
+public class HeadlessEarthMoonAsteroid {
+    public static void main(String[] args) {
+        double simTime = args.length > 0 ? Double.parseDouble(args[0]) : JULIAN_YEAR;
+        double timeStep = args.length > 1 ? Double.parseDouble(args[1]) : 60d;
+        int threads = args.length > 2 ? Integer.parseInt(args[2]) : 1;
+        String integrator = args.length > 3 ? args[3] : "euler";
+
+        Scene scene = new Scene();
+        for (Rigidbody body : new Rigidbody[]{Bodies.earth, Bodies.moon, Bodies.asteroid}) {
+            // The templates only set a velocity; start with the matching momentum.
+            body.setInitialMomentum(body.getVel().mul(body.getMass()));
+            scene.add(body);
+        }
+        Bodies.earth.name = "Earth";
+        Bodies.moon.name = "Moon";
+        Bodies.asteroid.name = "Asteroid";
+        scene.addForceSolver(new GravitySolver(GravitySolver.Mode.EXACT));
+        scene.timeStep = timeStep;
+        scene.integrator = integrator(integrator);
+
+        Engine.TIME_STEP = timeStep;
+        Engine.setThreadCount(threads);
+        Engine.load(scene);
+
+        double initialEnergy = Ensemble.totalEnergy(scene);
+        long start = System.nanoTime();
+        long steps = Engine.runUntil(simTime);
+        double seconds = (System.nanoTime() - start) / 1e9;
+        double finalEnergy = Ensemble.totalEnergy(scene);
+
+        for (int i = 0; i < scene.bodies.size(); i++) {
+            System.out.println(scene.bodies.get(i).getName() + " position: " + scene.bodies.get(i).getPos());
+        }
+        System.out.println("Simulated " + Engine.uptime + " s in " + steps + " steps");
+        System.out.printf("Wall time: %.3f s, %.0f steps/s%n", seconds, steps / seconds);
+        System.out.println("Relative energy drift (" + integrator + "): " + (finalEnergy - initialEnergy) / Math.abs(initialEnergy));
+        if (scene.integrator instanceof DormandPrinceIntegrator) {
+            DormandPrinceIntegrator rk = (DormandPrinceIntegrator) scene.integrator;
+            System.out.println("Accepted steps: " + rk.acceptedSteps + ", rejected: " + rk.rejectedSteps + ", force evaluations: " + rk.forceEvaluations);
+        } else {
+            // Fixed-step integrators evaluate forces a set number of times per step.
+            System.out.println("Force evaluations: " + steps * scene.integrator.forceEvaluationsPerStep());
+        }
+        Engine.terminate();
+    }
+
+    private static Integrator integrator(String name) {
+        switch (name) {
+            case "euler":
+                return new EulerIntegrator();
+            case "leapfrog":
+                return new LeapfrogIntegrator();
+            case "yoshida":
+                return new YoshidaIntegrator();
+            case "block":
+                return new BlockTimestepIntegrator();
+            case "rk45":
+                return new DormandPrinceIntegrator();
+            default:
+                throw new IllegalArgumentException("Unknown integrator: " + name + " (expected euler, leapfrog, yoshida, block or rk45)");
+        }
+    }
+}
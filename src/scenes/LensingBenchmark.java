@@ -0,0 +1,142 @@
+package scenes;
+
+import engine.LensingStage;
+import engine.Scene;
+import engine.Simulation;
+import engine.Vector2;
+import engine.bodies.PhotonBeam;
+import engine.bodies.Rigidbody;
+
+import java.util.Arrays;
+
+import static engine.Constants.*;
+
+// Sends a beam of parallel photons past a black hole of Sagittarius A*'s mass, with impact
+// parameters from 1 to 3000 Schwarzschild radii, three times: straight, with the LensingStage's
+// tables, and with every photon integrated directly (the reference). The photons below the
+// stage's strongImpactParameter (β < 10, about 29 % of them) are integrated directly in both
+// lensed runs, so they are sent as a separate beam and timed on their own; the remaining ones
+// show what the tables save. Prints the time per step of each part, how many photons were
+// captured, the largest direction and position differences between the tabulated and the
+// integrated photons, and the final deflection of a few photons against the closed-form
+// weak-field series 2/β + 15π/(16β²) + 16/(3β³).
+// The default 50 steps are long ones, 120 r_s each, as an interactive view of the lens would take.
+// Usage: LensingBenchmark [photons=200000] [steps=50]
+public class LensingBenchmark {
+    // Photon i has wavelength BASE + i * STRIDE, so it can be found again after captures.
+    private static final double BASE = 5e-7;
+    private static final double STRIDE = 1e-13;
+    private static final double START = 3000;
+
+    public static void main(String[] args) {
+        int n = args.length > 0 ? Integer.parseInt(args[0]) : 200000;
+        int steps = args.length > 1 ? Integer.parseInt(args[1]) : 50;
+
+        double rs = 2 * GRAVITATIONAL_CONSTANT * SAGITTARIUS_A_MASS / (SPEED_OF_LIGHT * SPEED_OF_LIGHT);
+        // Photons [0, strong) have β below strongImpactParameter.
+        int strong = (int) Math.ceil(n * Math.log(new LensingStage().strongImpactParameter) / Math.log(START));
+        double straight = run("all photons", 0, n, n, steps, rs, null, null);
+        // Untimed runs first, so no timed run pays for the JIT.
+        run(null, 0, n, n, Math.max(1, steps / 10), rs, new LensingStage(), null);
+        run(null, 0, n, n, Math.max(1, steps / 10), rs, integrated(), null);
+
+        LensingStage tabulatedStrong = new LensingStage();
+        LensingStage integratedStrong = integrated();
+        double strongTables = run("strong field (beta < 10)", 0, strong, n, steps, rs, tabulatedStrong, null);
+        double strongIntegrated = run("strong field (beta < 10)", 0, strong, n, steps, rs, integratedStrong, null);
+
+        LensingStage tabulated = new LensingStage();
+        PhotonBeam table = new PhotonBeam(n - strong);
+        double tables = run("table range (beta >= 10)", strong, n, n, steps, rs, tabulated, table);
+        PhotonBeam direct = new PhotonBeam(n - strong);
+        double integrated = run("table range (beta >= 10)", strong, n, n, steps, rs, integrated(), direct);
+        System.out.printf("table range: tables %.2fx faster than integrating; all photons: tables %.2f ms, integrated %.2f ms per step (%.2fx), straight %.2f ms%n",
+                integrated / tables, strongTables + tables, strongIntegrated + integrated,
+                (strongIntegrated + integrated) / (strongTables + tables), straight);
+
+        System.out.printf("captured: tables %d, integrated %d, with b < 3 sqrt(3)/2 r_s at the start %d%n",
+                tabulatedStrong.captured + tabulated.captured, integratedStrong.captured,
+                (int) Math.ceil(n * Math.log(1.5 * Math.sqrt(3)) / Math.log(START)));
+        System.out.printf("tables: %d built, %d cached, %d hits, %d evicted%n",
+                tabulated.tableBuilds(), tabulated.cachedTables(), tabulated.tableHits(), tabulated.tableEvictions());
+
+        int[] index = new int[n];
+        Arrays.fill(index, -1);
+        for (int i = 0; i < direct.size(); i++) {
+            index[id(direct, i)] = i;
+        }
+        double worstAngle = 0, worstRelative = 0, worstPosition = 0;
+        for (int i = 0; i < table.size(); i++) {
+            int k = index[id(table, i)];
+            if (k < 0) {
+                continue;
+            }
+            double angle = Math.abs(Math.atan2(table.dirX[i] * direct.dirY[k] - table.dirY[i] * direct.dirX[k],
+                    table.dirX[i] * direct.dirX[k] + table.dirY[i] * direct.dirY[k]));
+            double deflection = Math.abs(Math.atan2(direct.dirY[k], direct.dirX[k]));
+            worstAngle = Math.max(worstAngle, angle);
+            if (deflection > 0) {
+                worstRelative = Math.max(worstRelative, angle / deflection);
+            }
+            worstPosition = Math.max(worstPosition, Math.hypot(table.x[i] - direct.x[k], table.y[i] - direct.y[k]) / rs);
+        }
+        System.out.printf("tables vs integrated: largest direction difference %.3e rad (%.3e of the deflection), position %.3e r_s%n",
+                worstAngle, worstRelative, worstPosition);
+
+        for (double beta : new double[]{10, 100, 1000}) {
+            // The first table-range photon for β = 10.
+            int photon = Math.max(strong, (int) Math.round(Math.log(beta) / Math.log(START) * n));
+            int k = index[photon];
+            for (int i = 0; i < table.size(); i++) {
+                if (id(table, i) == photon) {
+                    double series = 2 / beta + 15 * PI / (16 * beta * beta) + 16 / (3 * beta * beta * beta);
+                    System.out.printf("b = %4.0f r_s: deflection tables %.6e, integrated %.6e, series (from infinity) %.6e%n",
+                            beta, -Math.atan2(table.dirY[i], table.dirX[i]), -Math.atan2(direct.dirY[k], direct.dirX[k]), series);
+                }
+            }
+        }
+    }
+
+    private static LensingStage integrated() {
+        LensingStage integrated = new LensingStage();
+        integrated.strongImpactParameter = Double.POSITIVE_INFINITY;
+        return integrated;
+    }
+
+    // Steps photons [from, to) of the n-photon beam, in `beam` if given, and returns the time per
+    // step, which is printed unless `photons` (the label) is null.
+    private static double run(String photons, int from, int to, int n, int steps, double rs, LensingStage lensing, PhotonBeam beam) {
+        Scene scene = new Scene();
+        Rigidbody hole = new Rigidbody(SAGITTARIUS_A_MASS, new Vector2(0, 0), new Vector2(0, 0), new Vector2(0, 0),
+                new Vector2(0, 0), new Vector2(0, 0), 0, 0, 0, null, null, null);
+        hole.name = "Sagittarius A*";
+        scene.add(hole);
+        if (beam == null) {
+            beam = new PhotonBeam(to - from);
+        }
+        for (int i = from; i < to; i++) {
+            // Impact parameters spread evenly in log b, from r_s to START r_s.
+            double beta = Math.exp(Math.log(START) * i / n);
+            beam.add(-START * rs, beta * rs, 1, 0, BASE + i * STRIDE);
+        }
+        scene.add(beam);
+        scene.lensing = lensing;
+
+        Simulation simulation = new Simulation(scene);
+        // The beam crosses 2 START r_s in `steps` steps.
+        simulation.timeStep = 2 * START * rs / SPEED_OF_LIGHT / steps;
+        long start = System.nanoTime();
+        simulation.step(steps);
+        double millis = (System.nanoTime() - start) / 1e6 / steps;
+        if (photons == null) {
+            return millis;
+        }
+        System.out.printf("%d photons, %s, %s: %.2f ms per step%n", to - from, photons,
+                lensing == null ? "straight" : Double.isInfinite(lensing.strongImpactParameter) ? "integrated" : "tables", millis);
+        return millis;
+    }
+
+    private static int id(PhotonBeam beam, int i) {
+        return (int) Math.round((beam.wavelength[i] - BASE) / STRIDE);
+    }
+}
@@ -0,0 +1,56 @@
+package scenes;
+
+import engine.Debugger;
+import engine.Scene;
+import engine.Simulation;
+import engine.Vector2;
+import engine.bodies.Photon;
+import engine.bodies.PhotonBeam;
+
+import java.util.SplittableRandom;
+
+// Moves the same photons as Photon bodies and as one PhotonBeam, prints the time per step of each
+// and the largest position difference between them, then inspects one beam photon through the
+// Debugger as a Body.
+// Usage: PhotonBeamBenchmark [photons=1000000] [steps=50]
+public class PhotonBeamBenchmark {
+    public static void main(String[] args) {
+        int n = args.length > 0 ? Integer.parseInt(args[0]) : 1000000;
+        int steps = args.length > 1 ? Integer.parseInt(args[1]) : 50;
+
+        SplittableRandom random = new SplittableRandom(1);
+        Scene bodies = new Scene();
+        Scene beams = new Scene();
+        PhotonBeam beam = new PhotonBeam(n);
+        beam.name = "Beam";
+        for (int i = 0; i < n; i++) {
+            double x = 1e9 * random.nextDouble(), y = 1e9 * random.nextDouble();
+            double angle = 2 * Math.PI * random.nextDouble();
+            double wavelength = 4e-7 + 3e-7 * random.nextDouble();
+            bodies.add(new Photon(new Vector2(x, y), new Vector2(Math.cos(angle), Math.sin(angle)), wavelength));
+            beam.add(x, y, Math.cos(angle), Math.sin(angle), wavelength);
+        }
+        beams.add(beam);
+
+        double bodyMillis = time(bodies, steps);
+        double beamMillis = time(beams, steps);
+        double worst = 0;
+        for (int i = 0; i < n; i++) {
+            Photon photon = (Photon) bodies.bodies.get(i);
+            worst = Math.max(worst, Math.abs(photon.position.get(0) - beam.x[i]));
+            worst = Math.max(worst, Math.abs(photon.position.get(1) - beam.y[i]));
+        }
+        System.out.printf("%d photons: Photon bodies %.2f ms per step, PhotonBeam %.2f ms per step, largest position difference %.3e m%n",
+                n, bodyMillis, beamMillis, worst);
+        Debugger.debugBody(beam.photon(0));
+    }
+
+    private static double time(Scene scene, int steps) {
+        Simulation simulation = new Simulation(scene);
+        simulation.timeStep = 0.01;
+        simulation.step(2);
+        long start = System.nanoTime();
+        simulation.step(steps);
+        return (System.nanoTime() - start) / 1e6 / steps;
+    }
+}
@@ -0,0 +1,157 @@
+package scenes;
+
+import engine.Scene;
+import engine.Simulation;
+import engine.Vector2;
+import engine.bodies.Body;
+import engine.bodies.Photon;
+import engine.bodies.PhotonBeam;
+import engine.bodies.Rigidbody;
+import engine.collision.BoundingVolumeHierarchy;
+import engine.collision.RadiationStage;
+import engine.integrators.LeapfrogIntegrator;
+
+import java.util.SplittableRandom;
+
+// Compares BoundingVolumeHierarchy raycasts with testing every ray against every disc, then runs
+// a scene where photons stream through a field of partly reflective bodies, once as Photon bodies
+// and once as a PhotonBeam, and prints the total momentum of bodies and photons against the
+// momentum of the photons put in.
+// Usage: RadiationPressureBenchmark [bodies=10000] [rays=20000] [photons per step=2000] [steps=50]
+public class RadiationPressureBenchmark {
+    // Discs of 1-10 km are spread over a square of this side, in meters.
+    private static final double SIDE = 1e7;
+
+    public static void main(String[] args) {
+        int n = args.length > 0 ? Integer.parseInt(args[0]) : 10000;
+        int rays = args.length > 1 ? Integer.parseInt(args[1]) : 20000;
+        int photonsPerStep = args.length > 2 ? Integer.parseInt(args[2]) : 2000;
+        int steps = args.length > 3 ? Integer.parseInt(args[3]) : 50;
+
+        compare(n, rays);
+        stream(n, photonsPerStep, steps, false);
+        stream(n, photonsPerStep, steps, true);
+    }
+
+    private static void compare(int n, int rays) {
+        SplittableRandom random = new SplittableRandom(1);
+        double[] x = new double[n], y = new double[n], r = new double[n];
+        for (int i = 0; i < n; i++) {
+            x[i] = SIDE * random.nextDouble();
+            y[i] = SIDE * random.nextDouble();
+            r[i] = 1e3 + 9e3 * random.nextDouble();
+        }
+        double[][] ray = new double[4][rays];
+        for (int k = 0; k < rays; k++) {
+            double angle = 2 * Math.PI * random.nextDouble();
+            ray[0][k] = SIDE * random.nextDouble();
+            ray[1][k] = SIDE * random.nextDouble();
+            ray[2][k] = 0.3 * SIDE * Math.cos(angle);
+            ray[3][k] = 0.3 * SIDE * Math.sin(angle);
+        }
+
+        BoundingVolumeHierarchy hierarchy = new BoundingVolumeHierarchy();
+        hierarchy.build(x, y, r, n);
+        double[] hit = new double[1];
+        int[] fromTree = new int[rays];
+        long start = System.nanoTime();
+        for (int k = 0; k < rays; k++) {
+            fromTree[k] = hierarchy.raycast(ray[0][k], ray[1][k], ray[2][k], ray[3][k], hit);
+        }
+        long treeNanos = System.nanoTime() - start;
+
+        int mismatches = 0, hits = 0;
+        start = System.nanoTime();
+        for (int k = 0; k < rays; k++) {
+            int nearest = nearest(x, y, r, n, ray[0][k], ray[1][k], ray[2][k], ray[3][k]);
+            hits += nearest >= 0 ? 1 : 0;
+            mismatches += nearest != fromTree[k] ? 1 : 0;
+        }
+        long bruteNanos = System.nanoTime() - start;
+        System.out.printf("%d discs, %d rays, %d hits: BVH %.2f ms, all discs %.2f ms, %d mismatches%n",
+                n, rays, hits, treeNanos / 1e6, bruteNanos / 1e6, mismatches);
+    }
+
+    private static int nearest(double[] x, double[] y, double[] r, int n, double ox, double oy, double dx, double dy) {
+        int found = -1;
+        double best = 1;
+        for (int i = 0; i < n; i++) {
+            double fx = ox - x[i], fy = oy - y[i];
+            double a = dx * dx + dy * dy, b = fx * dx + fy * dy, c = fx * fx + fy * fy - r[i] * r[i];
+            double discriminant = b * b - a * c;
+            if (c <= 0 || b >= 0 || discriminant < 0) {
+                continue;
+            }
+            double t = (-b - Math.sqrt(discriminant)) / a;
+            if (t <= best) {
+                best = t;
+                found = i;
+            }
+        }
+        return found;
+    }
+
+    private static void stream(int n, int photonsPerStep, int steps, boolean asBeam) {
+        SplittableRandom random = new SplittableRandom(2);
+        Scene scene = new Scene();
+        scene.integrator = new LeapfrogIntegrator();
+        for (int i = 0; i < n; i++) {
+            Rigidbody rock = new Rigidbody("1e3");
+            rock.setInitialPosition(new Vector2(SIDE * random.nextDouble(), SIDE * random.nextDouble()));
+            rock.radius = 1e3 + 9e3 * random.nextDouble();
+            rock.reflectivity = 0.5;
+            scene.add(rock);
+        }
+        PhotonBeam beam = new PhotonBeam(photonsPerStep * steps);
+        if (asBeam) {
+            scene.add(beam);
+        }
+        scene.radiation = new RadiationStage(3L);
+        Simulation simulation = new Simulation(scene);
+        simulation.timeStep = 0.01;
+
+        // Momentum of every photon added; bodies start at rest, so the scene total must equal it.
+        double[] injected = new double[2];
+        long nanos = 0;
+        for (int step = 0; step < steps; step++) {
+            // A beam entering from the left edge, heading right.
+            for (int k = 0; k < photonsPerStep; k++) {
+                Photon photon = new Photon(new Vector2(0, SIDE * random.nextDouble()), new Vector2(1, 0.1 * random.nextGaussian()), 5e-7);
+                injected[0] += photon.momentum.get(0);
+                injected[1] += photon.momentum.get(1);
+                if (asBeam) {
+                    double speed = photon.velocity.magnitude();
+                    beam.add(photon.position.get(0), photon.position.get(1),
+                            photon.velocity.get(0) / speed, photon.velocity.get(1) / speed, 5e-7);
+                } else {
+                    scene.add(photon);
+                }
+            }
+            long start = System.nanoTime();
+            simulation.step(1);
+            nanos += System.nanoTime() - start;
+        }
+        double[] total = momentum(scene);
+        RadiationStage radiation = scene.radiation;
+        System.out.printf("%s: %d steps, %.2f ms per step, %d absorbed, %d reflected, %d photons left%n",
+                asBeam ? "Beam" : "Stream", steps, nanos / 1e6 / steps, radiation.absorbed, radiation.reflected,
+                scene.bodies.size() - n + beam.size());
+        System.out.printf("  momentum injected (%.9e, %.9e), in the scene (%.9e, %.9e) kg m/s%n",
+                injected[0], injected[1], total[0], total[1]);
+    }
+
+    private static double[] momentum(Scene scene) {
+        double[] total = new double[2];
+        for (Body body : scene.bodies) {
+            total[0] += body.getMomentum().get(0);
+            total[1] += body.getMomentum().get(1);
+        }
+        for (PhotonBeam beam : scene.beams) {
+            for (int i = 0; i < beam.size(); i++) {
+                total[0] += beam.momentum(i) * beam.dirX[i];
+                total[1] += beam.momentum(i) * beam.dirY[i];
+            }
+        }
+        return total;
+    }
+}
@@ -0,0 +1,93 @@
+package scenes;
+
+import engine.Scene;
+import engine.Simulation;
+import engine.Vector2;
+import engine.bodies.Rigidbody;
+import engine.integrators.LeapfrogIntegrator;
+
+import java.util.SplittableRandom;
+
+import static engine.Constants.SPEED_OF_LIGHT;
+
+// Checks the Newtonian fast path of Rigidbody.kick against the exact relativistic one:
+// - the largest relative velocity difference between the two paths at several β, next to the
+//   bound Rigidbody.newtonianError(β);
+// - a body pushed by a constant force from rest to 0.1 c, crossing the switch, run with the
+//   default threshold and with every kick exact, and how far the two runs end up apart;
+// - the step time of a field of bodies at orbital speeds with both settings.
+// Usage: RegimeBenchmark [bodies=200000] [steps=200]
+public class RegimeBenchmark {
+    public static void main(String[] args) {
+        int n = args.length > 0 ? Integer.parseInt(args[0]) : 200000;
+        int steps = args.length > 1 ? Integer.parseInt(args[1]) : 200;
+        double threshold = Rigidbody.DEFAULT_NEWTONIAN_BETA;
+
+        for (double beta : new double[]{1e-5, 1e-4, 1e-3, 2e-3, 5e-3, 1e-2, 3e-2}) {
+            System.out.printf("beta %.0e: velocity difference %.2e, bound %.2e%n",
+                    beta, divergence(beta), Rigidbody.newtonianError(beta));
+        }
+
+        double[] fast = accelerate(threshold);
+        double[] exact = accelerate(0);
+        System.out.printf("Pushed to %.4f c: position %.9e vs %.9e m (relative difference %.2e), velocity difference %.2e%n",
+                exact[1] / SPEED_OF_LIGHT, fast[0], exact[0], Math.abs(fast[0] - exact[0]) / exact[0],
+                Math.abs(fast[1] - exact[1]) / exact[1]);
+
+        time(n, steps, 0);
+        time(n, steps, threshold);
+    }
+
+    // Largest relative difference between the velocities from both paths, for q around beta.
+    private static double divergence(double beta) {
+        double worst = 0;
+        for (int k = 1; k <= 100; k++) {
+            double q = beta * k / 100;
+            double[] velocity = new double[2];
+            for (int path = 0; path < 2; path++) {
+                Rigidbody body = new Rigidbody("1");
+                body.setNewtonianBeta(path == 0 ? 2 * beta : 0);
+                body.setInitialMomentum(new Vector2(q * SPEED_OF_LIGHT, 0));
+                body.kick(0);
+                velocity[path] = body.velocity.get(0);
+            }
+            worst = Math.max(worst, Math.abs(velocity[0] - velocity[1]) / velocity[1]);
+        }
+        return worst;
+    }
+
+    // 1 kg under 1e6 N for 30 s with steps of 1 ms: final position and speed.
+    private static double[] accelerate(double threshold) {
+        Scene scene = new Scene();
+        scene.integrator = new LeapfrogIntegrator();
+        Rigidbody body = new Rigidbody("1");
+        body.setNewtonianBeta(threshold);
+        body.setConstantForce(new Vector2(1e6, 0));
+        scene.add(body);
+        Simulation simulation = new Simulation(scene);
+        simulation.timeStep = 1e-3;
+        simulation.step(30000);
+        return new double[]{body.position.get(0), body.velocity.get(0)};
+    }
+
+    private static void time(int n, int steps, double threshold) {
+        SplittableRandom random = new SplittableRandom(1);
+        Scene scene = new Scene();
+        scene.integrator = new LeapfrogIntegrator();
+        for (int i = 0; i < n; i++) {
+            Rigidbody body = new Rigidbody("7.3e22");
+            body.setNewtonianBeta(threshold);
+            Vector2 velocity = new Vector2(1e3 * random.nextGaussian(), 1e3 * random.nextGaussian());
+            body.setInitialVelocity(velocity);
+            body.setInitialMomentum(velocity.mul(body.getMass()));
+            scene.add(body);
+        }
+        Simulation simulation = new Simulation(scene);
+        simulation.timeStep = 1;
+        simulation.step(5);
+        long start = System.nanoTime();
+        simulation.step(steps);
+        long nanos = System.nanoTime() - start;
+        System.out.printf("%d bodies at ~1 km/s, threshold %.0e: %.2f ms per step%n", n, threshold, nanos / 1e6 / steps);
+    }
+}
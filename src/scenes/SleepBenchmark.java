@@ -0,0 +1,70 @@
+package scenes;
+
+import engine.Scene;
+import engine.SleepStage;
+import engine.Simulation;
+import engine.Vector2;
+import engine.bodies.Rigidbody;
+import engine.integrators.LeapfrogIntegrator;
+
+import java.util.SplittableRandom;
+
+// Steps a field of resting rocks with a few moving ones, without and with a SleepStage, and prints
+// the time per step and how many bodies sleep. Every 50 steps a few resting rocks get an impulse,
+// which must wake them up: they keep moving, so the sleeping count at the end should be the
+// field minus the movers and the rocks that were hit.
+// Usage: SleepBenchmark [bodies=200000] [movers=1000] [steps=300]
+public class SleepBenchmark {
+    private static final int HITS = 10;
+
+    public static void main(String[] args) {
+        int n = args.length > 0 ? Integer.parseInt(args[0]) : 200000;
+        int movers = args.length > 1 ? Integer.parseInt(args[1]) : 1000;
+        int steps = args.length > 2 ? Integer.parseInt(args[2]) : 300;
+
+        run(n, movers, steps, false);
+        run(n, movers, steps, true);
+    }
+
+    private static void run(int n, int movers, int steps, boolean sleep) {
+        SplittableRandom random = new SplittableRandom(1);
+        Scene scene = new Scene();
+        scene.integrator = new LeapfrogIntegrator();
+        Rigidbody[] rocks = new Rigidbody[n];
+        for (int i = 0; i < n; i++) {
+            Rigidbody rock = new Rigidbody("1e3");
+            rock.setInitialPosition(new Vector2(1e6 * random.nextDouble(), 1e6 * random.nextDouble()));
+            if (i < movers) {
+                Vector2 velocity = new Vector2(20 * random.nextGaussian(), 20 * random.nextGaussian());
+                rock.setInitialVelocity(velocity);
+                rock.setInitialMomentum(velocity.mul(rock.getMass()));
+            }
+            rocks[i] = rock;
+            scene.add(rock);
+        }
+        if (sleep) {
+            scene.sleep = new SleepStage();
+            scene.sleep.stepsToSleep = 10;
+        }
+        Simulation simulation = new Simulation(scene);
+        simulation.timeStep = 0.1;
+
+        int hit = 0;
+        long start = System.nanoTime();
+        for (int step = 1; step <= steps; step++) {
+            simulation.step(1);
+            if (step % 50 == 25) {
+                for (int k = 0; k < HITS; k++) {
+                    // Rocks past the movers, each hit once.
+                    rocks[movers + hit++].applyImpulse(1e4, 0);
+                }
+            }
+        }
+        long nanos = System.nanoTime() - start;
+        System.out.printf("%d bodies, sleep %b: %.2f ms per step", n, sleep, nanos / 1e6 / steps);
+        if (sleep) {
+            System.out.printf(", %d sleeping at the end (expected %d)", scene.sleep.lastSleeping, n - movers - hit);
+        }
+        System.out.println();
+    }
+}
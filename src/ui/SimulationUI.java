@@ -1,8 +1,12 @@
 package ui;
 
+import engine.ConservationMonitor;
 import engine.Engine;
 import engine.Scene;
+import engine.Snapshot;
+import engine.Vector2;
 import engine.bodies.Body;
+import engine.bodies.PhotonBeam;
 
 import java.awt.*;
 import java.awt.event.*;
@@ -12,6 +16,7 @@ import java.text.DecimalFormat;
 import javax.swing.*;
 import javax.swing.border.LineBorder;
 
+import static engine.Constants.SPEED_OF_LIGHT;
 import static engine.Debugger.df;
 
 public class SimulationUI extends JFrame
@@ -116,7 +121,7 @@ public class SimulationUI extends JFrame
             @Override
             public void actionPerformed(ActionEvent e)
             {
-                uptimeLabel.setText(String.format("Uptime: %.8f s", Engine.uptime));
+                uptimeLabel.setText(String.format("Uptime: %.8f s", Engine.snapshots.latest().uptime));
                 // For demonstration, we keep time scale fixed.
                 timeScaleLabel.setText(String.format("Time Scale: %.2fx", 1 * Engine.timeScale));
             }
@@ -181,20 +186,18 @@ public class SimulationUI extends JFrame
             Graphics2D g2d = (Graphics2D) g;
             g2d.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
             
-            // Build UI transform: center, zoom, then pan.
-            AffineTransform uiTransform = new AffineTransform();
-            uiTransform.translate(getWidth() / 2, getHeight() / 2);
-            uiTransform.scale(zoom, zoom);
-            uiTransform.translate(offsetX, offsetY);
+            AffineTransform uiTransform = uiTransform();
             
             // Draw dynamic grid.
             drawDynamicGrid(g2d, uiTransform);
             
-            // Draw all bodies.
-            for(Body body : scene.bodies)
+            // Draw all bodies from the latest published step, never from the live state.
+            Snapshot frame = Engine.snapshots.latest();
+            for(int i = 0; i < frame.count; i++)
             {
-                double x = body.getPos().get(0);
-                double y = body.getPos().get(1);
+                Body body = frame.bodies[i];
+                double x = frame.x[i];
+                double y = frame.y[i];
                 double z = 0;
                 double projX = cosYaw * x + sinYaw * z;
                 double projY = sinPitch * sinYaw * x + cosPitch * y - sinPitch * cosYaw * z;
@@ -207,6 +210,23 @@ public class SimulationUI extends JFrame
                 g2d.fillOval(screenX, screenY, screenDiameter, screenDiameter);
             }
             
+            // Beam photons as dots; in huge beams the snapshot only holds every photonStride-th one.
+            Point2D.Double point = new Point2D.Double();
+            for(int b = 0; b < frame.beamCount; b++)
+            {
+                PhotonBeam beam = frame.beams[b];
+                int screenDiameter = Math.max(1, (int) (2 * beam.radius * zoom));
+                g2d.setColor(beam.color);
+                for(int i = b == 0 ? 0 : frame.beamEnd[b - 1]; i < frame.beamEnd[b]; i++)
+                {
+                    double x = frame.photonX[i];
+                    double y = frame.photonY[i];
+                    point.setLocation(cosYaw * x, sinPitch * sinYaw * x + cosPitch * y);
+                    uiTransform.transform(point, point);
+                    g2d.fillRect((int) (point.getX() - screenDiameter / 2.0), (int) (point.getY() - screenDiameter / 2.0), screenDiameter, screenDiameter);
+                }
+            }
+            
             // Overlay elements.
             Point2D gridCenterScreen = projectGridPoint(0, 0, uiTransform);
             AffineTransform originalTransform = g2d.getTransform();
@@ -241,10 +261,11 @@ public class SimulationUI extends JFrame
             g2d.fillOval(redPointX - redPointRadius, redPointY - redPointRadius, redPointRadius * 2, redPointRadius * 2);
             
             // Draw gizmo for selected body.
-            if(selectedBody != null)
+            Point2D.Double selected = selectedBody != null ? locate(frame, selectedBody) : null;
+            if(selected != null)
             {
-                double bx = selectedBody.getPos().get(0);
-                double by = selectedBody.getPos().get(1);
+                double bx = selected.x;
+                double by = selected.y;
                 double bz = 0;
                 double projBX = cosYaw * bx + sinYaw * bz;
                 double projBY = sinPitch * sinYaw * bx + cosPitch * by - sinPitch * cosYaw * bz;
@@ -413,11 +434,38 @@ public class SimulationUI extends JFrame
             }
         }
         
+        // Build UI transform: center, zoom, then pan.
+        private AffineTransform uiTransform()
+        {
+            AffineTransform uiTransform = new AffineTransform();
+            uiTransform.translate(getWidth() / 2, getHeight() / 2);
+            uiTransform.scale(zoom, zoom);
+            uiTransform.translate(offsetX, offsetY);
+            return uiTransform;
+        }
+        
+        // Position of a body in the frame, or null if it is not there. A beam photon is only found
+        // once the frame carries it as the inspected photon, since its index can leave the beam.
+        private Point2D.Double locate(Snapshot frame, Body body)
+        {
+            if(body instanceof PhotonBeam.View)
+            {
+                return frame.inspected == body && frame.inspectedPresent ? new Point2D.Double(frame.inspectedX, frame.inspectedY) : null;
+            }
+            int i = frame.indexOf(body);
+            return i >= 0 ? new Point2D.Double(frame.x[i], frame.y[i]) : null;
+        }
+        
         // Centers the camera on a body.
         public void centerOnBody(Body body)
         {
-            double x = body.getPos().get(0);
-            double y = body.getPos().get(1);
+            Point2D.Double position = locate(Engine.snapshots.latest(), body);
+            if(position == null)
+            {
+                return;
+            }
+            double x = position.x;
+            double y = position.y;
             double z = 0;
             double projX = cosYaw * x + sinYaw * z;
             double projY = sinPitch * sinYaw * x + cosPitch * y - sinPitch * cosYaw * z;
@@ -432,10 +480,11 @@ public class SimulationUI extends JFrame
         // Updates the camera to follow the selected body.
         public void followSelectedBody()
         {
-            if(selectedBody != null)
+            Point2D.Double position = selectedBody != null ? locate(Engine.snapshots.latest(), selectedBody) : null;
+            if(position != null)
             {
-                double x = selectedBody.getPos().get(0);
-                double y = selectedBody.getPos().get(1);
+                double x = position.x;
+                double y = position.y;
                 double z = 0;
                 double projX = cosYaw * x + sinYaw * z;
                 double projY = sinPitch * sinYaw * x + cosPitch * y - sinPitch * cosYaw * z;
@@ -477,9 +526,48 @@ public class SimulationUI extends JFrame
         {
         }
         
+        // Selects the body or beam photon drawn nearest the click, within a few pixels of its edge.
         @Override
         public void mouseClicked(MouseEvent e)
         {
+            Snapshot frame = Engine.snapshots.latest();
+            AffineTransform uiTransform = uiTransform();
+            Point2D.Double point = new Point2D.Double();
+            Body picked = null;
+            double best = 5;
+            for(int i = 0; i < frame.count; i++)
+            {
+                double x = frame.x[i];
+                point.setLocation(cosYaw * x, sinPitch * sinYaw * x + cosPitch * frame.y[i]);
+                uiTransform.transform(point, point);
+                double distance = point.distance(e.getX(), e.getY()) - frame.bodies[i].getRadius() * zoom;
+                if(distance < best)
+                {
+                    best = distance;
+                    picked = frame.bodies[i];
+                }
+            }
+            for(int b = 0; b < frame.beamCount; b++)
+            {
+                PhotonBeam beam = frame.beams[b];
+                int start = b == 0 ? 0 : frame.beamEnd[b - 1];
+                for(int i = start; i < frame.beamEnd[b]; i++)
+                {
+                    double x = frame.photonX[i];
+                    point.setLocation(cosYaw * x, sinPitch * sinYaw * x + cosPitch * frame.photonY[i]);
+                    uiTransform.transform(point, point);
+                    double distance = point.distance(e.getX(), e.getY()) - beam.radius * zoom;
+                    if(distance < best)
+                    {
+                        best = distance;
+                        picked = beam.photon((i - start) * frame.photonStride);
+                    }
+                }
+            }
+            if(picked != null)
+            {
+                listPanel.select(picked);
+            }
         }
         
         @Override
@@ -518,9 +606,49 @@ public class SimulationUI extends JFrame
             int margin = 10;
             // Start drawing from the top of this panel.
             int y = margin + g2d.getFontMetrics().getAscent();
-            if(selectedBody != null)
+            Snapshot frame = Engine.snapshots.latest();
+            g2d.drawString("Bodies: " + frame.count + " (" + frame.sleepingCount + " sleeping)", margin, y);
+            y += g2d.getFontMetrics().getHeight();
+            if(frame.photonCount > 0)
+            {
+                g2d.drawString("Beam photons: " + frame.photonCount, margin, y);
+                y += g2d.getFontMetrics().getHeight();
+            }
+            if(frame.hasConservation)
             {
-                String[] lines = {"===== RigidBody Debug Information =====", "Mass: " + selectedBody.getMass() + " (in appropriate units)", "Position: " + selectedBody.getPos(), "Velocity: " + selectedBody.getVel(), "Velocity Magnitude: " + selectedBody.getVelocityMagnitude() + " m/s", "Speed as % of c: " + df.format(selectedBody.getSpeedPercentC()) + " %", "Momentum: " + selectedBody.getMomentum(), "Momentum Magnitude: " + selectedBody.getMomentumMagnitude() + " kg·m/s", "Force Magnitude: " + selectedBody.getForceMagnitude() + " N", "Net Acceleration: " + selectedBody.getNetAccelerationMagnitude() + " m/s²", "Kinetic Energy: " + selectedBody.getKineticEnergy() + " J", "Potential Energy: " + selectedBody.getPotentialEnergy() + " J", "Internal Energy: " + selectedBody.getInternalEnergy() + " J", "Lorentz Factor: " + selectedBody.getGamma(), "========================================"};
+                ConservationMonitor.Sample sample = frame.conservation;
+                String[] lines = {"Total energy: " + String.format("%.6e", sample.energy) + " J", "  drift: " + String.format("%.3e", sample.energyDrift), "Total momentum: " + String.format("%.6e", sample.momentumMagnitude()) + " kg·m/s", "  drift: " + String.format("%.3e", sample.momentumDrift), "Angular momentum: " + String.format("%.6e", sample.angularMomentum) + " kg·m²/s", "  drift: " + String.format("%.3e", sample.angularMomentumDrift), "  (sampled at step " + sample.step + ")"};
+                for(String line : lines)
+                {
+                    g2d.drawString(line, margin, y);
+                    y += g2d.getFontMetrics().getHeight();
+                }
+            }
+            int i = selectedBody != null ? frame.indexOf(selectedBody) : -1;
+            PhotonBeam.View photon = selectedBody instanceof PhotonBeam.View ? (PhotonBeam.View) selectedBody : null;
+            // Beam photons are not in the snapshot's body columns; have the next snapshots carry it.
+            Engine.snapshots.inspect(photon);
+            if(photon != null && frame.inspected != photon)
+            {
+                g2d.drawString("Waiting for the next step...", margin, y);
+            }
+            else if(photon != null && !frame.inspectedPresent)
+            {
+                g2d.drawString("Photon " + photon.index + " is no longer in " + photon.beam.name + ".", margin, y);
+            }
+            else if(photon != null)
+            {
+                double momentum = frame.inspectedMomentum();
+                String[] lines = {"===== Beam Photon Information =====", "Name: " + photon.getName(), "Position: " + new Vector2(frame.inspectedX, frame.inspectedY), "Velocity: " + new Vector2(frame.inspectedDirX * SPEED_OF_LIGHT, frame.inspectedDirY * SPEED_OF_LIGHT), "Momentum: " + new Vector2(frame.inspectedDirX * momentum, frame.inspectedDirY * momentum), "Momentum Magnitude: " + momentum + " kg·m/s", "Energy: " + frame.inspectedEnergy() + " J", "========================================"};
+                for(String line : lines)
+                {
+                    g2d.drawString(line, margin, y);
+                    y += g2d.getFontMetrics().getHeight();
+                }
+            }
+            else if(i >= 0)
+            {
+                String[] lines = {"===== RigidBody Debug Information =====", "Mass: " + frame.mass[i] + " (in appropriate units)", "Position: " + frame.position(i), "Velocity: " + frame.velocity(i), "Velocity Magnitude: " + frame.velocityMagnitude(i) + " m/s", "Speed as % of c: " + df.format(frame.speedPercentC(i)) + " %", "Momentum: " + frame.momentum(i), "Momentum Magnitude: " + frame.momentumMagnitude(i) + " kg·m/s", "Force Magnitude: " + frame.forceMagnitude(i) + " N", "Net Acceleration: " + frame.netAccelerationMagnitude(i) + " m/s²", "Kinetic Energy: " + frame.kineticEnergy(i) + " J", "Potential Energy: " + frame.potentialEnergy[i] + " J", "Internal Energy: " + frame.internalEnergy[i] + " J", "Lorentz Factor: " + frame.gamma[i], "Sleeping: " + (frame.sleeping[i] ? "yes" : "no"), "========================================"};
                 for(String line : lines)
                 {
                     g2d.drawString(line, margin, y);
@@ -584,6 +712,20 @@ public class SimulationUI extends JFrame
             add(scrollPane, BorderLayout.CENTER);
         }
         
+        // Selects a body picked outside the list. Beam photons are not listed, so picking one
+        // clears the list selection, and the snapshots are asked to carry it from the next step.
+        public void select(Body body)
+        {
+            bodiesList.clearSelection();
+            bodiesList.setSelectedValue(body, true);
+            selectedBody = body;
+            if(body instanceof PhotonBeam.View)
+            {
+                Engine.snapshots.inspect((PhotonBeam.View) body);
+            }
+            statsPanel.repaint();
+        }
+        
         class BodyListCellRenderer extends DefaultListCellRenderer
         {
             private final Color evenColor = new Color(0, 0, 0, 0);